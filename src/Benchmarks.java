@@ -0,0 +1,478 @@
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* Benchmarks for the code run in every round of the game: generating portals,
+* checking for and updating exits, bribes, choosing magic box items and playing
+* a whole round with a decision policy. Each benchmark is run on one thread and
+* on several threads at once, and reports its throughput, the bytes it allocates
+* per operation and the garbage collections it caused. Results can be saved and
+* later runs compared against them, failing if a change made the rounds slower
+* or made them allocate more.
+* @author rainflop000
+* @version 1.0
+*/
+public class Benchmarks
+{
+    private static final int BATCH = 256;
+    private static final double SLOWER_TOLERANCE = 0.10;
+    private static final double BYTES_TOLERANCE = 16;
+
+    private ExitsTable table;
+    private RandomSource random;
+    private long warmupNanos;
+    private long measureNanos;
+    private volatile long sink;
+    private Hints hints;
+
+    /**
+    * Work measured by a benchmark. Returns a value so the work cannot be
+    * optimised away.
+    */
+    private interface Operation
+    {
+        long run();
+    }
+
+    /**
+    * Creates the operation one benchmark thread runs, from that thread's session.
+    */
+    private interface Setup
+    {
+        Operation create(GameSession session, RandomSource random);
+    }
+
+    /**
+    * A named benchmark.
+    */
+    private static class Benchmark
+    {
+        private String name;
+        private boolean allocationFree;
+        private Setup setup;
+
+        Benchmark(String name, boolean allocationFree, Setup setup)
+        {
+            this.name = name;
+            this.allocationFree = allocationFree;
+            this.setup = setup;
+        }
+    }
+
+    /**
+    * The measurements of one benchmark run on a number of threads.
+    */
+    public static class Result
+    {
+        private String name;
+        private boolean allocationFree;
+        private int threads;
+        private double opsPerSecond;
+        private double bytesPerOp;
+        private long gcCount;
+        private long gcMillis;
+
+        Result(String name, boolean allocationFree, int threads, double opsPerSecond, double bytesPerOp, long gcCount, long gcMillis)
+        {
+            this.name = name;
+            this.allocationFree = allocationFree;
+            this.threads = threads;
+            this.opsPerSecond = opsPerSecond;
+            this.bytesPerOp = bytesPerOp;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        String key()
+        {
+            return name + "," + threads;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%-38s %3d %14.0f %10.1f %10.1f %6d %8d", name, threads, opsPerSecond,
+                threads * 1e9 / opsPerSecond, bytesPerOp, gcCount, gcMillis);
+        }
+    }
+
+    /**
+    * Round played by the policy of the simulator. Starts the session again
+    * whenever its game is over.
+    */
+    private class RoundOperation implements Operation
+    {
+        private GameSession session;
+        private DecisionPolicy policy;
+
+        RoundOperation(GameSession session, RandomSource random)
+        {
+            this.session = session;
+            policy = new SimplePolicy(session.getGame().getRandom());
+            session.getGame().start();
+        }
+
+        public long run()
+        {
+            Game game = session.getGame();
+            if (game.isOver())
+            {
+                session.reset();
+                game.start();
+            }
+            game.playRound(policy);
+            return game.getRounds();
+        }
+    }
+
+    /**
+    * Parametised constructor.
+    * @param table The directions and probabilities the benchmarked games start from
+    * @param warmupNanos The time each benchmark runs before it is measured
+    * @param measureNanos The time each benchmark is measured for
+    */
+    public Benchmarks(ExitsTable table, long warmupNanos, long measureNanos)
+    {
+        this.table = table;
+        this.random = new SplitMixRandom(1);
+        this.warmupNanos = warmupNanos;
+        this.measureNanos = measureNanos;
+    }
+
+    /**
+    * Adds a benchmark of the hints to the benchmarks run.
+    * @param hints The hints for the table, or null to leave them out
+    */
+    public void setHints(Hints hints)
+    {
+        this.hints = hints;
+    }
+
+    private List<Benchmark> benchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new Benchmark("Room.generatePortals", true, (session, random) ->
+            () -> session.getRoom().generatePortals()));
+        benchmarks.add(new Benchmark("Room.getAvailablePortals", false, (session, random) ->
+        {
+            session.getRoom().generatePortals();
+            return () -> session.getRoom().getAvailablePortals().length;
+        }));
+        benchmarks.add(new Benchmark("Exit.checkForExit+updateExitChance", true, (session, random) ->
+        {
+            Exit exit = session.getExit();
+            int[] index = new int[1];
+            return () ->
+            {
+                int direction = index[0] = (index[0] + 1) % table.size();
+                boolean found = exit.checkForExit(direction);
+                exit.updateExitChance(direction);
+                return found ? 1 : 0;
+            };
+        }));
+        benchmarks.add(new Benchmark("MagicPolice.getBribeAmount", true, (session, random) ->
+            () -> session.getPolice().getBribeAmount(40)));
+        benchmarks.add(new Benchmark("LootTable.sample", true, (session, random) ->
+            () -> LootTable.DEFAULT.sample(random)));
+        benchmarks.add(new Benchmark("Game.playRound", true, RoundOperation::new));
+        if (hints != null)
+        {
+            benchmarks.add(new Benchmark("Hints.bestPortal", true, (session, random) ->
+            {
+                session.getGame().start();
+                return () ->
+                {
+                    session.getRoom().generatePortals();
+                    return hints.bestPortal(session);
+                };
+            }));
+        }
+        benchmarks.add(new Benchmark("Game.playRound (packed)", true, (session, random) ->
+            new RoundOperation(new GameSession(new PackedProbabilities(table), random.split(), null), random)));
+        benchmarks.add(new Benchmark("Game.playRound (flight recorder)", true, (session, random) ->
+        {
+            session.getGame().setListener(new JfrListener());
+            return new RoundOperation(session, random);
+        }));
+        GameMetrics metrics = new GameMetrics();
+        benchmarks.add(new Benchmark("GameMetrics.decisionTimed", true, (session, random) ->
+        {
+            long[] nanos = new long[1];
+            return () ->
+            {
+                nanos[0] = (nanos[0] + 997) & 0xfffff;
+                metrics.decisionTimed(Decision.CHOOSE_PORTAL, nanos[0]);
+                return nanos[0];
+            };
+        }));
+        benchmarks.add(new Benchmark("Game.playRound (metrics)", true, (session, random) ->
+        {
+            session.getGame().setListener(metrics);
+            return new RoundOperation(session, random);
+        }));
+        return benchmarks;
+    }
+
+    /**
+    * Runs a benchmark on a number of threads at once. Every thread plays its own
+    * session, so the threads only share what the games themselves share.
+    * @param benchmark The benchmark to run
+    * @param threads The number of threads
+    * @return The measurements of the run
+    */
+    private Result measure(Benchmark benchmark, int threads) throws Exception
+    {
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        long[] ops = new long[threads];
+        long[] bytes = new long[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++)
+        {
+            int thread = t;
+            RandomSource threadRandom = random.split();
+            workers[t] = new Thread(() ->
+            {
+                try
+                {
+                    Operation operation = benchmark.setup.create(new GameSession(table, threadRandom.split(), null), threadRandom);
+                    run(operation, warmupNanos);
+                    barrier.await();
+                    long allocatedBefore = allocatedBytes();
+                    ops[thread] = run(operation, measureNanos);
+                    bytes[thread] = allocatedBytes() - allocatedBefore;
+                    barrier.await();
+                }
+                catch (InterruptedException | BrokenBarrierException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }, "benchmark-" + t);
+            workers[t].start();
+        }
+        barrier.await();
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long start = System.nanoTime();
+        barrier.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long gcCount = gcCount() - gcCountBefore;
+        long gcMillis = gcMillis() - gcMillisBefore;
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        long totalOps = Arrays.stream(ops).sum();
+        long totalBytes = Arrays.stream(bytes).sum();
+        return new Result(benchmark.name, benchmark.allocationFree, threads, totalOps / seconds, (double) totalBytes / totalOps, gcCount, gcMillis);
+    }
+
+    /**
+    * Runs an operation in batches for a period of time.
+    * @return The number of operations run
+    */
+    private long run(Operation operation, long nanos)
+    {
+        long ops = 0;
+        long sum = 0;
+        long end = System.nanoTime() + nanos;
+        do
+        {
+            for (int i = 0; i < BATCH; i++)
+            {
+                sum += operation.run();
+            }
+            ops += BATCH;
+        }
+        while (System.nanoTime() < end);
+        sink += sum;
+        return ops;
+    }
+
+    private static long allocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static long gcCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis()
+    {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+    * Runs every benchmark whose name contains the filter, on one thread and then
+    * on the given number of threads, printing each result as it is measured.
+    * @param filter Part of the benchmark names to run, or an empty string for all
+    * @param threads The number of threads for the multi-threaded runs
+    * @return The results of all runs
+    */
+    public List<Result> runAll(String filter, int threads) throws Exception
+    {
+        List<Result> results = new ArrayList<>();
+        System.out.println(String.format("%-38s %3s %14s %10s %10s %6s %8s", "Benchmark", "Thr", "ops/s", "ns/op", "bytes/op", "GCs", "GC ms"));
+        for (Benchmark benchmark : benchmarks())
+        {
+            if (!benchmark.name.contains(filter))
+            {
+                continue;
+            }
+            for (int count : threads > 1 ? new int[] {1, threads} : new int[] {1})
+            {
+                Result result = measure(benchmark, count);
+                System.out.println(result);
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    /**
+    * Saves results so later runs can be compared against them.
+    * @param results The results to save
+    * @param fileName The file to save to
+    */
+    public static void save(List<Result> results, String fileName) throws IOException
+    {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(fileName)))
+        {
+            for (Result result : results)
+            {
+                writer.println(result.key() + "," + result.opsPerSecond + "," + result.bytesPerOp);
+            }
+        }
+    }
+
+    /**
+    * Compares results against saved ones, printing every benchmark which got
+    * more than 10% slower or allocates more per operation.
+    * @param results The results of this run
+    * @param fileName The file the earlier results were saved to
+    * @return True if no benchmark got worse, otherwise false
+    */
+    public static boolean compare(List<Result> results, String fileName) throws IOException
+    {
+        Map<String, double[]> baseline = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] row = line.split(",");
+                baseline.put(row[0] + "," + row[1], new double[] {Double.parseDouble(row[2]), Double.parseDouble(row[3])});
+            }
+        }
+        boolean passed = true;
+        for (Result result : results)
+        {
+            double[] expected = baseline.get(result.key());
+            if (expected == null)
+            {
+                continue;
+            }
+            if (result.opsPerSecond < expected[0] * (1 - SLOWER_TOLERANCE))
+            {
+                System.out.printf("SLOWER: %s on %d threads, %.0f ops/s against %.0f%n", result.name, result.threads, result.opsPerSecond, expected[0]);
+                passed = false;
+            }
+            if (result.bytesPerOp > expected[1] + BYTES_TOLERANCE)
+            {
+                System.out.printf("ALLOCATES MORE: %s on %d threads, %.1f bytes/op against %.1f%n", result.name, result.threads, result.bytesPerOp, expected[1]);
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    /**
+    * Checks that the benchmarks of code which should not allocate in a game
+    * without output, including a whole round, allocated less than one byte per
+    * operation on average.
+    * @param results The results of this run
+    * @return True if none of them allocated, otherwise false
+    */
+    public static boolean checkAllocationFree(List<Result> results)
+    {
+        boolean passed = true;
+        for (Result result : results)
+        {
+            if (result.allocationFree && result.bytesPerOp >= 1)
+            {
+                System.out.printf("ALLOCATES: %s on %d threads, %.1f bytes/op%n", result.name, result.threads, result.bytesPerOp);
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    /**
+    * Main method for the benchmarks.
+    * @param args Options: -t threads, -w warmup seconds, -m measurement seconds,
+    * -f name filter, -e exits file, -o file to save results to, -b file of earlier
+    * results to compare against, -z yes to fail if an allocation-free benchmark
+    * allocates
+    */
+    public static void main(String[] args) throws Exception
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        double warmup = 2;
+        double measure = 5;
+        String filter = "";
+        String fileName = Game.FILE_NAME;
+        String saveFile = null;
+        String baselineFile = null;
+        boolean zeroAllocation = false;
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            switch (args[i])
+            {
+                case "-t": threads = Integer.parseInt(args[i + 1]); break;
+                case "-w": warmup = Double.parseDouble(args[i + 1]); break;
+                case "-m": measure = Double.parseDouble(args[i + 1]); break;
+                case "-f": filter = args[i + 1]; break;
+                case "-e": fileName = args[i + 1]; break;
+                case "-o": saveFile = args[i + 1]; break;
+                case "-b": baselineFile = args[i + 1]; break;
+                case "-z": zeroAllocation = args[i + 1].startsWith("y"); break;
+                default: System.out.println("Unknown option " + args[i]); return;
+            }
+        }
+
+        ExitsTable table = ExitsTable.load(fileName);
+        Benchmarks benchmarks = new Benchmarks(table, (long) (warmup * 1e9), (long) (measure * 1e9));
+        try
+        {
+            benchmarks.setHints(Hints.load(Solution.FILE_NAME, table));
+        }
+        catch (IOException e)
+        {
+            System.out.println("Hints not benchmarked: " + e.getMessage());
+        }
+        List<Result> results = benchmarks.runAll(filter, threads);
+        if (saveFile != null)
+        {
+            save(results, saveFile);
+        }
+        boolean passed = baselineFile == null || compare(results, baselineFile);
+        passed &= !zeroAllocation || checkAllocationFree(results);
+        if (!passed)
+        {
+            System.exit(1);
+        }
+    }
+}
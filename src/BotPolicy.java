@@ -0,0 +1,122 @@
+/**
+* Decision policy following simple fixed rules, for comparing ways of playing in
+* a tournament. A rule picks the portal: at random, the one with the highest exit
+* chance shown to the player or the one with the lowest police chance. Another
+* decides when to bribe the magic police: always, never, or only once every jump
+* has been used, so jumps are spent getting out of jail before coins are spent
+* staying out of it. Cloaks are either used whenever the police are met or never.
+* Boxes are always opened, items always kept and jumps always taken, as saying no
+* to a jump loses the game.
+* @author rainflop000
+* @version 1.0
+*/
+public class BotPolicy implements DecisionPolicy
+{
+    public static final int RANDOM_PORTAL = 0;
+    public static final int MOST_EXIT = 1;
+    public static final int LEAST_POLICE = 2;
+
+    public static final int ALWAYS_BRIBE = 0;
+    public static final int NEVER_BRIBE = 1;
+    public static final int BRIBE_WITHOUT_JUMPS = 2;
+
+    private GameSession session;
+    private RandomSource random;
+    private int portalRule;
+    private boolean useCloaks;
+    private int bribeRule;
+
+    /**
+    * Parametised constructor.
+    * @param session The session the policy plays
+    * @param random The source random portal choices are drawn from
+    * @param portalRule How portals are chosen, such as MOST_EXIT
+    * @param useCloaks True to hide from the magic police with a cloak when one is held
+    * @param bribeRule When the magic police are bribed, such as ALWAYS_BRIBE
+    */
+    public BotPolicy(GameSession session, RandomSource random, int portalRule, boolean useCloaks, int bribeRule)
+    {
+        this.session = session;
+        this.random = random;
+        this.portalRule = portalRule;
+        this.useCloaks = useCloaks;
+        this.bribeRule = bribeRule;
+    }
+
+    /**
+    * Chooses a portal by the portal rule. Ties are broken by the other chance, then
+    * by taking the first portal.
+    */
+    public int choosePortal(Room room, Probabilities probabilities)
+    {
+        if (portalRule == RANDOM_PORTAL)
+        {
+            return room.getAvailablePortal(random.nextInt(room.getAvailableCount()));
+        }
+        int best = -1;
+        for (int i = room.nextAvailablePortal(0); i >= 0; i = room.nextAvailablePortal(i + 1))
+        {
+            if (best < 0 || isBetter(i, best, probabilities))
+            {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private boolean isBetter(int index, int best, Probabilities probabilities)
+    {
+        int exit = probabilities.getExitBasisPoints(index);
+        int police = probabilities.getPoliceBasisPoints(index);
+        int bestExit = probabilities.getExitBasisPoints(best);
+        int bestPolice = probabilities.getPoliceBasisPoints(best);
+        if (portalRule == MOST_EXIT)
+        {
+            return exit > bestExit || (exit == bestExit && police < bestPolice);
+        }
+        return police < bestPolice || (police == bestPolice && exit > bestExit);
+    }
+
+    public boolean openMagicBox()
+    {
+        return true;
+    }
+
+    public boolean addToInventory(int kind)
+    {
+        return true;
+    }
+
+    public boolean useInvisibilityCloak()
+    {
+        return useCloaks;
+    }
+
+    public boolean bribePolice()
+    {
+        return isBribing();
+    }
+
+    public boolean payBribe(int bribeAmount, int coins)
+    {
+        return isBribing();
+    }
+
+    private boolean isBribing()
+    {
+        switch (bribeRule)
+        {
+            case NEVER_BRIBE:
+                return false;
+            case BRIBE_WITHOUT_JUMPS:
+                return session.getPlayer().getJumps() == 0;
+            default:
+                return true;
+        }
+    }
+
+    public boolean jumpBackwards()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+* Listener passing every event of a game on to two listeners, such as a journal
+* and the metrics of a server. Chains of more listeners are made by nesting.
+* @author rainflop000
+* @version 1.0
+*/
+public class CompositeListener implements GameListener
+{
+    private GameListener first;
+    private GameListener second;
+    private boolean timing;
+
+    /**
+    * Parametised constructor.
+    * @param first The listener told of each event first
+    * @param second The listener told of each event second
+    */
+    public CompositeListener(GameListener first, GameListener second)
+    {
+        this.first = first;
+        this.second = second;
+        timing = first.isTimingDecisions() || second.isTimingDecisions();
+    }
+
+    public GameListener getFirst()
+    {
+        return first;
+    }
+
+    public GameListener getSecond()
+    {
+        return second;
+    }
+
+    public void roundStarted(int round, int availablePortals)
+    {
+        first.roundStarted(round, availablePortals);
+        second.roundStarted(round, availablePortals);
+    }
+
+    public void portalChosen(int index)
+    {
+        first.portalChosen(index);
+        second.portalChosen(index);
+    }
+
+    public void exitChecked(int index, boolean found)
+    {
+        first.exitChecked(index, found);
+        second.exitChecked(index, found);
+    }
+
+    public void policeChecked(int index, boolean met)
+    {
+        first.policeChecked(index, met);
+        second.policeChecked(index, met);
+    }
+
+    public void chanceChanged(int index, int column, int basisPoints)
+    {
+        first.chanceChanged(index, column, basisPoints);
+        second.chanceChanged(index, column, basisPoints);
+    }
+
+    public void answered(Decision decision, boolean yes)
+    {
+        first.answered(decision, yes);
+        second.answered(decision, yes);
+    }
+
+    public void boxOpened(int item, int coins)
+    {
+        first.boxOpened(item, coins);
+        second.boxOpened(item, coins);
+    }
+
+    public void itemKept()
+    {
+        first.itemKept();
+        second.itemKept();
+    }
+
+    public void cloakUsed()
+    {
+        first.cloakUsed();
+        second.cloakUsed();
+    }
+
+    public void bribeDemanded(int amount, int coins)
+    {
+        first.bribeDemanded(amount, coins);
+        second.bribeDemanded(amount, coins);
+    }
+
+    public void bribePaid(int coins)
+    {
+        first.bribePaid(coins);
+        second.bribePaid(coins);
+    }
+
+    public void jumpUsed(int jumpsLeft)
+    {
+        first.jumpUsed(jumpsLeft);
+        second.jumpUsed(jumpsLeft);
+    }
+
+    public void gameOver(boolean won, int rounds)
+    {
+        first.gameOver(won, rounds);
+        second.gameOver(won, rounds);
+    }
+
+    public boolean isTimingDecisions()
+    {
+        return timing;
+    }
+
+    public void decisionTimed(Decision decision, long nanos)
+    {
+        first.decisionTimed(decision, nanos);
+        second.decisionTimed(decision, nanos);
+    }
+}
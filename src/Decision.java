@@ -0,0 +1,23 @@
+/**
+* The decisions a game can be waiting for. A game stops at one of these whenever
+* it needs an answer from the player, and continues when the answer is given.
+* @author rainflop000
+* @version 1.0
+*/
+public enum Decision
+{
+    /** Choose one of the open portals of the room. */
+    CHOOSE_PORTAL,
+    /** Open a magic box found in the room, or not. */
+    OPEN_BOX,
+    /** Keep the item found in a magic box, or not. */
+    KEEP_ITEM,
+    /** Use an invisibility cloak to hide from the magic police, or not. */
+    USE_CLOAK,
+    /** Offer the magic police a bribe, or not. */
+    BRIBE,
+    /** Pay the bribe demanded by the magic police, or not. */
+    CONFIRM_BRIBE,
+    /** Jump backwards out of jail or a room without portals, or not. */
+    JUMP
+}
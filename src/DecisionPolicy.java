@@ -0,0 +1,56 @@
+/**
+* Interface for the decisions a player makes during the game. Every question the
+* game asks the player is answered through a policy, so the same rules can be
+* played from the console or by a program without a keyboard.
+* @author rainflop000
+* @version 1.0
+*/
+public interface DecisionPolicy
+{
+    /**
+    * Chooses which of the available portals to go through.
+    * @param room The current room, telling which portals are available
+    * @param probabilities The current exit and police chances of each direction
+    * @return The index of the chosen direction
+    */
+    int choosePortal(Room room, Probabilities probabilities);
+
+    /**
+    * Decides whether to open a magic box found in the room.
+    * @return True to open the box, otherwise false
+    */
+    boolean openMagicBox();
+
+    /**
+    * Decides whether to keep an item found in a magic box.
+    * @param kind The kind of the item found, such as Inventory.CLOAK
+    * @return True to add the item to the inventory, otherwise false
+    */
+    boolean addToInventory(int kind);
+
+    /**
+    * Decides whether to use an invisibility cloak to escape the magic police.
+    * @return True to use a cloak, otherwise false
+    */
+    boolean useInvisibilityCloak();
+
+    /**
+    * Decides whether to try bribing the magic police.
+    * @return True to ask the magic police for their price, otherwise false
+    */
+    boolean bribePolice();
+
+    /**
+    * Decides whether to pay the bribe demanded by the magic police.
+    * @param bribeAmount The amount of coins demanded
+    * @param coins The number of coins the player has
+    * @return True to pay the bribe, otherwise false
+    */
+    boolean payBribe(int bribeAmount, int coins);
+
+    /**
+    * Decides whether to use a jump to escape jail or a room without portals.
+    * @return True to jump backwards, otherwise false
+    */
+    boolean jumpBackwards();
+}
@@ -1,5 +1,3 @@
-import java.util.*;
-
 /**
 * Class represents an exit in the game. Contains methods to update exit chance.
 * and check if exit is available based on the probability contained in
@@ -42,9 +40,7 @@ public class Exit
     */
     public boolean checkForExit(int selectedIndex)
     {
-        double exitChance = game.getProbabilities()[selectedIndex][1];
-        double random = new Random().nextDouble();
-        return random <= exitChance;
+        return game.getProbabilities().rollExit(selectedIndex, game.getRandom());
     }
 
     /**
@@ -53,10 +49,9 @@ public class Exit
     */
     public void updateExitChance(int selectedIndex)
     {
-        double probabilities[][] = game.getProbabilities();
-        Random random = new Random();
-        double exitChange = (random.nextBoolean() ? -1 : 1) * (1 + random.nextInt(5));
-        double newExitChance = probabilities[selectedIndex][1] + exitChange / 100;
-        probabilities[selectedIndex][1] = Math.max(0, Math.min(1, newExitChance));
+        RandomSource random = game.getRandom();
+        int exitChange = (random.nextBoolean() ? -1 : 1) * (1 + random.nextInt(5));
+        game.getProbabilities().changeExitChance(selectedIndex, exitChange * 100); // Convert to basis points
+        game.getListener().chanceChanged(selectedIndex, ExitsTable.EXIT, exitChange * 100);
     }
 }
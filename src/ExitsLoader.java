@@ -0,0 +1,256 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+* Reads exits files of any number of directions. The file is memory-mapped and
+* its lines are split into fields where they lie in the mapping, so only the
+* direction names are copied out and the percentages are parsed straight from
+* the bytes. Each line holds a direction name and its open, exit and police
+* chances as percentages, separated by commas. Blank lines and lines starting
+* with # are skipped. A line which cannot be read is skipped too, and the loader
+* keeps a message giving its line, column and what was wrong with it.
+* @author rainflop000
+* @version 1.0
+*/
+public class ExitsLoader
+{
+    public static final int MAX_DIRECTIONS = 65535;
+    private static final int FIELDS = 4;
+    private static final int MAX_DIGITS = 18;
+
+    private List<String> errors = new ArrayList<>();
+    private String source;
+    private ByteBuffer data;
+    private int line;
+    private int lineStart;
+    private int[] fieldStart = new int[FIELDS];
+    private int[] fieldEnd = new int[FIELDS];
+    private byte[] scratch = new byte[64];
+
+    /**
+    * Reads an exits file.
+    * @param fileName The name of the file
+    * @return The table of the lines which could be read
+    * @throws IOException If the file cannot be read
+    */
+    public ExitsTable load(String fileName) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException(fileName + " is larger than 2 GB");
+            }
+            return parse(fileName, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+    * Returns a message for every line skipped by the last load, in the form
+    * "file:line:column: problem".
+    */
+    public List<String> getErrors()
+    {
+        return errors;
+    }
+
+    /**
+    * Reads the lines of an exits file.
+    * @param source The name of the file, used in error messages
+    * @param data The contents of the file
+    * @return The table of the lines which could be read
+    */
+    public ExitsTable parse(String source, ByteBuffer data)
+    {
+        this.source = source;
+        this.data = data;
+        errors.clear();
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> lineOfName = new HashMap<>();
+        double[][] rows = new double[16][];
+        int position = data.position();
+        // Skip a UTF-8 byte order mark
+        if (data.limit() - position >= 3 && data.get(position) == (byte) 0xef && data.get(position + 1) == (byte) 0xbb
+            && data.get(position + 2) == (byte) 0xbf)
+        {
+            position += 3;
+        }
+        line = 0;
+        while (position < data.limit())
+        {
+            line++;
+            lineStart = position;
+            int end = position;
+            while (end < data.limit() && data.get(end) != '\n')
+            {
+                end++;
+            }
+            position = end + 1;
+            if (end > lineStart && data.get(end - 1) == '\r')
+            {
+                end--;
+            }
+            int start = skipSpaces(lineStart, end);
+            if (start == end || data.get(start) == '#')
+            {
+                continue;
+            }
+            if (!split(start, end))
+            {
+                continue;
+            }
+            if (fieldStart[0] == fieldEnd[0])
+            {
+                error(fieldStart[0], "the direction has no name");
+                continue;
+            }
+            double[] row = new double[3];
+            boolean valid = true;
+            for (int i = 0; i < row.length && valid; i++)
+            {
+                row[i] = parsePercentage(fieldStart[i + 1], fieldEnd[i + 1]);
+                valid = !Double.isNaN(row[i]);
+            }
+            if (!valid)
+            {
+                continue;
+            }
+            String name = text(fieldStart[0], fieldEnd[0]);
+            Integer previous = lineOfName.putIfAbsent(name.toLowerCase(), line);
+            if (previous != null)
+            {
+                error(fieldStart[0], name + " is already defined on line " + previous);
+                continue;
+            }
+            if (names.size() == MAX_DIRECTIONS)
+            {
+                error(fieldStart[0], "there can be no more than " + MAX_DIRECTIONS + " directions");
+                continue;
+            }
+            if (names.size() == rows.length)
+            {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            rows[names.size()] = row;
+            names.add(name);
+        }
+        return new ExitsTable(names.toArray(new String[0]), Arrays.copyOf(rows, names.size()));
+    }
+
+    /**
+    * Finds the fields of a line, without their surrounding spaces.
+    * @return True if the line has the right number of fields, otherwise false
+    */
+    private boolean split(int start, int end)
+    {
+        int field = 0;
+        int from = start;
+        for (int i = start; i <= end; i++)
+        {
+            if (i == end || data.get(i) == ',')
+            {
+                if (field < FIELDS)
+                {
+                    fieldStart[field] = skipSpaces(from, i);
+                    int to = i;
+                    while (to > fieldStart[field] && isSpace(data.get(to - 1)))
+                    {
+                        to--;
+                    }
+                    fieldEnd[field] = to;
+                }
+                field++;
+                from = i + 1;
+            }
+        }
+        if (field != FIELDS)
+        {
+            error(start, "expected " + FIELDS + " fields (direction,open,exit,police) but found " + field);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+    * Parses a percentage of whole digits and an optional fraction, such as 12.5,
+    * into a probability.
+    * @return The probability, or NaN if the field is not a percentage from 0 to 100
+    */
+    private double parsePercentage(int start, int end)
+    {
+        long digits = 0;
+        int count = 0;
+        int decimals = -1;
+        for (int i = start; i < end; i++)
+        {
+            byte b = data.get(i);
+            if (b == '.' && decimals < 0)
+            {
+                decimals = 0;
+            }
+            else if (b >= '0' && b <= '9' && count < MAX_DIGITS)
+            {
+                digits = digits * 10 + (b - '0');
+                count++;
+                if (decimals >= 0)
+                {
+                    decimals++;
+                }
+            }
+            else
+            {
+                error(start, "\"" + text(start, end) + "\" is not a number");
+                return Double.NaN;
+            }
+        }
+        if (count == 0)
+        {
+            error(start, "\"" + text(start, end) + "\" is not a number");
+            return Double.NaN;
+        }
+        double percentage = decimals > 0 ? digits / Math.pow(10, decimals) : digits;
+        if (percentage > 100)
+        {
+            error(start, text(start, end) + " is not a percentage from 0 to 100");
+            return Double.NaN;
+        }
+        return percentage / 100.0;
+    }
+
+    private int skipSpaces(int from, int end)
+    {
+        while (from < end && isSpace(data.get(from)))
+        {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean isSpace(byte b)
+    {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+    * Decodes part of the file, for a direction name or an error message.
+    */
+    private String text(int start, int end)
+    {
+        int length = end - start;
+        if (scratch.length < length)
+        {
+            scratch = new byte[length];
+        }
+        data.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void error(int position, String message)
+    {
+        errors.add(source + ":" + line + ":" + (position - lineStart + 1) + ": " + message);
+    }
+}
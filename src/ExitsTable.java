@@ -0,0 +1,139 @@
+import java.util.*;
+import java.io.*;
+
+/**
+* Class represents the directions and probabilities read from exits.txt, which
+* may hold any number of directions. The table never changes once loaded, so one
+* table is shared by every game, with each game recording its own changes in a
+* Probabilities object. The table is held both as doubles and as packed basis
+* points for the two kinds of Probabilities.
+* @author rainflop000
+* @version 1.0
+*/
+public class ExitsTable
+{
+    public static final int OPEN = 0;
+    public static final int EXIT = 1;
+    public static final int POLICE = 2;
+
+    private String[] direction;
+    private double[][] probabilities;
+    private long[] packed;
+    private Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+    * Parametised constructor. The arrays are copied so the table cannot be changed
+    * through them afterwards.
+    * @param direction The name of each direction
+    * @param probabilities The open, exit and police probability of each direction
+    */
+    public ExitsTable(String[] direction, double[][] probabilities)
+    {
+        this.direction = direction.clone();
+        this.probabilities = new double[probabilities.length][];
+        for (int i = 0; i < probabilities.length; i++)
+        {
+            this.probabilities[i] = probabilities[i].clone();
+        }
+        packed = new long[probabilities.length];
+        for (int i = 0; i < probabilities.length; i++)
+        {
+            packed[i] = PackedProbabilities.pack(basisPoints(i, OPEN), basisPoints(i, EXIT), basisPoints(i, POLICE));
+            indexes.putIfAbsent(direction[i].toLowerCase(), i);
+        }
+    }
+
+    /**
+    * Returns a probability of a direction in whole basis points.
+    * @param index The index of the direction
+    * @param column OPEN, EXIT or POLICE
+    */
+    public final int basisPoints(int index, int column)
+    {
+        long basisPoints = Math.round(probabilities[index][column] * Probabilities.BASIS_POINTS);
+        return (int) Math.max(0, Math.min(Probabilities.BASIS_POINTS, basisPoints));
+    }
+
+    /**
+    * Returns the number of directions in the table.
+    */
+    public int size()
+    {
+        return direction.length;
+    }
+
+    /**
+    * Returns the name of a direction.
+    * @param index The index of the direction
+    */
+    public String getDirection(int index)
+    {
+        return direction[index];
+    }
+
+    /**
+    * Finds a direction by its name, ignoring case.
+    * @param name The name of the direction
+    * @return The index of the direction, or -1 if there is none of that name
+    */
+    public int indexOf(String name)
+    {
+        Integer index = indexes.get(name.toLowerCase());
+        return index == null ? -1 : index;
+    }
+
+    /**
+    * Returns a probability of a direction from the file.
+    * @param index The index of the direction
+    * @param column OPEN, EXIT or POLICE
+    */
+    public double getProbability(int index, int column)
+    {
+        return probabilities[index][column];
+    }
+
+    /**
+    * Returns the rows of probabilities. Only OverlayProbabilities may use this,
+    * and it must copy a row before changing it.
+    */
+    double[][] rows()
+    {
+        return probabilities;
+    }
+
+    /**
+    * Returns the probabilities packed one long per direction. Only
+    * PackedProbabilities may use this, and it must copy the array before
+    * changing it.
+    */
+    long[] packedRows()
+    {
+        return packed;
+    }
+
+    /**
+    * Reads the direction names and probabilities contained in an exits file of
+    * any number of directions, printing every line which could not be read.
+    * @param fileName The name of the exits file
+    * @return The table read from the file
+    */
+    public static ExitsTable load(String fileName)
+    {
+        ExitsLoader loader = new ExitsLoader();
+        ExitsTable table;
+        try
+        {
+            table = loader.load(fileName);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error reading file. Exiting...");
+            return new ExitsTable(new String[0], new double[0][]);
+        }
+        for (String error : loader.getErrors())
+        {
+            System.out.println("Error in reading probabilities on " + error);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+* Watches an exits file and loads it again whenever it changes, so a server can
+* change the probabilities of new games without restarting. The file is read
+* and checked on the watcher's own thread, and a table that reads cleanly is
+* published with a single swap of an AtomicReference. Tables never change once
+* loaded, so games started with the old table keep playing it, and readers only
+* ever see a whole table, without taking a lock.
+*
+* A file which cannot be read, has lines that cannot be read or has no
+* directions is reported and ignored, and the current table stays in use until
+* the file is fixed. Editors often save a file in several writes, so the watcher
+* waits for the changes to settle before reading it.
+* @author rainflop000
+* @version 1.0
+*/
+public class ExitsWatcher implements Closeable
+{
+    private static final long SETTLE_MILLIS = 200;
+
+    private Path file;
+    private AtomicReference<ExitsTable> current;
+    private WatchService watchService;
+    private Thread thread;
+
+    /**
+    * Parametised constructor.
+    * @param fileName The name of the exits file
+    * @param table The table already loaded from the file
+    */
+    public ExitsWatcher(String fileName, ExitsTable table)
+    {
+        file = Paths.get(fileName).toAbsolutePath();
+        current = new AtomicReference<>(table);
+    }
+
+    /**
+    * Returns the table new games should be played with.
+    */
+    public ExitsTable get()
+    {
+        return current.get();
+    }
+
+    /**
+    * Starts watching the file on a daemon thread.
+    * @throws IOException If the directory of the file cannot be watched
+    */
+    public void start() throws IOException
+    {
+        watchService = file.getFileSystem().newWatchService();
+        // Watching the directory also sees files replaced by renaming, as many editors save them
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::watch, "javalice-exits-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch()
+    {
+        try
+        {
+            while (true)
+            {
+                WatchKey key = watchService.take();
+                boolean changed = isFileChanged(key);
+                while (changed && (key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null)
+                {
+                    isFileChanged(key);
+                }
+                if (changed)
+                {
+                    reload();
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            // Closed
+        }
+    }
+
+    /**
+    * Checks if a watch key has events for the exits file, and makes it ready for
+    * more events.
+    */
+    private boolean isFileChanged(WatchKey key)
+    {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+    * Reads the file and publishes its table if it reads cleanly and differs from
+    * the current one.
+    * @return True if a new table was published
+    */
+    public boolean reload()
+    {
+        ExitsLoader loader = new ExitsLoader();
+        ExitsTable table;
+        try
+        {
+            // Read into the heap rather than mapped, as the file may be written again while it is read
+            table = loader.parse(file.toString(), ByteBuffer.wrap(Files.readAllBytes(file)));
+        }
+        catch (IOException e)
+        {
+            System.out.println("Could not read " + file.getFileName() + ", keeping the current exits: " + e.getMessage());
+            return false;
+        }
+        if (!loader.getErrors().isEmpty() || table.size() == 0)
+        {
+            for (String error : loader.getErrors())
+            {
+                System.out.println("Error in reading probabilities on " + error);
+            }
+            System.out.println(file.getFileName() + " was not loaded, keeping the current exits");
+            return false;
+        }
+        ExitsTable old = current.get();
+        if (Solution.fingerprint(table) == Solution.fingerprint(old) || !current.compareAndSet(old, table))
+        {
+            return false;
+        }
+        System.out.println("Loaded " + table.size() + " directions from " + file.getFileName() + " for new games");
+        return true;
+    }
+
+    /**
+    * Stops watching the file.
+    */
+    public void close() throws IOException
+    {
+        if (watchService != null)
+        {
+            watchService.close();
+        }
+    }
+}
@@ -2,36 +2,112 @@ import java.util.*;
 import java.io.*;
 
 /**
-* Main class of the program. Contains methods to read exits.txt and simulate a
-* series of rounds for a player to navigate, choosing rooms/portals to find exit while
-* avoiding magical police. Prints outcome of game to screen.
+* Main class of the program. Plays the rounds of a game, in which the player
+* navigates rooms/portals to find an exit while avoiding magical police. The
+* rounds are played as a state machine: whenever the player has to answer a
+* question the game stops at a Decision and waits, so a game can be advanced one
+* answer at a time and set aside between answers. Prints outcome of game to screen.
 * @author rainflop000
 * @version 1.0
 */
 public class Game
 {
     public static final String FILE_NAME = "exits.txt";
-    private static String[] direction;
-    private static double[][] probabilities;
+    private Probabilities probabilities;
+    private RandomSource random;
+    private PrintStream output;
+    private GameListener listener = GameListener.NONE;
+    private boolean timed;
+    private Player player;
+    private Room portals;
+    private Exit exit;
+    private MagicPolice police;
+    private Items items;
+    private Decision pendingDecision;
+    private int selectedIndex;
+    private int bribeAmount;
     private boolean foundExit;
     private boolean policeEncounter;
-    private boolean noPortalsAvailable;
+    private int rounds;
+    private int coinsBribed;
 
     /**
-    * Getter method for probabilities, a 2d array to store each
-    * probability contained in exits.txt in the appropriate row/direction.
+    * Parametised constructor for a game played with the probabilities of its
+    * session, so several games can be played at the same time.
+    * @param probabilities The open, exit and police probability of each direction
+    * @param random The source every random draw of the game is taken from
+    * @param output The stream the game is printed to, or null to play silently
     */
-    public double[][] getProbabilities()
+    public Game(Probabilities probabilities, RandomSource random, PrintStream output)
+    {
+        this.probabilities = probabilities;
+        this.random = random;
+        this.output = output;
+        selectedIndex = -1;
+    }
+
+    /**
+    * Sets the objects the game is played with. Called once by GameSession.
+    * @param player The object of the Player class
+    * @param portals The object of the Room class
+    * @param exit The object of the Exit class
+    * @param police The object of the Magic Police class
+    * @param items The object of the Item class
+    */
+    public void setup(Player player, Room portals, Exit exit, MagicPolice police, Items items)
+    {
+        this.player = player;
+        this.portals = portals;
+        this.exit = exit;
+        this.police = police;
+        this.items = items;
+    }
+
+    /**
+    * Getter method for the probabilities of each direction, starting from those
+    * contained in exits.txt and changing as the game is played.
+    */
+    public Probabilities getProbabilities()
     {
         return probabilities;
     }
 
     /**
-    * Getter method to store the name of the direction in exits.txt.
+    * Getter method for the listener told of every change to the game.
     */
-    public String[] getDirection()
+    public GameListener getListener()
     {
-        return direction;
+        return listener;
+    }
+
+    /**
+    * Sets the listener told of every change to the game.
+    * @param listener The listener, or null to stop listening
+    */
+    public void setListener(GameListener listener)
+    {
+        this.listener = listener == null ? GameListener.NONE : listener;
+        timed = this.listener.isTimingDecisions();
+    }
+
+    /**
+    * Adds a listener told of every change to the game, alongside the listener
+    * already set.
+    * @param added The listener to add
+    */
+    public void addListener(GameListener added)
+    {
+        setListener(listener == GameListener.NONE ? added : new CompositeListener(listener, added));
+    }
+
+    /**
+    * Sets the stream the game is printed to, such as when a game rebuilt without
+    * output is handed back to its player.
+    * @param output The stream the game is printed to, or null to play silently
+    */
+    public void setOutput(PrintStream output)
+    {
+        this.output = output;
     }
 
     /**
@@ -43,253 +119,565 @@ public class Game
     }
 
     /**
-    * Simulates a round of the game. Player chooses direction and follows
-    * state of game
-    * @param player The object of the Player class
-    * @param portals The object of the Room class
-    * @param exit The object of the Exit class
-    * @param police The object of the Magic Police class
-    * @param items The object of the Item class
+    * Getter method for the source every random draw of the game is taken from.
+    */
+    public RandomSource getRandom()
+    {
+        return random;
+    }
+
+    /**
+    * Returns the decision the game is waiting for, or null if the game is over.
+    */
+    public Decision getPendingDecision()
+    {
+        return pendingDecision;
+    }
+
+    /**
+    * Returns true once the game has been won or lost.
+    */
+    public boolean isOver()
+    {
+        return player.isGameWon() || player.isCaughtByPolice() || player.isGameEnd();
+    }
+
+    /**
+    * Returns the bribe demanded by the magic police while it is being confirmed.
+    */
+    public int getBribeAmount()
+    {
+        return bribeAmount;
+    }
+
+    /**
+    * Returns the number of rounds played so far.
+    */
+    public int getRounds()
+    {
+        return rounds;
+    }
+
+    /**
+    * Returns the number of coins paid to the magic police so far.
+    */
+    public int getCoinsBribed()
+    {
+        return coinsBribed;
+    }
+
+    /**
+    * Returns the index of the direction chosen in the current round, or -1 before
+    * the first portal is chosen.
+    */
+    public int getSelectedIndex()
+    {
+        return selectedIndex;
+    }
+
+    /**
+    * Returns true if the magic police were met in the current round and have not
+    * been escaped yet.
+    */
+    public boolean isPoliceEncounter()
+    {
+        return policeEncounter;
+    }
+
+    /**
+    * Puts the game back at a decision it was saved at. The player, items, room
+    * and probabilities are restored separately by whoever saved them.
+    * @param pendingDecision The decision the game was waiting for, or null if it
+    * was over
+    * @param selectedIndex The index of the direction chosen in the current round
+    * @param bribeAmount The bribe being confirmed
+    * @param foundExit True if the exit had been found
+    * @param policeEncounter True if the magic police had been met and not escaped
+    * @param rounds The number of rounds played
+    * @param coinsBribed The number of coins paid to the magic police
+    */
+    public void restore(Decision pendingDecision, int selectedIndex, int bribeAmount, boolean foundExit,
+        boolean policeEncounter, int rounds, int coinsBribed)
+    {
+        this.pendingDecision = pendingDecision;
+        this.selectedIndex = selectedIndex;
+        this.bribeAmount = bribeAmount;
+        this.foundExit = foundExit;
+        this.policeEncounter = policeEncounter;
+        this.rounds = rounds;
+        this.coinsBribed = coinsBribed;
+    }
+
+    /**
+    * Sets the game back to before its first round, so it can be played again.
     */
-    public void playRound(Player player, Room portals, Exit exit, MagicPolice police, Items items)
+    public void reset()
     {
-        while(!(player.isGameWon() || player.isCaughtByPolice() || player.isGameEnd()))
+        pendingDecision = null;
+        selectedIndex = -1;
+        bribeAmount = 0;
+        foundExit = false;
+        policeEncounter = false;
+        rounds = 0;
+        coinsBribed = 0;
+    }
+
+    /**
+    * Starts the game by entering the first room.
+    */
+    public void start()
+    {
+        startRound();
+    }
+
+    /**
+    * Plays the game from start to finish, asking a decision policy every
+    * question instead of waiting for input.
+    * @param policy The policy answering the questions asked during the game
+    */
+    public void play(DecisionPolicy policy)
+    {
+        start();
+        while (pendingDecision != null)
         {
-            int selectedIndex = portals.choosePortalDirection();
-            noPortalsAvailable = selectedIndex == -1;
-            if (selectedIndex != -1)
-            {
-                policeEncounter = police.checkForPoliceEncounter(selectedIndex);
-                playRoundWithPortals(player, portals, exit, police, items, selectedIndex);
-                if (policeEncounter)
-                {
-                    handlePoliceEncounters(player, portals, selectedIndex, police, items);
-                }
-            }
-            else
+            decide(policy);
+        }
+    }
+
+    /**
+    * Plays the current round, asking a decision policy every question, until the
+    * next room is entered or the game is over.
+    * @param policy The policy answering the questions asked during the game
+    */
+    public void playRound(DecisionPolicy policy)
+    {
+        int round = rounds;
+        while (pendingDecision != null && rounds == round)
+        {
+            decide(policy);
+        }
+    }
+
+    /**
+    * Asks a decision policy for the decision the game is waiting for and
+    * continues the game with its answer.
+    * @param policy The policy answering the question
+    */
+    public void decide(DecisionPolicy policy)
+    {
+        if (pendingDecision == null)
+        {
+            return;
+        }
+        Decision decision = pendingDecision;
+        long start = timed ? System.nanoTime() : 0;
+        switch (pendingDecision)
+        {
+            case CHOOSE_PORTAL:
+                choosePortal(policy.choosePortal(portals, probabilities));
+                break;
+            case OPEN_BOX:
+                answer(policy.openMagicBox());
+                break;
+            case KEEP_ITEM:
+                answer(policy.addToInventory(Inventory.CLOAK));
+                break;
+            case USE_CLOAK:
+                answer(policy.useInvisibilityCloak());
+                break;
+            case BRIBE:
+                answer(policy.bribePolice());
+                break;
+            case CONFIRM_BRIBE:
+                answer(policy.payBribe(bribeAmount, items.getCoins()));
+                break;
+            case JUMP:
+                answer(policy.jumpBackwards());
+                break;
+        }
+        if (timed)
+        {
+            listener.decisionTimed(decision, System.nanoTime() - start);
+        }
+    }
+
+    /**
+    * Advances the game with a line of input typed by the player. Asks the
+    * question again if the input does not answer it.
+    * @param input The line typed by the player
+    * @return True if the input was accepted, otherwise false
+    */
+    public boolean advance(String input)
+    {
+        if (pendingDecision == null)
+        {
+            return false;
+        }
+        Decision decision = pendingDecision;
+        long start = timed ? System.nanoTime() : 0;
+        String answer = input.trim();
+        boolean accepted = true;
+        if (pendingDecision == Decision.CHOOSE_PORTAL)
+        {
+            accepted = choosePortal(answer);
+            if (!accepted)
             {
-                playRoundWithoutPortals(player, portals, selectedIndex, police, items);
+                prompt();
             }
         }
+        else
+        {
+            answer = answer.toLowerCase();
+            answer(answer.equals("yes") || answer.equals("y"));
+        }
+        if (timed)
+        {
+            listener.decisionTimed(decision, System.nanoTime() - start);
+        }
+        return accepted;
     }
 
     /**
-    * Handles what happens when portals are available. Allows player to choose an
-    * available portal direction and ends game by printing to screen if
-    * player finds an exit.
-    * @param player The object of the Player class
-    * @param portals The object of the Room class
-    * @param exit The object of the Exit class
-    * @param police The object of the Magic Police class
-    * @param items The object of the Item class
-    * @param selectedIndex The number representing the players chosen direction
+    * Goes through the portal typed by the player, if it is open. The portal can
+    * be given by its name, the start of its name or its number in the list.
+    * @param direction The chosen direction as typed by the player
+    * @return True if the portal is open, otherwise false
+    */
+    public boolean choosePortal(String direction)
+    {
+        return choosePortal(portals.findSelectedIndex(direction));
+    }
+
+    /**
+    * Goes through the portal of the given direction, if it is open.
+    * @param index The index of the chosen direction
+    * @return True if the portal is open, otherwise false
     */
-    public void playRoundWithPortals(Player player, Room portals, Exit exit, MagicPolice police, Items items, int selectedIndex)
+    public boolean choosePortal(int index)
     {
+        if (pendingDecision != Decision.CHOOSE_PORTAL || !portals.isPortalAvailable(index))
+        {
+            return false;
+        }
+        selectedIndex = index;
+        portals.goThrough(index);
+        listener.portalChosen(index);
         foundExit = exit.checkForExit(selectedIndex);
+        listener.exitChecked(index, foundExit);
         policeEncounter = police.checkForPoliceEncounter(selectedIndex);
+        listener.policeChecked(index, policeEncounter);
         if (foundExit)
         {
             player.setGameWon(true);
+            pendingDecision = null;
+            listener.gameOver(true, rounds);
             displayOutcome("Congratulations! You found an exit and escaped Javalice!");
+            return true;
+        }
+        exit.updateExitChance(selectedIndex);
+        police.updatePoliceEncounterChance(selectedIndex);
+        if (items.findMagicBox())
+        {
+            display("You have found a magic box!");
+            waitFor(Decision.OPEN_BOX);
         }
         else
         {
-            exit.updateExitChance(selectedIndex);
-            police.updatePoliceEncounterChance(selectedIndex);
-            portals.generatePortals();
-            items.findMagicBox();
+            handlePoliceEncounters();
         }
+        return true;
     }
-    
+
     /**
-    * Handles logic of when no portal is available, depending on if player has
-    * any jumps remaining or not.
-    * @param player The object of the Player class
-    * @param portals The object of the Room class
-    * @param selectedIndex The number representing the players chosen direction
-    * @param police The object of the Magic Police class
-    * @param items The object of the Item class
+    * Answers the yes/no question the game is waiting for.
+    * @param yes True if the player answered yes, otherwise false
     */
-    public void playRoundWithoutPortals(Player player, Room portals, int selectedIndex, MagicPolice police, Items items)
+    public void answer(boolean yes)
     {
-        if (player.getJumps() > 0)
+        if (pendingDecision == null || pendingDecision == Decision.CHOOSE_PORTAL)
         {
-            handleNoPortalAndPoliceEncounters(player, portals, selectedIndex, police, items, policeEncounter);
+            return;
         }
-        else
+        listener.answered(pendingDecision, yes);
+        switch (pendingDecision)
         {
-            jumps(player, portals, selectedIndex);
+            case OPEN_BOX:
+                openMagicBox(yes);
+                break;
+            case KEEP_ITEM:
+                keepItem(yes);
+                break;
+            case USE_CLOAK:
+                useInvisibilityCloak(yes);
+                break;
+            case BRIBE:
+                bribePolice(yes);
+                break;
+            case CONFIRM_BRIBE:
+                payBribe(yes);
+                break;
+            case JUMP:
+                jump(yes);
+                break;
+            default:
+                break;
         }
     }
+
     /**
-    * Handles player actions if no portals are available
-    * and what happens if magic police are encountered.
-    * @param player The object of the Player class
-    * @param portals The object of the Room class
-    * @param selectedIndex The number representing the players chosen direction
-    * @param police The object of the Magic Police class
-    * @param items The object of the Item class
-    * @param policeEncounter The boolean representing if magic police have been
-    * encountered or not
+    * Enters a new room. The player chooses a portal if any are open, otherwise
+    * has to jump backwards.
     */
-    public void handleNoPortalAndPoliceEncounters(Player player, Room portals, int selectedIndex, MagicPolice police, Items items, boolean policeEncounter)
+    private void startRound()
     {
-        if (noPortalsAvailable)
+        rounds++;
+        int availablePortals = portals.generatePortals();
+        listener.roundStarted(rounds, availablePortals);
+        if (availablePortals > 0)
         {
-               System.out.println("No portals available!");
-                if (!(jumps(player, portals, selectedIndex)))
-                {
-                    return;
-                }
+            waitFor(Decision.CHOOSE_PORTAL);
         }
-        if (policeEncounter)
+        else if (player.getJumps() > 0)
         {
-            handlePoliceEncounters(player, portals, selectedIndex, police, items);
+            display("No portals available!");
+            waitFor(Decision.JUMP);
+        }
+        else
+        {
+            lostGame(player);
         }
     }
+
     /**
-    * Handles players actions they can take if caught by the magic police
-    * depending on the state of the game at that time
-    * @param player The object of the Player class
-    * @param portals The object of the Room class
-    * @param selectedIndex The number representing the players chosen direction
-    * @param police The object of the Magic Police class
-    * @param items The object of the Item class
+    * Opens the magic box found in the room, or leaves it.
+    * @param open True if the player opens the box
     */
-    public void handlePoliceEncounters(Player player, Room portals, int selectedIndex, MagicPolice police, Items items)
+    private void openMagicBox(boolean open)
     {
-        Scanner console = new Scanner(System.in);
-        System.out.println("You have been caught by the magic police!");
-        if (items.getInventorySize() > 0)
+        if (!open)
+        {
+            display("Magic box not opened.");
+            handlePoliceEncounters();
+            return;
+        }
+        int item = items.openMagicBox();
+        listener.boxOpened(item, item == Items.COINS ? items.getFoundCoins() : 0);
+        if (item == Items.CLOAK)
         {
-            System.out.println("Do you want to use an invisibility cloak? (yes/no)");
-            String cloakChoice = console.nextLine().trim().toLowerCase();
-            if (cloakChoice.equals("yes") || cloakChoice.equals("y"))
+            if (items.canAddToInventory(Inventory.CLOAK))
             {
-                policeEncounter = false;
-                items.useInvisibilityCloak();
-                System.out.println("You have used a cloak and hidden from the magic police!");
-                portals.generatePortals();
-                selectedIndex = portals.choosePortalDirection();
+                waitFor(Decision.KEEP_ITEM);
+                return;
             }
-            else
+            if (hasOutput())
+            {
+                display("Inventory already carrying " + items.getInventory().getCapacity() + " items. Item unable to be added to inventory");
+            }
+        }
+        handlePoliceEncounters();
+    }
+
+    /**
+    * Adds the cloak found in the magic box to the inventory, or leaves it.
+    * @param keep True if the player keeps the cloak
+    */
+    private void keepItem(boolean keep)
+    {
+        if (keep)
+        {
+            if (items.addToInventory(Inventory.CLOAK))
             {
-                bribePolice(player, portals, selectedIndex, police, items);
+                listener.itemKept();
             }
         }
         else
         {
-            bribePolice(player, portals, selectedIndex, police, items);
+            display("Item not added to inventory.");
         }
+        handlePoliceEncounters();
     }
+
     /**
-    * Allows player option to bribe magic police if nothing stored in inventory
-    * @param player The object of the Player class
-    * @param portals The object of the Room class
-    * @param selectedIndex The number representing the players chosen direction
-    * @param police The object of the Magic Police class
-    * @param items The object of the Item class
+    * Handles what happens at the end of a round in which no exit was found.
+    * If the magic police were encountered, the player can hide with a cloak or
+    * offer a bribe, otherwise the player enters the next room.
     */
-    public void bribePolice(Player player, Room portals, int selectedIndex, MagicPolice police, Items items)
+    private void handlePoliceEncounters()
     {
-        Scanner console = new Scanner(System.in);
-        System.out.println("You don't have any invisibility cloaks in your inventory!");
-        System.out.println("Do you want to bribe the magic police? (yes/no)");
-        String bribeChoice = console.nextLine().trim().toLowerCase();
-        if (bribeChoice.equals("yes") || bribeChoice.equals("y"))
+        if (!policeEncounter)
+        {
+            startRound();
+            return;
+        }
+        display("You have been caught by the magic police!");
+        if (items.getInventory().has(Inventory.CLOAK))
         {
-            bribeAmount(player, portals, selectedIndex, police, items);
+            waitFor(Decision.USE_CLOAK);
         }
         else
         {
-            System.out.println("You have chosen not to bribe the magic police and been sent to jail!");
-            jumps(player, portals, selectedIndex);
+            display("You don't have any invisibility cloaks in your inventory!");
+            waitFor(Decision.BRIBE);
         }
     }
 
     /**
-    * Determines bribe amount magic police request from player using the method
-    * located in the Exit class.
-    * @param player The object of the Player class
-    * @param portals The object of the Room class
-    * @param selectedIndex The number representing the players chosen direction
-    * @param police The object of the Magic Police class
-    * @param items The object of the Item class
-    * @return The bribe amount requested by the magic police
+    * Hides from the magic police with a cloak, or goes on to the bribe.
+    * @param useCloak True if the player uses a cloak
+    */
+    private void useInvisibilityCloak(boolean useCloak)
+    {
+        if (useCloak)
+        {
+            policeEncounter = false;
+            items.useInvisibilityCloak();
+            listener.cloakUsed();
+            display("You have used a cloak and hidden from the magic police!");
+            startRound();
+        }
+        else
+        {
+            waitFor(Decision.BRIBE);
+        }
+    }
+
+    /**
+    * Asks the magic police for their bribe, or goes to jail.
+    * @param bribe True if the player offers a bribe
     */
-    public int bribeAmount(Player player, Room portals, int selectedIndex, MagicPolice police, Items items)
+    private void bribePolice(boolean bribe)
     {
-        int bribeAmount = police.getBribeAmount(items.getCoins());
-        System.out.print("The magic police demand " + bribeAmount + " coins as a bribe!");
-        System.out.println(" You have " + items.getCoins() + " coins available.");
-        
+        if (!bribe)
+        {
+            display("You have chosen not to bribe the magic police and been sent to jail!");
+            goToJail();
+            return;
+        }
+        bribeAmount = police.getBribeAmount(items.getCoins());
+        listener.bribeDemanded(bribeAmount, items.getCoins());
+        if (hasOutput())
+        {
+            display("The magic police demand " + bribeAmount + " coins as a bribe! You have " + items.getCoins() + " coins available.");
+        }
         if (items.getCoins() >= bribeAmount)
         {
-            Scanner console = new Scanner(System.in);
-            System.out.println("Do you want to pay this bribe of " + bribeAmount + " coins? (yes/no)");
-            String bribeConfirm = console.nextLine().trim().toLowerCase();
-            if (bribeConfirm.equals("yes") || bribeConfirm.equals("y"))
-            {
-                items.useCoins(bribeAmount);
-                System.out.println("You have successfully bribed the police!");
-                System.out.println("You have " + items.getCoins() + " coins remaining.");
-                policeEncounter = false;
-                portals.generatePortals();
-                selectedIndex = portals.choosePortalDirection();
-            }
-            else
+            waitFor(Decision.CONFIRM_BRIBE);
+        }
+        else
+        {
+            display("You don't have enough coins to bribe the magic police!");
+            display("You have been sent to jail!");
+            goToJail();
+        }
+    }
+
+    /**
+    * Pays the bribe demanded by the magic police, or goes to jail.
+    * @param pay True if the player pays the bribe
+    */
+    private void payBribe(boolean pay)
+    {
+        if (pay)
+        {
+            items.useCoins(bribeAmount);
+            coinsBribed += bribeAmount;
+            policeEncounter = false;
+            listener.bribePaid(bribeAmount);
+            display("You have successfully bribed the police!");
+            if (hasOutput())
             {
-                System.out.println("You have chosen not to pay the bribe and been sent to jail.");
-                jumps(player, portals, selectedIndex);
+                display("You have " + items.getCoins() + " coins remaining.");
             }
+            startRound();
         }
         else
         {
-            System.out.println("You don't have enough coins to bribe the magic police!");
-            System.out.println("You have been sent to jail!");
-            jumps(player, portals, selectedIndex);
+            display("You have chosen not to pay the bribe and been sent to jail.");
+            goToJail();
         }
-        return bribeAmount;
     }
 
     /**
-    * Handles player jumps if no portals are available or player is caught
-    * by magic police.
-    * @param player The object of the Player class
-    * @param portals The object of the Room class
-    * @param selectedIndex The number representing the players chosen direction
+    * Sends the player to jail, from which they can only jump backwards.
     */
-    public boolean jumps(Player player, Room portals, int selectedIndex)
+    private void goToJail()
     {
         if (player.getJumps() > 0)
         {
-            Scanner console = new Scanner(System.in);
-            System.out.println("Do you want to jump backwards? (yes/no)");
-            String jumpInput = console.nextLine().trim().toLowerCase();
+            waitFor(Decision.JUMP);
+        }
+        else
+        {
+            lostGame(player);
+        }
+    }
 
-            if (jumpInput.equals("yes") || jumpInput.equals("y"))
-            {
-                boolean jumpUsed = player.useJump();
-                if (jumpUsed)
-                {
-                    // Generate a new set of exits and police encounters
-                    portals.generatePortals();
-                    selectedIndex = portals.choosePortalDirection();
-                    return true;
-                }
-            }
-            else
-            {
-                System.out.println("Jump not used.");
-                lostGame(player);
-            }
+    /**
+    * Jumps backwards into a new room, or the room the player came from in a maze,
+    * or ends the game.
+    * @param jump True if the player uses a jump
+    */
+    private void jump(boolean jump)
+    {
+        if (jump && player.useJump())
+        {
+            listener.jumpUsed(player.getJumps());
+            portals.jumpBack();
+            startRound();
         }
         else
         {
+            display("Jump not used.");
             lostGame(player);
         }
-        return false;
+    }
+
+    /**
+    * Stops the game at a decision and asks the player for it.
+    * @param decision The decision the game waits for
+    */
+    private void waitFor(Decision decision)
+    {
+        pendingDecision = decision;
+        if (hasOutput())
+        {
+            prompt();
+        }
+    }
+
+    /**
+    * Prints the question for the decision the game is waiting for.
+    */
+    public void prompt()
+    {
+        if (pendingDecision == null)
+        {
+            return;
+        }
+        switch (pendingDecision)
+        {
+            case CHOOSE_PORTAL:
+                display("Choose an available portal direction: " + Arrays.toString(portals.getAvailablePortals()));
+                break;
+            case OPEN_BOX:
+                display("Do you want to open it? (yes/no)");
+                break;
+            case KEEP_ITEM:
+                display("Do you want to add the item to your inventory? (yes/no)");
+                break;
+            case USE_CLOAK:
+                display("Do you want to use an invisibility cloak? (yes/no)");
+                break;
+            case BRIBE:
+                display("Do you want to bribe the magic police? (yes/no)");
+                break;
+            case CONFIRM_BRIBE:
+                display("Do you want to pay this bribe of " + bribeAmount + " coins? (yes/no)");
+                break;
+            case JUMP:
+                display("Do you want to jump backwards? (yes/no)");
+                break;
+        }
     }
 
 /**
@@ -297,9 +685,32 @@ public class Game
 * @param message The outcome message to be displayed.
 */
 public void displayOutcome(String message) {
-    System.out.println(message);
+    display(message);
 }
 
+    /**
+    * Returns true if the game is printed somewhere. Messages built from several
+    * parts are only built when it is, so a game without output does not create
+    * strings nobody reads.
+    */
+    public boolean hasOutput()
+    {
+        return output != null;
+    }
+
+    /**
+    * Prints a message to the game's output. Does nothing when the game is played
+    * without output, such as in a simulation.
+    * @param message The message to be displayed.
+    */
+    public void display(String message)
+    {
+        if (output != null)
+        {
+            output.println(message);
+        }
+    }
+
     /**
     * Ends game and prints message to screen if player caught or out of jumps.
     * @param player The object of the Player class
@@ -307,89 +718,91 @@ public void displayOutcome(String message) {
     public void lostGame(Player player)
     {
         player.setGameEnd(true);
+        pendingDecision = null;
+        listener.gameOver(false, rounds);
         displayOutcome("You were caught by the police and have no moves remaining! Game over - you lose.");
     }
 
     /**
-    * Main method for the program. Initialises the game, reads exits.txt, creates
-    * the necessary objects from other classes, and begins the game.
-    * @params command line arguments. Unnecessary for this program.
+    * Main method for the program. Reads exits.txt, creates a session for the
+    * player, and plays the game one line of input at a time. Typing "save" at any
+    * question saves the game, and entering the same name next time offers to
+    * resume it. Typing "hint" gives the best answer, if the Solver has saved its
+    * solution of exits.txt. A player's best escape is kept in the leaderboard.
+    * @params command line arguments. An optional seed to replay the same game.
     */
-    public static void main(String[] args)
+    public static void main(String[] args) throws IOException
     {
-        direction = new String[4];
-        probabilities = new double[4][3];
-        Exit[] exits = new Exit[4];
+        ExitsTable table = ExitsTable.load(FILE_NAME);
+        RandomSource random = args.length > 0 ? new SplitMixRandom(Long.parseLong(args[0])) : new SplitMixRandom();
+        Scanner console = new Scanner(System.in);
+        GameSession session = new GameSession(table, random, System.out);
+        Hints hints = null;
         try
         {
-            //Read Exits.txt file
-            FileReader reader = new FileReader(FILE_NAME);
-            try
+            hints = Hints.load(Solution.FILE_NAME, table);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Hints are not available: " + e.getMessage());
+        }
+        Leaderboard leaderboard = null;
+        try
+        {
+            leaderboard = Leaderboard.load(Leaderboard.FILE_NAME);
+        }
+        catch (IOException e)
+        {
+            System.out.println("The leaderboard is not available: " + e.getMessage());
+        }
+
+        try (SnapshotFile saves = new SnapshotFile(SnapshotFile.FILE_NAME))
+        {
+            long id = SnapshotFile.idOf(session.getPlayer().promptPlayerName(console));
+            Game game = session.getGame();
+            boolean resumed = false;
+            if (saves.contains(id))
+            {
+                game.display("You have a saved game. Do you want to resume it? (yes/no)");
+                String answer = console.hasNextLine() ? console.nextLine().trim().toLowerCase() : "";
+                resumed = (answer.equals("yes") || answer.equals("y")) && saves.load(id, session);
+            }
+            if (resumed)
+            {
+                game.prompt();
+            }
+            else
+            {
+                session.getPlayer().displayGameInstructions();
+                game.start();
+            }
+            while (!game.isOver() && console.hasNextLine())
             {
-                Scanner fileInput = new Scanner(reader);
-                int line = 0;
-                while (fileInput.hasNextLine())
+                String line = console.nextLine();
+                if (line.trim().equalsIgnoreCase("save"))
                 {
-                    //Read contents with split() method (,)
-                    String[] row = fileInput.nextLine().split(",");
-                    try
-                    {
-                        for(int i = 0; i < row.length; i++)
-                        {
-                            if (i == 0)
-                            {
-                                direction[line] = row[i];
-                            }
-                            else
-                            {
-                                probabilities[line][i-1] = (Double.parseDouble(row[i]) / 100.0);
-                            }
-                        }
-                        line++;
-                      }
-                    catch (Exception e)
-                    {
-                        System.out.println("Error in reading probabilities on line" + line + ": " + e.getMessage());
-                        continue;
-                    }
+                    saves.save(id, session);
+                    game.display("Game saved. Enter the same name next time to resume it.");
+                    game.prompt();
                 }
+                else if (line.trim().equalsIgnoreCase("hint"))
+                {
+                    game.display(hints != null ? hints.hint(session) : "No hints available. Run java Solver to create them.");
                 }
-            finally
-            {
-                try
+                else
                 {
-                    reader.close();
+                    game.advance(line);
                 }
-                catch (Exception e)
+            }
+            if (game.isOver())
+            {
+                saves.remove(id);
+                if (leaderboard != null && leaderboard.submit(session))
                 {
-                    System.out.println("Error reading file. Exiting...");
+                    leaderboard.save(Leaderboard.FILE_NAME);
+                    game.display(leaderboard.describe(session.getPlayer().getPlayerName(), Leaderboard.SHOWN));
                 }
             }
         }
-        catch (Exception e)
-        {
-            System.out.println("Error reading file. Exiting...");
-        }
-        
-        //Configure Exits
-        for (int i = 0; i < 4; i++)
-        {
-            exits[i] = new Exit(direction[i], probabilities[i][2]);
-        }
-
-        //Create objects
-        Game game = new Game();
-        Items items = new Items();
-        items.setGame(game);
-        items.setProbabilities(probabilities);
-        Room portals = new Room(game, items);
-        Exit exit = new Exit(game);
-        MagicPolice police = new MagicPolice(game);
-        Player player = new Player();
-        
-        player.promptPlayerName();
-        player.displayGameInstructions();
-        
-        game.playRound(player, portals, exit, police, items);
     }
 }
@@ -0,0 +1,157 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+* Client driver for testing the game servers. Opens many connections at once,
+* each playing a game by answering the server's prompts like SimplePolicy does:
+* a random open portal, and yes to every other question. A think time between
+* answers keeps the connections open and idle, as real players would.
+* @author rainflop000
+* @version 1.0
+*/
+public class GameClient
+{
+    private static final String PORTAL_PROMPT = "Choose an available portal direction: [";
+
+    private String host;
+    private int port;
+    private long thinkMillis;
+    private LongAdder wins = new LongAdder();
+    private LongAdder losses = new LongAdder();
+    private LongAdder failures = new LongAdder();
+    private AtomicInteger connected = new AtomicInteger();
+    private AtomicInteger maxConnected = new AtomicInteger();
+
+    /**
+    * Parametised constructor.
+    * @param host The host the server runs on
+    * @param port The port the server listens on
+    * @param thinkMillis The time to wait before each answer
+    */
+    public GameClient(String host, int port, long thinkMillis)
+    {
+        this.host = host;
+        this.port = port;
+        this.thinkMillis = thinkMillis;
+    }
+
+    /**
+    * Plays a number of games at the same time, one connection each, and waits
+    * until all of them are over.
+    * @param clients The number of games to play
+    */
+    public void run(int clients)
+    {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (int i = 0; i < clients; i++)
+            {
+                String name = "Bot" + (i % 1000000);
+                executor.execute(() -> play(name));
+            }
+        }
+    }
+
+    /**
+    * Plays one game over a new connection.
+    * @param name The player name to send
+    */
+    private void play(String name)
+    {
+        try (Socket socket = new Socket(host, port))
+        {
+            int now = connected.incrementAndGet();
+            maxConnected.accumulateAndGet(now, Math::max);
+            try
+            {
+                playGame(socket, name);
+            }
+            finally
+            {
+                connected.decrementAndGet();
+            }
+        }
+        catch (IOException e)
+        {
+            failures.increment();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+    * Answers every question of a game until the server closes the connection.
+    * @param socket The open connection
+    * @param name The player name to send
+    */
+    private void playGame(Socket socket, String name) throws IOException, InterruptedException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+        String line;
+        boolean won = false;
+        while ((line = in.readLine()) != null)
+        {
+            String answer = null;
+            if (line.startsWith("Please enter your name"))
+            {
+                answer = name;
+            }
+            else if (line.startsWith(PORTAL_PROMPT))
+            {
+                String[] portals = line.substring(PORTAL_PROMPT.length()).split("\\), ");
+                answer = String.valueOf(ThreadLocalRandom.current().nextInt(portals.length) + 1);
+            }
+            else if (line.startsWith(GameServer.RESUME_PROMPT))
+            {
+                // A new game for every connection, even under a name left unfinished
+                answer = "";
+            }
+            else if (line.endsWith("(yes/no)"))
+            {
+                answer = "yes";
+            }
+            else if (line.startsWith("Congratulations!"))
+            {
+                won = true;
+            }
+            if (answer != null)
+            {
+                if (thinkMillis > 0)
+                {
+                    Thread.sleep(thinkMillis);
+                }
+                out.println(answer);
+            }
+        }
+        (won ? wins : losses).increment();
+    }
+
+    /**
+    * Main method for the client driver. Prints the outcome of the games played.
+    * @param args Optional host, port, number of clients and think time in milliseconds
+    */
+    public static void main(String[] args)
+    {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long thinkMillis = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+        GameClient client = new GameClient(host, port, thinkMillis);
+        long start = System.nanoTime();
+        client.run(clients);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("Games won:       " + client.wins.sum());
+        System.out.println("Games lost:      " + client.losses.sum());
+        System.out.println("Failed:          " + client.failures.sum());
+        System.out.println("Most connected:  " + client.maxConnected.get());
+        System.out.printf("Games per second: %.0f (%.1f s)%n", (client.wins.sum() + client.losses.sum()) / seconds, seconds);
+    }
+}
@@ -0,0 +1,541 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+* Append-only journal recording every change made to the games it is told of,
+* as compact binary events. Each game collects its events in a buffer of its
+* own, without any lock, and hands them to the journal when its recorder is
+* synced, before the player is shown what happened. A background thread writes
+* and forces the events handed over to the disk together, every few milliseconds
+* or as soon as a game is waiting, so any number of games share one disk flush
+* and no player is shown a move a crash could lose.
+*
+* Each event is a type byte, the id of the game and a few bytes of detail. A
+* game starts with its random stream, its resume code and the player's name, and
+* the portals chosen and questions answered after that are enough to play it
+* again exactly. When the journal is opened, every game without an outcome is
+* rebuilt that way, checking that the exits and police found match the ones
+* recorded.
+*
+* The resume code is random and only the game's player is told it. A player
+* needs it to carry on a game, so nobody else can take the game over by entering
+* the same name.
+* @author rainflop000
+* @version 1.0
+*/
+public class GameJournal implements Closeable
+{
+    public static final long DEFAULT_COMMIT_MILLIS = 10;
+
+    private static final byte START = 1;
+    private static final byte ROUND = 2;
+    private static final byte PORTAL = 3;
+    private static final byte EXIT = 4;
+    private static final byte POLICE = 5;
+    private static final byte CHANCE = 6;
+    private static final byte ANSWER = 7;
+    private static final byte BOX = 8;
+    private static final byte ITEM = 9;
+    private static final byte CLOAK = 10;
+    private static final byte BRIBE = 11;
+    private static final byte JUMP = 12;
+    private static final byte OUTCOME = 13;
+    // Bytes after the type and id of each event, by type; a start adds the name
+    private static final int[] DETAIL = {0, 25, 6, 2, 3, 3, 5, 2, 5, 0, 0, 4, 1, 5};
+    private static final int EVENT_HEADER = 1 + 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int RECORDER_BUFFER_SIZE = 256;
+    private static final Decision[] DECISIONS = Decision.values();
+
+    private ExitsTable table;
+    private Maze maze;
+    private FileChannel channel;
+    private long commitMillis;
+    private Thread committer;
+    private ByteBuffer active = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer flushing = ByteBuffer.allocate(BUFFER_SIZE);
+    private long appended;
+    private long durable;
+    private boolean syncRequested;
+    private boolean closed;
+    private IOException failure;
+    private Map<Long, GameSession> recovered = new ConcurrentHashMap<>();
+    private Map<Long, Long> resumeTokens = new ConcurrentHashMap<>();
+    private SecureRandom tokenRandom = new SecureRandom();
+    private AtomicLong nextId = new AtomicLong();
+
+    /**
+    * Opens a journal, rebuilding the unfinished games already in it, and starts
+    * the thread writing it to the disk.
+    * @param fileName The name of the journal file, created if it does not exist
+    * @param table The table the games in the journal were played with
+    * @param commitMillis The longest time an event waits before it is written
+    * @throws IOException If the journal cannot be read or opened
+    */
+    public GameJournal(String fileName, ExitsTable table, long commitMillis) throws IOException
+    {
+        this(fileName, table, null, commitMillis);
+    }
+
+    /**
+    * Opens a journal of games played in a maze, rebuilding the unfinished games
+    * already in it, and starts the thread writing it to the disk.
+    * @param fileName The name of the journal file, created if it does not exist
+    * @param table The table the games in the journal were played with
+    * @param maze The maze the games were played in, or null if every room was new
+    * @param commitMillis The longest time an event waits before it is written
+    * @throws IOException If the journal cannot be read or opened
+    */
+    public GameJournal(String fileName, ExitsTable table, Maze maze, long commitMillis) throws IOException
+    {
+        this.table = table;
+        this.maze = maze;
+        this.commitMillis = commitMillis;
+        Path path = Paths.get(fileName);
+        long end = Files.exists(path) ? recover(ByteBuffer.wrap(Files.readAllBytes(path))) : 0;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Cut off an event left half written by a crash, so new events follow the last whole one
+        channel.truncate(end);
+        channel.position(end);
+        committer = new Thread(this::commit, "javalice-journal");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+    * Returns the unfinished games rebuilt when the journal was opened, by id. The
+    * games are played without output and can be taken from the map to be played on.
+    */
+    public Map<Long, GameSession> getRecovered()
+    {
+        return recovered;
+    }
+
+    /**
+    * Returns the resume code of an unfinished game, which its player must give to
+    * carry on with it.
+    * @param id The id of the game
+    * @return The code, or 0 if the game is not an unfinished game of the journal
+    */
+    public long getResumeToken(long id)
+    {
+        return resumeTokens.getOrDefault(id, 0L);
+    }
+
+    /**
+    * Returns an id not used by any game in the journal.
+    */
+    public long nextId()
+    {
+        return nextId.getAndIncrement();
+    }
+
+    /**
+    * Records the start of a game, which must not have entered its first room yet.
+    * @param id The id of the game
+    * @param session The game, which must draw from a SplitMixRandom
+    * @return The listener recording the game's events, to be set on the game
+    */
+    public Recorder start(long id, GameSession session)
+    {
+        if (!(session.getGame().getRandom() instanceof SplitMixRandom random))
+        {
+            throw new IllegalArgumentException("Only games drawing from a SplitMixRandom can be journaled");
+        }
+        byte[] name = session.getPlayer().getPlayerName().getBytes(StandardCharsets.UTF_8);
+        long token;
+        do
+        {
+            // Positive and short enough to type as a dozen letters and digits
+            token = tokenRandom.nextLong() >>> 4;
+        }
+        while (token == 0);
+        resumeTokens.put(id, token);
+        Recorder recorder = new Recorder(id);
+        ByteBuffer event = recorder.begin(START, DETAIL[START] + name.length);
+        event.putLong(random.getSeed()).putLong(random.getGamma()).putLong(token).put((byte) name.length).put(name);
+        return recorder;
+    }
+
+    /**
+    * Returns a listener recording the further events of a game already started
+    * in the journal, such as a recovered game. The game's earlier recorder must
+    * have been synced.
+    * @param id The id of the game
+    */
+    public Recorder resume(long id)
+    {
+        return new Recorder(id);
+    }
+
+    /**
+    * Waits until every event handed to the journal so far has been forced to the
+    * disk.
+    * @throws IOException If the journal could not be written
+    */
+    public void sync() throws IOException
+    {
+        sync(null);
+    }
+
+    /**
+    * Hands the events a game has collected to the journal, then waits until they
+    * and every event handed over before them have been forced to the disk.
+    * @param recorder The recorder of the game, or null to hand nothing over
+    * @throws IOException If the journal could not be written
+    */
+    private synchronized void sync(Recorder recorder) throws IOException
+    {
+        if (recorder != null && recorder.events.position() > 0)
+        {
+            ByteBuffer events = recorder.events.flip();
+            if (active.remaining() < events.remaining())
+            {
+                // The disk has fallen behind, so hold more events until it catches up
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * active.capacity(), active.position() + events.remaining()));
+                active.flip();
+                active = larger.put(active);
+            }
+            appended += events.remaining();
+            active.put(events);
+            events.clear();
+        }
+        long target = appended;
+        if (durable >= target && failure == null)
+        {
+            return;
+        }
+        syncRequested = true;
+        notifyAll();
+        while (durable < target && failure == null)
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+    * Writes the events handed to the journal and closes it. Events a game has not
+    * handed over yet, which its player has not been shown, are not written.
+    */
+    public void close() throws IOException
+    {
+        synchronized (this)
+        {
+            closed = true;
+            notifyAll();
+        }
+        try
+        {
+            committer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+    * Body of the thread writing the journal. Swaps the buffers every commit
+    * interval, or sooner if sync() is waiting, and writes and forces the full one
+    * while games keep recording into the other.
+    */
+    private void commit()
+    {
+        try
+        {
+            while (true)
+            {
+                ByteBuffer batch;
+                long end;
+                synchronized (this)
+                {
+                    if (!closed && !syncRequested)
+                    {
+                        wait(commitMillis);
+                    }
+                    syncRequested = false;
+                    if (active.position() == 0)
+                    {
+                        if (closed)
+                        {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch = active;
+                    active = flushing;
+                    flushing = batch;
+                    end = appended;
+                }
+                batch.flip();
+                while (batch.hasRemaining())
+                {
+                    channel.write(batch);
+                }
+                channel.force(false);
+                batch.clear();
+                synchronized (this)
+                {
+                    durable = end;
+                    notifyAll();
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            synchronized (this)
+            {
+                failure = e;
+                notifyAll();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // Only interrupted when the program is stopping
+        }
+    }
+
+    /**
+    * Plays every game in the journal again from its start and its answers, keeping
+    * the games without an outcome.
+    * @param journal The contents of the journal file
+    * @return The length of the journal up to its last whole event
+    */
+    private long recover(ByteBuffer journal)
+    {
+        Set<Long> mismatched = new HashSet<>();
+        long maxId = -1;
+        while (journal.remaining() >= EVENT_HEADER)
+        {
+            int start = journal.position();
+            int type = journal.get();
+            if (type < START || type > OUTCOME || journal.remaining() < 8 + DETAIL[type])
+            {
+                journal.position(start);
+                break;
+            }
+            long id = journal.getLong();
+            maxId = Math.max(maxId, id);
+            if (type == START)
+            {
+                long seed = journal.getLong();
+                long gamma = journal.getLong();
+                long token = journal.getLong();
+                byte[] name = new byte[journal.get() & 0xff];
+                if (journal.remaining() < name.length)
+                {
+                    journal.position(start);
+                    break;
+                }
+                journal.get(name);
+                GameSession session = new GameSession(new OverlayProbabilities(table), new SplitMixRandom(seed, gamma), null, maze);
+                session.getPlayer().setPlayerName(new String(name, StandardCharsets.UTF_8));
+                session.getGame().start();
+                recovered.put(id, session);
+                resumeTokens.put(id, token);
+                continue;
+            }
+            GameSession session = recovered.get(id);
+            Game game = session == null ? null : session.getGame();
+            switch (type)
+            {
+                case PORTAL:
+                    int index = journal.getShort() & 0xffff;
+                    if (game != null && !game.choosePortal(index))
+                    {
+                        mismatched.add(id);
+                    }
+                    break;
+                case EXIT:
+                    journal.getShort();
+                    if (game != null && game.isFoundExit() != (journal.get() != 0))
+                    {
+                        mismatched.add(id);
+                    }
+                    break;
+                case POLICE:
+                    journal.getShort();
+                    if (game != null && game.isPoliceEncounter() != (journal.get() != 0))
+                    {
+                        mismatched.add(id);
+                    }
+                    break;
+                case ANSWER:
+                    int ordinal = journal.get() & 0xff;
+                    if (ordinal >= DECISIONS.length)
+                    {
+                        // A damaged event, so the journal ends before it
+                        return finishRecovery(mismatched, maxId, start);
+                    }
+                    Decision decision = DECISIONS[ordinal];
+                    boolean yes = journal.get() != 0;
+                    if (game != null)
+                    {
+                        if (game.getPendingDecision() != decision)
+                        {
+                            mismatched.add(id);
+                        }
+                        game.answer(yes);
+                    }
+                    break;
+                case OUTCOME:
+                    journal.position(journal.position() + DETAIL[type]);
+                    recovered.remove(id);
+                    resumeTokens.remove(id);
+                    mismatched.remove(id);
+                    break;
+                default:
+                    // Recorded for auditing; playing the game again repeats it
+                    journal.position(journal.position() + DETAIL[type]);
+                    break;
+            }
+        }
+        return finishRecovery(mismatched, maxId, journal.position());
+    }
+
+    /**
+    * Drops the games which played differently from the journal and sets the next
+    * id after the largest one read.
+    * @return The length of the journal kept
+    */
+    private long finishRecovery(Set<Long> mismatched, long maxId, long end)
+    {
+        for (long id : mismatched)
+        {
+            resumeTokens.remove(id);
+            if (recovered.remove(id) != null)
+            {
+                System.out.println("Game " + id + " in the journal does not play the same with this exits file, so it was not recovered.");
+            }
+        }
+        nextId.set(maxId + 1);
+        return end;
+    }
+
+    /**
+    * Listener recording the events of one game. Events are kept by the recorder
+    * until sync() hands them to the journal, so a recorder must only be used by
+    * the thread playing its game.
+    */
+    public class Recorder implements GameListener
+    {
+        private long id;
+        private ByteBuffer events = ByteBuffer.allocate(RECORDER_BUFFER_SIZE);
+
+        Recorder(long id)
+        {
+            this.id = id;
+        }
+
+        /**
+        * Hands the game's events to the journal and waits until they have been
+        * forced to the disk, along with those of every game syncing at the same time.
+        * @throws IOException If the journal could not be written
+        */
+        public void sync() throws IOException
+        {
+            GameJournal.this.sync(this);
+        }
+
+        /**
+        * Starts an event in the game's buffer, making it larger if it is full.
+        * @return The buffer, positioned for the detail of the event
+        */
+        private ByteBuffer begin(byte type, int detail)
+        {
+            int size = EVENT_HEADER + detail;
+            if (events.remaining() < size)
+            {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * events.capacity(), events.position() + size));
+                events.flip();
+                events = larger.put(events);
+            }
+            return events.put(type).putLong(id);
+        }
+
+        public void roundStarted(int round, int availablePortals)
+        {
+            begin(ROUND, DETAIL[ROUND]).putInt(round).putShort((short) availablePortals);
+        }
+
+        public void portalChosen(int index)
+        {
+            begin(PORTAL, DETAIL[PORTAL]).putShort((short) index);
+        }
+
+        public void exitChecked(int index, boolean found)
+        {
+            begin(EXIT, DETAIL[EXIT]).putShort((short) index).put((byte) (found ? 1 : 0));
+        }
+
+        public void policeChecked(int index, boolean met)
+        {
+            begin(POLICE, DETAIL[POLICE]).putShort((short) index).put((byte) (met ? 1 : 0));
+        }
+
+        public void chanceChanged(int index, int column, int basisPoints)
+        {
+            begin(CHANCE, DETAIL[CHANCE]).putShort((short) index).put((byte) column).putShort((short) basisPoints);
+        }
+
+        public void answered(Decision decision, boolean yes)
+        {
+            begin(ANSWER, DETAIL[ANSWER]).put((byte) decision.ordinal()).put((byte) (yes ? 1 : 0));
+        }
+
+        public void boxOpened(int item, int coins)
+        {
+            begin(BOX, DETAIL[BOX]).put((byte) item).putInt(coins);
+        }
+
+        public void itemKept()
+        {
+            begin(ITEM, DETAIL[ITEM]);
+        }
+
+        public void cloakUsed()
+        {
+            begin(CLOAK, DETAIL[CLOAK]);
+        }
+
+        public void bribePaid(int coins)
+        {
+            begin(BRIBE, DETAIL[BRIBE]).putInt(coins);
+        }
+
+        public void jumpUsed(int jumpsLeft)
+        {
+            begin(JUMP, DETAIL[JUMP]).put((byte) jumpsLeft);
+        }
+
+        public void gameOver(boolean won, int rounds)
+        {
+            resumeTokens.remove(id);
+            begin(OUTCOME, DETAIL[OUTCOME]).put((byte) (won ? 1 : 0)).putInt(rounds);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+* Listener told of every change a game makes to its state, such as a journal
+* recording games or a counter of how they are played. Every method does
+* nothing unless overridden, so a listener only implements the events it needs.
+* Events are sent on the thread playing the game, in the order they happen.
+* @author rainflop000
+* @version 1.0
+*/
+public interface GameListener
+{
+    /**
+    * Listener used by games nobody listens to.
+    */
+    GameListener NONE = new GameListener()
+    {
+    };
+
+    /**
+    * Called when a new room is entered.
+    * @param round The number of the round, starting at 1
+    * @param availablePortals The number of open portals
+    */
+    default void roundStarted(int round, int availablePortals)
+    {
+    }
+
+    /**
+    * Called when the player goes through an open portal.
+    * @param index The index of the direction
+    */
+    default void portalChosen(int index)
+    {
+    }
+
+    /**
+    * Called when the portal has been checked for the exit.
+    * @param index The index of the direction
+    * @param found True if the exit was found
+    */
+    default void exitChecked(int index, boolean found)
+    {
+    }
+
+    /**
+    * Called when the portal has been checked for the magic police.
+    * @param index The index of the direction
+    * @param met True if the magic police were met
+    */
+    default void policeChecked(int index, boolean met)
+    {
+    }
+
+    /**
+    * Called when the exit or police chance of a direction is changed.
+    * @param index The index of the direction
+    * @param column ExitsTable.EXIT or ExitsTable.POLICE
+    * @param basisPoints The change in hundredths of a percent, before it is
+    * kept between 0% and 100%
+    */
+    default void chanceChanged(int index, int column, int basisPoints)
+    {
+    }
+
+    /**
+    * Called when the player answers a yes/no question.
+    * @param decision The question answered
+    * @param yes True if the player answered yes
+    */
+    default void answered(Decision decision, boolean yes)
+    {
+    }
+
+    /**
+    * Called when a magic box is opened.
+    * @param item The index of the item found, such as Items.COINS
+    * @param coins The number of coins found, or 0 if the item was not coins
+    */
+    default void boxOpened(int item, int coins)
+    {
+    }
+
+    /**
+    * Called when a cloak is added to the inventory.
+    */
+    default void itemKept()
+    {
+    }
+
+    /**
+    * Called when a cloak is used to hide from the magic police.
+    */
+    default void cloakUsed()
+    {
+    }
+
+    /**
+    * Called when the magic police name their bribe.
+    * @param amount The number of coins demanded
+    * @param coins The number of coins the player has
+    */
+    default void bribeDemanded(int amount, int coins)
+    {
+    }
+
+    /**
+    * Called when a bribe is paid to the magic police.
+    * @param coins The number of coins paid
+    */
+    default void bribePaid(int coins)
+    {
+    }
+
+    /**
+    * Called when the player jumps backwards.
+    * @param jumpsLeft The number of jumps remaining
+    */
+    default void jumpUsed(int jumpsLeft)
+    {
+    }
+
+    /**
+    * Called when the game is won or lost.
+    * @param won True if the player escaped
+    * @param rounds The number of rounds played
+    */
+    default void gameOver(boolean won, int rounds)
+    {
+    }
+
+    /**
+    * Checks if the listener wants to be told how long each decision took, which
+    * costs the game two reads of the clock per decision.
+    * @return True if decisionTimed() should be called
+    */
+    default boolean isTimingDecisions()
+    {
+        return false;
+    }
+
+    /**
+    * Called when the game has finished processing a decision, if the listener
+    * is timing decisions.
+    * @param decision The question answered
+    * @param nanos The time taken to answer it and play on to the next question,
+    * in nanoseconds
+    */
+    default void decisionTimed(Decision decision, long nanos)
+    {
+    }
+}
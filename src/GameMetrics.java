@@ -0,0 +1,292 @@
+import java.io.*;
+import java.lang.management.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+import com.sun.net.httpserver.*;
+
+/**
+* Counts what happens in every game of a server and how long each decision takes
+* to process. One GameMetrics is added as a listener to every game, and the
+* counts can be read over JMX or scraped as plain text from a local HTTP port.
+*
+* Counters are LongAdders, which give each thread its own cell when threads
+* collide, and latencies go into a LatencyHistogram for each kind of decision,
+* so recording an event takes a few nanoseconds without locks even when every
+* processor is playing games.
+* @author rainflop000
+* @version 1.0
+*/
+public class GameMetrics implements GameListener, GameMetricsMXBean
+{
+    public static final String OBJECT_NAME = "javalice:type=GameMetrics";
+    public static final int DEFAULT_PORT = 9404;
+    private static final String PREFIX = "javalice_";
+
+    private LongAdder roundsPlayed = new LongAdder();
+    private LongAdder exitsFound = new LongAdder();
+    private LongAdder policeEncounters = new LongAdder();
+    private LongAdder cloaksUsed = new LongAdder();
+    private LongAdder bribesPaid = new LongAdder();
+    private LongAdder bribesRefused = new LongAdder();
+    private LongAdder jumpsUsed = new LongAdder();
+    private LongAdder wins = new LongAdder();
+    private LongAdder losses = new LongAdder();
+    private LatencyHistogram[] latencies = new LatencyHistogram[Decision.values().length];
+    private HttpServer httpServer;
+
+    /**
+    * Default constructor.
+    */
+    public GameMetrics()
+    {
+        for (int i = 0; i < latencies.length; i++)
+        {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public void roundStarted(int round, int availablePortals)
+    {
+        roundsPlayed.increment();
+    }
+
+    public void exitChecked(int index, boolean found)
+    {
+        if (found)
+        {
+            exitsFound.increment();
+        }
+    }
+
+    public void policeChecked(int index, boolean met)
+    {
+        if (met)
+        {
+            policeEncounters.increment();
+        }
+    }
+
+    public void answered(Decision decision, boolean yes)
+    {
+        if (!yes && (decision == Decision.BRIBE || decision == Decision.CONFIRM_BRIBE))
+        {
+            bribesRefused.increment();
+        }
+    }
+
+    public void cloakUsed()
+    {
+        cloaksUsed.increment();
+    }
+
+    public void bribePaid(int coins)
+    {
+        bribesPaid.increment();
+    }
+
+    public void jumpUsed(int jumpsLeft)
+    {
+        jumpsUsed.increment();
+    }
+
+    public void gameOver(boolean won, int rounds)
+    {
+        (won ? wins : losses).increment();
+    }
+
+    public boolean isTimingDecisions()
+    {
+        return true;
+    }
+
+    public void decisionTimed(Decision decision, long nanos)
+    {
+        latencies[decision.ordinal()].record(nanos);
+    }
+
+    /**
+    * Returns the histogram of the time taken by one kind of decision.
+    * @param decision The kind of decision
+    */
+    public LatencyHistogram getLatencies(Decision decision)
+    {
+        return latencies[decision.ordinal()];
+    }
+
+    public long getRoundsPlayed()
+    {
+        return roundsPlayed.sum();
+    }
+
+    public long getExitsFound()
+    {
+        return exitsFound.sum();
+    }
+
+    public long getPoliceEncounters()
+    {
+        return policeEncounters.sum();
+    }
+
+    public long getCloaksUsed()
+    {
+        return cloaksUsed.sum();
+    }
+
+    public long getBribesPaid()
+    {
+        return bribesPaid.sum();
+    }
+
+    public long getBribesRefused()
+    {
+        return bribesRefused.sum();
+    }
+
+    public long getJumpsUsed()
+    {
+        return jumpsUsed.sum();
+    }
+
+    public long getWins()
+    {
+        return wins.sum();
+    }
+
+    public long getLosses()
+    {
+        return losses.sum();
+    }
+
+    public long getDecisions()
+    {
+        long decisions = 0;
+        for (LatencyHistogram histogram : latencies)
+        {
+            decisions += histogram.getCount();
+        }
+        return decisions;
+    }
+
+    public Map<String, Long> getDecisionLatencyMedian()
+    {
+        return getDecisionLatencies(50);
+    }
+
+    public Map<String, Long> getDecisionLatency99thPercentile()
+    {
+        return getDecisionLatencies(99);
+    }
+
+    public Map<String, Long> getDecisionLatency999thPercentile()
+    {
+        return getDecisionLatencies(99.9);
+    }
+
+    public Map<String, Long> getDecisionLatencyMax()
+    {
+        return getDecisionLatencies(100);
+    }
+
+    private Map<String, Long> getDecisionLatencies(double percentile)
+    {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Decision decision : Decision.values())
+        {
+            values.put(decision.name(), getLatencies(decision).getPercentile(percentile));
+        }
+        return values;
+    }
+
+    /**
+    * Registers the metrics with the platform MBean server, so JMX clients can
+    * read them.
+    * @throws JMException If metrics are already registered under the same name
+    */
+    public void registerMBean() throws JMException
+    {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    /**
+    * Serves the metrics as plain text at /metrics, in the format Prometheus
+    * scrapes. Only connections from this machine are accepted.
+    * @param port The port to listen on, or 0 for any free port
+    * @return The port listened on
+    * @throws IOException If the port cannot be opened
+    */
+    public int serve(int port) throws IOException
+    {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/metrics", exchange ->
+        {
+            byte[] body = format().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(body);
+            }
+        });
+        httpServer.start();
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+    * Stops serving the metrics over HTTP.
+    */
+    public void close()
+    {
+        if (httpServer != null)
+        {
+            httpServer.stop(0);
+        }
+    }
+
+    /**
+    * Returns every counter and the latency percentiles of every kind of decision
+    * as plain text, one value per line.
+    */
+    public String format()
+    {
+        StringBuilder text = new StringBuilder();
+        appendCounter(text, "rounds_played_total", "Rounds started", getRoundsPlayed());
+        appendCounter(text, "exits_found_total", "Portals that led to the exit", getExitsFound());
+        appendCounter(text, "police_encounters_total", "Portals where the magic police were met", getPoliceEncounters());
+        appendCounter(text, "cloaks_used_total", "Invisibility cloaks used", getCloaksUsed());
+        appendCounter(text, "bribes_paid_total", "Bribes paid to the magic police", getBribesPaid());
+        appendCounter(text, "bribes_refused_total", "Bribes the player chose not to pay", getBribesRefused());
+        appendCounter(text, "jumps_used_total", "Jumps backwards", getJumpsUsed());
+        appendCounter(text, "wins_total", "Games won", getWins());
+        appendCounter(text, "losses_total", "Games lost", getLosses());
+
+        String name = PREFIX + "decision_latency_nanoseconds";
+        text.append("# HELP ").append(name).append(" Time taken to process a decision\n");
+        text.append("# TYPE ").append(name).append(" summary\n");
+        double[] quantiles = {0.5, 0.9, 0.99, 0.999, 1};
+        for (Decision decision : Decision.values())
+        {
+            LatencyHistogram histogram = getLatencies(decision);
+            String label = "{decision=\"" + decision.name().toLowerCase() + "\"";
+            long[] values = histogram.getPercentiles(50, 90, 99, 99.9, 100);
+            for (int i = 0; i < quantiles.length; i++)
+            {
+                text.append(name).append(label).append(",quantile=\"").append(quantiles[i]).append("\"} ")
+                    .append(values[i]).append('\n');
+            }
+            text.append(name).append("_sum").append(label).append("} ").append(histogram.getTotal()).append('\n');
+            text.append(name).append("_count").append(label).append("} ").append(histogram.getCount()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void appendCounter(StringBuilder text, String name, String help, long value)
+    {
+        text.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(PREFIX).append(name).append(" counter\n");
+        text.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+}
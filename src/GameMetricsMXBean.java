@@ -0,0 +1,39 @@
+import java.util.*;
+
+/**
+* Management interface of GameMetrics, read by JMX clients such as JConsole
+* under the name javalice:type=GameMetrics. Latencies are in nanoseconds, kept
+* for each kind of decision by the name of its Decision.
+* @author rainflop000
+* @version 1.0
+*/
+public interface GameMetricsMXBean
+{
+    long getRoundsPlayed();
+
+    long getExitsFound();
+
+    long getPoliceEncounters();
+
+    long getCloaksUsed();
+
+    long getBribesPaid();
+
+    long getBribesRefused();
+
+    long getJumpsUsed();
+
+    long getWins();
+
+    long getLosses();
+
+    long getDecisions();
+
+    Map<String, Long> getDecisionLatencyMedian();
+
+    Map<String, Long> getDecisionLatency99thPercentile();
+
+    Map<String, Long> getDecisionLatency999thPercentile();
+
+    Map<String, Long> getDecisionLatencyMax();
+}
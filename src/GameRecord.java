@@ -0,0 +1,140 @@
+import java.io.*;
+import java.nio.*;
+
+/**
+* Recording of a finished game: the state its random stream started from and
+* every decision made in it, enough to play it again exactly, along with a
+* fingerprint of the state it finished in so a replay can be checked.
+* @author rainflop000
+* @version 1.0
+*/
+public class GameRecord
+{
+    private long seed;
+    private long gamma;
+    private boolean packed;
+    private byte[] decisions;
+    private boolean won;
+    private int rounds;
+    private long fingerprint;
+
+    /**
+    * Parametised constructor.
+    * @param seed The seed of the game's random stream when it started
+    * @param gamma The increment of the game's random stream
+    * @param packed True if the game was played with PackedProbabilities
+    * @param decisions The index of every portal chosen, 7 bits to a byte, and 1 or
+    * 0 for every yes or no, in the order they were made
+    * @param won True if the game was won
+    * @param rounds The number of rounds played
+    * @param fingerprint The fingerprint of the state the game finished in
+    */
+    public GameRecord(long seed, long gamma, boolean packed, byte[] decisions, boolean won, int rounds, long fingerprint)
+    {
+        this.seed = seed;
+        this.gamma = gamma;
+        this.packed = packed;
+        this.decisions = decisions;
+        this.won = won;
+        this.rounds = rounds;
+        this.fingerprint = fingerprint;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    public long getGamma()
+    {
+        return gamma;
+    }
+
+    public boolean isPacked()
+    {
+        return packed;
+    }
+
+    public byte[] getDecisions()
+    {
+        return decisions;
+    }
+
+    public boolean isWon()
+    {
+        return won;
+    }
+
+    public int getRounds()
+    {
+        return rounds;
+    }
+
+    public long getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    /**
+    * Returns a fingerprint of the state a game is in: the outcome, the rounds
+    * played, the player's jumps, the items and the chances of every direction.
+    * @param session The game
+    */
+    public static long fingerprint(GameSession session)
+    {
+        Player player = session.getPlayer();
+        Items items = session.getItems();
+        Game game = session.getGame();
+        Probabilities probabilities = session.getProbabilities();
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, (player.isGameWon() ? 1 : 0) | (player.isGameEnd() ? 2 : 0) | (player.isCaughtByPolice() ? 4 : 0));
+        hash = mix(hash, game.getRounds());
+        hash = mix(hash, game.getCoinsBribed());
+        hash = mix(hash, player.getJumps());
+        hash = mix(hash, items.getCoins());
+        hash = mix(hash, items.getInventorySize());
+        for (int i = 0; i < probabilities.size(); i++)
+        {
+            hash = mix(hash, probabilities.getExitBasisPoints(i));
+            hash = mix(hash, probabilities.getPoliceBasisPoints(i));
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value)
+    {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+    * Writes the record to a stream.
+    * @param out The stream to write to
+    */
+    public void write(DataOutputStream out) throws IOException
+    {
+        out.writeLong(seed);
+        out.writeLong(gamma);
+        out.writeByte((packed ? 1 : 0) | (won ? 2 : 0));
+        out.writeInt(rounds);
+        out.writeLong(fingerprint);
+        out.writeInt(decisions.length);
+        out.write(decisions);
+    }
+
+    /**
+    * Reads a record written by write().
+    * @param in The buffer to read from, positioned at the record
+    * @return The record, with the buffer positioned after it
+    */
+    public static GameRecord read(ByteBuffer in)
+    {
+        long seed = in.getLong();
+        long gamma = in.getLong();
+        int flags = in.get();
+        int rounds = in.getInt();
+        long fingerprint = in.getLong();
+        byte[] decisions = new byte[in.getInt()];
+        in.get(decisions);
+        return new GameRecord(seed, gamma, (flags & 1) != 0, decisions, (flags & 2) != 0, rounds, fingerprint);
+    }
+}
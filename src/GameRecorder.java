@@ -0,0 +1,68 @@
+import java.util.*;
+
+/**
+* Listener recording the decisions made in a game, whether by a player or a
+* decision policy, so it can be played again by a Replayer.
+* @author rainflop000
+* @version 1.0
+*/
+public final class GameRecorder implements GameListener
+{
+    private GameSession session;
+    private long seed;
+    private long gamma;
+    private byte[] decisions = new byte[64];
+    private int count;
+
+    /**
+    * Starts recording a game, which must not have entered its first room yet.
+    * Sets the recorder as the game's listener.
+    * @param session The game, which must draw from a SplitMixRandom
+    */
+    public GameRecorder(GameSession session)
+    {
+        if (!(session.getGame().getRandom() instanceof SplitMixRandom random))
+        {
+            throw new IllegalArgumentException("Only games drawing from a SplitMixRandom can be recorded");
+        }
+        this.session = session;
+        seed = random.getSeed();
+        gamma = random.getGamma();
+        session.getGame().setListener(this);
+    }
+
+    public void portalChosen(int index)
+    {
+        // Written 7 bits to a byte, so a portal of the first 128 directions takes one byte
+        while (index >= 0x80)
+        {
+            add(index & 0x7f | 0x80);
+            index >>>= 7;
+        }
+        add(index);
+    }
+
+    public void answered(Decision decision, boolean yes)
+    {
+        add(yes ? 1 : 0);
+    }
+
+    /**
+    * Returns the recording of the game so far, with the state it is in now.
+    */
+    public GameRecord toRecord()
+    {
+        return new GameRecord(seed, gamma, session.getProbabilities() instanceof PackedProbabilities,
+            Arrays.copyOf(decisions, count), session.getPlayer().isGameWon(), session.getGame().getRounds(),
+            GameRecord.fingerprint(session));
+    }
+
+    private void add(int decision)
+    {
+        if (count == decisions.length)
+        {
+            decisions = Arrays.copyOf(decisions, count * 2);
+        }
+        decisions[count++] = (byte) decision;
+    }
+}
@@ -0,0 +1,531 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* Line-based TCP server letting many players play Javalice at the same time. Each
+* connection plays its own session on its own virtual thread, reading answers
+* from the socket and printing the same prompts the console game prints. Games
+* can be recorded in a GameJournal, in which case a player whose game was cut
+* off by a crash or a dropped connection carries on with it by entering the same
+* name again and the resume code they were given when the game started. What a
+* move printed is held back until its events are on the disk, so a player is
+* never shown a move the journal could lose. Games can also be played in a Maze
+* shared by every player.
+* @author rainflop000
+* @version 1.0
+*/
+public class GameServer
+{
+    public static final int DEFAULT_PORT = 4444;
+    private static final int BACKLOG = 1024;
+    private static final int MAX_LINE_LENGTH = 256;
+    // Long enough for the longest answer in any characters, at up to 4 bytes each in UTF-8
+    private static final int MAX_LINE_BYTES = 4 * MAX_LINE_LENGTH;
+    static final String RESUME_PROMPT = "You have an unfinished game. Enter its resume code to carry on, or leave it empty to start a new game:";
+    private static final int CODE_RADIX = 36;
+    private static final int BUFFER_SIZE = 512;
+
+    private ExitsTable table;
+    private RandomSource random;
+    private GameJournal journal;
+    private Maze maze;
+    private GameMetrics metrics;
+    private Leaderboard leaderboard;
+    private ExitsWatcher exits;
+    // Ids of the unfinished games of each name, in lower case
+    private Map<String, Set<Long>> unfinished = new ConcurrentHashMap<>();
+    private ServerSocket serverSocket;
+
+    /**
+    * Parametised constructor.
+    * @param table The directions and probabilities every session starts from
+    * @param random The source every session's random stream is split from
+    */
+    public GameServer(ExitsTable table, RandomSource random)
+    {
+        this(table, random, null);
+    }
+
+    /**
+    * Parametised constructor for a server recording its games.
+    * @param table The directions and probabilities every session starts from
+    * @param random The source every session's random stream is split from, which
+    * must be a SplitMixRandom if games are recorded
+    * @param journal The journal the games are recorded in, or null
+    */
+    public GameServer(ExitsTable table, RandomSource random, GameJournal journal)
+    {
+        this(table, random, journal, null);
+    }
+
+    /**
+    * Parametised constructor for a server whose games are played in a maze.
+    * @param table The directions and probabilities every session starts from
+    * @param random The source every session's random stream is split from, which
+    * must be a SplitMixRandom if games are recorded
+    * @param journal The journal the games are recorded in, or null
+    * @param maze The maze every game is played in, which must be the maze the
+    * journal was opened with, or null for every room to be new
+    */
+    public GameServer(ExitsTable table, RandomSource random, GameJournal journal, Maze maze)
+    {
+        this.table = table;
+        this.maze = maze;
+        this.random = random;
+        this.journal = journal;
+        if (journal != null)
+        {
+            for (Map.Entry<Long, GameSession> entry : journal.getRecovered().entrySet())
+            {
+                addUnfinished(entry.getValue().getPlayer().getPlayerName(), entry.getKey());
+            }
+        }
+    }
+
+    /**
+    * Counts what happens in every game started or resumed from now on.
+    * @param metrics The metrics added to every game, or null
+    */
+    public void setMetrics(GameMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+    * Starts every new game with the table last loaded by a watcher, rather than
+    * the table the server was created with. Cannot be used with a journal or a
+    * maze, which are tied to one table.
+    * @param exits The watcher of the exits file, or null
+    */
+    public void setExitsWatcher(ExitsWatcher exits)
+    {
+        this.exits = exits;
+    }
+
+    /**
+    * Ranks the escapes of every game finished from now on.
+    * @param leaderboard The leaderboard games are submitted to, or null
+    */
+    public void setLeaderboard(Leaderboard leaderboard)
+    {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+    * Accepts connections until the server is closed, starting a virtual thread
+    * for each one.
+    * @param port The port to listen on, or 0 for any free port
+    * @throws IOException If the port cannot be opened
+    */
+    public void serve(int port) throws IOException
+    {
+        serverSocket = new ServerSocket(port, BACKLOG);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            while (!serverSocket.isClosed())
+            {
+                Socket socket;
+                try
+                {
+                    socket = serverSocket.accept();
+                }
+                catch (SocketException e)
+                {
+                    break;
+                }
+                // Split here, on the accepting thread, since splitting changes the root stream
+                RandomSource sessionRandom = random.split();
+                executor.execute(() -> play(socket, sessionRandom));
+            }
+        }
+    }
+
+    /**
+    * Returns the port the server is listening on, once serve() has been called.
+    */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+    * Stops accepting connections. Games already being played are finished.
+    */
+    public void close() throws IOException
+    {
+        serverSocket.close();
+    }
+
+    /**
+    * Plays one session over a connection, until the game is over or the player
+    * disconnects.
+    * @param socket The connection of the player
+    * @param sessionRandom The source every random draw of the session is taken from
+    */
+    private void play(Socket socket, RandomSource sessionRandom)
+    {
+        try (socket)
+        {
+            InputStream in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+            HeldOutput held = new HeldOutput(socket.getOutputStream());
+            PrintStream out = held.getPrintStream();
+            ExitsTable sessionTable = exits != null ? exits.get() : table;
+            GameSession session = new GameSession(new OverlayProbabilities(sessionTable), sessionRandom, out, maze);
+            Player player = session.getPlayer();
+            Game game = session.getGame();
+            StringBuilder line = new StringBuilder();
+            byte[] bytes = new byte[MAX_LINE_BYTES];
+
+            do
+            {
+                player.askPlayerName();
+                held.send();
+                if (!readLine(in, bytes, line))
+                {
+                    return;
+                }
+            }
+            while (!player.choosePlayerName(line.toString()));
+
+            long id = -1;
+            Set<Long> unfinishedIds = journal == null ? null : unfinished.get(player.getPlayerName().toLowerCase());
+            GameSession recovered = null;
+            if (unfinishedIds != null && !unfinishedIds.isEmpty())
+            {
+                game.display(RESUME_PROMPT);
+                held.send();
+                if (!readLine(in, bytes, line))
+                {
+                    return;
+                }
+                for (long unfinishedId : unfinishedIds)
+                {
+                    // Removing the id first means only one connection can take the game
+                    if (isResumeCode(line.toString(), journal.getResumeToken(unfinishedId)) && unfinishedIds.remove(unfinishedId))
+                    {
+                        id = unfinishedId;
+                        recovered = journal.getRecovered().remove(id);
+                        break;
+                    }
+                }
+                if (recovered == null && !line.toString().isBlank())
+                {
+                    game.display("That is not the resume code of the game, so a new game is started.");
+                }
+            }
+            if (recovered != null)
+            {
+                session = recovered;
+                game = session.getGame();
+                game.setOutput(out);
+                GameJournal.Recorder recorder = journal.resume(id);
+                held.setRecorder(recorder);
+                game.setListener(recorder);
+                game.display("Welcome back, " + session.getPlayer().getPlayerName() + "! Your game carries on where it stopped.");
+                game.prompt();
+            }
+            else
+            {
+                if (journal != null)
+                {
+                    id = journal.nextId();
+                    GameJournal.Recorder recorder = journal.start(id, session);
+                    held.setRecorder(recorder);
+                    game.setListener(recorder);
+                }
+                player.displayGameInstructions();
+                if (journal != null)
+                {
+                    game.display("Your resume code is " + Long.toString(journal.getResumeToken(id), CODE_RADIX)
+                        + ". If you are disconnected, enter your name and this code to carry on.");
+                }
+            }
+            if (metrics != null)
+            {
+                game.addListener(metrics);
+            }
+            game.addListener(new JfrListener());
+            if (recovered == null)
+            {
+                game.start();
+            }
+            try
+            {
+                held.send();
+                while (!game.isOver() && readLine(in, bytes, line))
+                {
+                    game.advance(line.toString());
+                    held.send();
+                }
+            }
+            finally
+            {
+                // Kept whether the player closed the connection or it was reset
+                if (!game.isOver())
+                {
+                    keepUnfinished(id, session);
+                }
+            }
+            if (game.isOver() && leaderboard != null && leaderboard.submit(session))
+            {
+                game.display(leaderboard.describe(session.getPlayer().getPlayerName(), Leaderboard.SHOWN));
+                held.send();
+            }
+        }
+        catch (IOException e)
+        {
+            // The player disconnected, which ends their game unless it is journaled
+        }
+    }
+
+    /**
+    * Keeps a recorded game whose player disconnected, so they can carry on with
+    * it by connecting again with the same name and its resume code.
+    * @param id The id of the game in the journal, or -1 if it is not recorded
+    * @param session The game
+    */
+    private void keepUnfinished(long id, GameSession session)
+    {
+        if (id < 0)
+        {
+            return;
+        }
+        session.getGame().setOutput(null);
+        journal.getRecovered().put(id, session);
+        addUnfinished(session.getPlayer().getPlayerName(), id);
+    }
+
+    /**
+    * Output of a session held in memory until it is sent, so the events behind it
+    * can be forced to the journal first.
+    */
+    private static class HeldOutput extends ByteArrayOutputStream
+    {
+        private OutputStream socket;
+        private PrintStream out;
+        private GameJournal.Recorder recorder;
+
+        HeldOutput(OutputStream socket)
+        {
+            super(BUFFER_SIZE);
+            this.socket = socket;
+            out = new PrintStream(this, false, StandardCharsets.UTF_8);
+        }
+
+        PrintStream getPrintStream()
+        {
+            return out;
+        }
+
+        /**
+        * Sets the recorder whose events are synced before anything is sent.
+        */
+        void setRecorder(GameJournal.Recorder recorder)
+        {
+            this.recorder = recorder;
+        }
+
+        /**
+        * Syncs the game's events to the journal, then sends what the session
+        * printed.
+        * @throws IOException If the journal could not be written or the
+        * connection fails, in which case nothing is sent
+        */
+        void send() throws IOException
+        {
+            out.flush();
+            if (recorder != null)
+            {
+                recorder.sync();
+            }
+            writeTo(socket);
+            socket.flush();
+            reset();
+        }
+    }
+
+    private void addUnfinished(String name, long id)
+    {
+        unfinished.computeIfAbsent(name.toLowerCase(), key -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    /**
+    * Checks a code typed by a player against the resume code of a game.
+    * @param text The code typed
+    * @param token The resume code of the game, or 0 if it has none
+    * @return True if the code is the game's
+    */
+    private static boolean isResumeCode(String text, long token)
+    {
+        try
+        {
+            return token != 0 && Long.parseLong(text.trim().toLowerCase(Locale.ROOT), CODE_RADIX) == token;
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+    * Reads a line of input sent in UTF-8, dropping anything past the longest
+    * answer the game accepts.
+    * @param in The stream to read from
+    * @param bytes A buffer the bytes of the line are collected in
+    * @param line The builder the line is stored in, without its line ending
+    * @return True if a line was read, false at the end of the stream
+    * @throws IOException If the connection fails
+    */
+    static boolean readLine(InputStream in, byte[] bytes, StringBuilder line) throws IOException
+    {
+        line.setLength(0);
+        int length = 0;
+        int c;
+        boolean ended = false;
+        while ((c = in.read()) != -1)
+        {
+            if (c == '\n')
+            {
+                ended = true;
+                break;
+            }
+            if (c != '\r' && length < bytes.length)
+            {
+                bytes[length++] = (byte) c;
+            }
+        }
+        line.append(new String(bytes, 0, length, StandardCharsets.UTF_8));
+        if (line.length() > MAX_LINE_LENGTH)
+        {
+            line.setLength(MAX_LINE_LENGTH);
+        }
+        return ended || length > 0;
+    }
+
+    /**
+    * Main method for the server. Reads the exits file and serves games until the
+    * program is stopped.
+    * @param args Optional port and name of the exits file, then the name of a
+    * journal file to record the games in, "maze" or "maze=seed" to play every
+    * game in one maze, "metrics" or "metrics=port" to serve metrics on a local
+    * port, "leaderboard" or "leaderboard=file" to rank escapes and "watch" to load
+    * the exits file again whenever it changes, in any order
+    */
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String fileName = args.length > 1 ? args[1] : Game.FILE_NAME;
+        ExitsTable table = ExitsTable.load(fileName);
+        String journalName = null;
+        Maze maze = null;
+        GameMetrics metrics = null;
+        Leaderboard leaderboard = null;
+        boolean watch = false;
+        for (int i = 2; i < args.length; i++)
+        {
+            if (args[i].equals("metrics") || args[i].startsWith("metrics="))
+            {
+                metrics = startMetrics(args[i]);
+                continue;
+            }
+            if (args[i].equals("leaderboard") || args[i].startsWith("leaderboard="))
+            {
+                leaderboard = startLeaderboard(args[i]);
+                continue;
+            }
+            if (args[i].equals("watch"))
+            {
+                watch = true;
+                continue;
+            }
+            if (args[i].equals("maze") || args[i].startsWith("maze="))
+            {
+                // The same seed gives the same maze, so recovered games carry on in it
+                maze = new Maze(table, args[i].length() > 5 ? Long.parseLong(args[i].substring(5)) : 0);
+            }
+            else
+            {
+                journalName = args[i];
+            }
+        }
+        GameJournal journal = null;
+        if (journalName != null)
+        {
+            journal = new GameJournal(journalName, table, maze, GameJournal.DEFAULT_COMMIT_MILLIS);
+            System.out.println("Recovered " + journal.getRecovered().size() + " unfinished games from " + journalName);
+        }
+        GameServer server = new GameServer(table, new SplitMixRandom(), journal, maze);
+        if (journal != null)
+        {
+            GameJournal stopping = journal;
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+            {
+                try
+                {
+                    stopping.close();
+                }
+                catch (IOException e)
+                {
+                    System.out.println("Journal not closed: " + e.getMessage());
+                }
+            }));
+        }
+        server.setMetrics(metrics);
+        server.setLeaderboard(leaderboard);
+        if (watch && (journal != null || maze != null))
+        {
+            System.out.println("Journaled games and mazes are tied to one exits file, so it is not watched");
+        }
+        else if (watch)
+        {
+            ExitsWatcher exits = new ExitsWatcher(fileName, table);
+            exits.start();
+            server.setExitsWatcher(exits);
+        }
+        System.out.println("Javalice server listening on port " + port);
+        server.serve(port);
+    }
+
+    /**
+    * Starts collecting metrics for a server, registered over JMX and served at
+    * http://localhost:port/metrics.
+    * @param option "metrics", or "metrics=port" for another port than the default
+    * @return The metrics to add to every game
+    * @throws IOException If the port cannot be opened
+    */
+    static GameMetrics startMetrics(String option) throws IOException
+    {
+        GameMetrics metrics = new GameMetrics();
+        int port = option.length() > 8 ? Integer.parseInt(option.substring(8)) : GameMetrics.DEFAULT_PORT;
+        try
+        {
+            metrics.registerMBean();
+        }
+        catch (javax.management.JMException e)
+        {
+            System.out.println("Metrics not registered over JMX: " + e.getMessage());
+        }
+        port = metrics.serve(port);
+        System.out.println("Metrics served at http://localhost:" + port + "/metrics");
+        return metrics;
+    }
+
+    /**
+    * Loads the leaderboard of a server and saves it while it changes.
+    * @param option "leaderboard", or "leaderboard=file" for another file than the
+    * default
+    * @return The leaderboard to submit finished games to
+    * @throws IOException If the leaderboard cannot be read
+    */
+    static Leaderboard startLeaderboard(String option) throws IOException
+    {
+        String fileName = option.length() > 12 ? option.substring(12) : Leaderboard.FILE_NAME;
+        Leaderboard leaderboard = Leaderboard.load(fileName);
+        leaderboard.saveEvery(fileName, Leaderboard.SAVE_SECONDS);
+        System.out.println("Loaded " + leaderboard.size() + " players from " + fileName);
+        return leaderboard;
+    }
+}
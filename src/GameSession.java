@@ -0,0 +1,124 @@
+import java.io.*;
+
+/**
+* Class represents one player's game, creating the objects the game is played
+* with. Each session owns its own probabilities, starting from a shared
+* ExitsTable, so any number of sessions can be played in the same program
+* without changing each other's probabilities.
+* @author rainflop000
+* @version 1.0
+*/
+public class GameSession
+{
+    private Probabilities probabilities;
+    private Game game;
+    private Player player;
+    private Items items;
+    private Room portals;
+    private Exit exit;
+    private MagicPolice police;
+
+    /**
+    * Parametised constructor.
+    * @param table The directions and probabilities the session starts from
+    * @param random The source every random draw of the game is taken from
+    * @param output The stream the game is printed to, or null to play silently
+    */
+    public GameSession(ExitsTable table, RandomSource random, PrintStream output)
+    {
+        this(new OverlayProbabilities(table), random, output);
+    }
+
+    /**
+    * Parametised constructor for a session using a particular kind of
+    * probabilities, such as PackedProbabilities to save memory.
+    * @param probabilities The probabilities of the session, not shared with any other
+    * @param random The source every random draw of the game is taken from
+    * @param output The stream the game is printed to, or null to play silently
+    */
+    public GameSession(Probabilities probabilities, RandomSource random, PrintStream output)
+    {
+        this(probabilities, random, output, null);
+    }
+
+    /**
+    * Parametised constructor for a session played in a maze, whose rooms keep
+    * their portals and are shared with every other session in the maze.
+    * @param probabilities The probabilities of the session, not shared with any other
+    * @param random The source every random draw of the game is taken from
+    * @param output The stream the game is printed to, or null to play silently
+    * @param maze The maze, or null for every room to be new
+    */
+    public GameSession(Probabilities probabilities, RandomSource random, PrintStream output, Maze maze)
+    {
+        this.probabilities = probabilities;
+        game = new Game(probabilities, random, output);
+        items = new Items();
+        items.setGame(game);
+        portals = new Room(game, items);
+        portals.setMaze(maze);
+        exit = new Exit(game);
+        police = new MagicPolice(game);
+        player = new Player();
+        player.setGame(game);
+        game.setup(player, portals, exit, police, items);
+    }
+
+    public Probabilities getProbabilities()
+    {
+        return probabilities;
+    }
+
+    public Game getGame()
+    {
+        return game;
+    }
+
+    public Player getPlayer()
+    {
+        return player;
+    }
+
+    public Items getItems()
+    {
+        return items;
+    }
+
+    public Room getRoom()
+    {
+        return portals;
+    }
+
+    public Exit getExit()
+    {
+        return exit;
+    }
+
+    public MagicPolice getPolice()
+    {
+        return police;
+    }
+
+    /**
+    * Sets the session back to the start of a new game for the same player. The
+    * random stream carries on where the last game left it.
+    */
+    public void reset()
+    {
+        probabilities.reset();
+        game.reset();
+        player.reset();
+        items.reset();
+        portals.reset();
+    }
+
+    /**
+    * Plays rounds until the game is won or lost, asking a decision policy every
+    * question.
+    * @param policy The policy answering the questions asked during the game
+    */
+    public void play(DecisionPolicy policy)
+    {
+        game.play(policy);
+    }
+}
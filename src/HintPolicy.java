@@ -0,0 +1,60 @@
+/**
+* Decision policy making every decision the way Hints advise, to measure how
+* well a solution plays the real game.
+* @author rainflop000
+* @version 1.0
+*/
+public class HintPolicy implements DecisionPolicy
+{
+    private Hints hints;
+    private GameSession session;
+
+    /**
+    * Parametised constructor.
+    * @param hints The hints for the table being played
+    * @param session The session the policy plays
+    */
+    public HintPolicy(Hints hints, GameSession session)
+    {
+        this.hints = hints;
+        this.session = session;
+    }
+
+    /**
+    * Chooses the open portal giving the best chance of winning.
+    */
+    public int choosePortal(Room room, Probabilities probabilities)
+    {
+        return hints.bestPortal(session);
+    }
+
+    public boolean openMagicBox()
+    {
+        return hints.openMagicBox(session);
+    }
+
+    public boolean addToInventory(int kind)
+    {
+        return hints.keepCloak(session);
+    }
+
+    public boolean useInvisibilityCloak()
+    {
+        return hints.useCloak(session);
+    }
+
+    public boolean bribePolice()
+    {
+        return hints.bribe(session);
+    }
+
+    public boolean payBribe(int bribeAmount, int coins)
+    {
+        return hints.payBribe(session, bribeAmount);
+    }
+
+    public boolean jumpBackwards()
+    {
+        return true;
+    }
+}
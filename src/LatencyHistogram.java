@@ -0,0 +1,177 @@
+import java.util.concurrent.atomic.*;
+
+/**
+* Histogram of latencies in nanoseconds, recorded from many threads at once
+* without locks. Like an HDR histogram, values are counted in buckets whose
+* width grows with the value, so every value from a nanosecond to hours is
+* kept to within about 6% using under a thousand counters.
+*
+* Values below 32 get a bucket each. Above that, each power of two is split into
+* 16 buckets, found from the highest set bit of the value and the four bits
+* after it. The counters are striped: each thread records into one of several
+* copies picked by its id, so threads on different processors rarely write to
+* the same cache line, and the copies are added together when read.
+* @author rainflop000
+* @version 1.0
+*/
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+    // Longs between stripes, so the ends of neighbouring stripes are not on one cache line
+    private static final int STRIPE_LENGTH = BUCKETS + 8;
+
+    private int stripeMask;
+    private AtomicLongArray counts;
+    private LongAdder total = new LongAdder();
+    private LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+    * Default constructor, with a stripe for each processor up to 8.
+    */
+    public LatencyHistogram()
+    {
+        this(Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+    * Parametised constructor.
+    * @param stripes The number of copies of the counters, rounded up to a power of two
+    */
+    public LatencyHistogram(int stripes)
+    {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1) << 1);
+        stripeMask = size - 1;
+        counts = new AtomicLongArray(size * STRIPE_LENGTH);
+    }
+
+    /**
+    * Records a value.
+    * @param nanos The latency in nanoseconds, counted as 0 if negative
+    */
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        int stripe = (int) Thread.currentThread().threadId() & stripeMask;
+        counts.getAndIncrement(stripe * STRIPE_LENGTH + bucket(value));
+        total.add(value);
+        if (value > max.get())
+        {
+            max.accumulate(value);
+        }
+    }
+
+    /**
+    * Returns the bucket a value is counted in.
+    */
+    static int bucket(long value)
+    {
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        if (shift <= 0)
+        {
+            return (int) value;
+        }
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+    * Returns the highest value counted in a bucket.
+    */
+    static long highestValue(int bucket)
+    {
+        if (bucket < 2 * HALF_SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int shift = bucket / HALF_SUB_BUCKETS - 1;
+        long subBucket = bucket % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+    * Returns the number of values counted in each bucket, adding up the stripes.
+    */
+    private long[] snapshot()
+    {
+        long[] buckets = new long[BUCKETS];
+        for (int stripe = 0; stripe <= stripeMask; stripe++)
+        {
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                buckets[i] += counts.get(stripe * STRIPE_LENGTH + i);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+    * Returns the number of values recorded.
+    */
+    public long getCount()
+    {
+        long count = 0;
+        for (long bucket : snapshot())
+        {
+            count += bucket;
+        }
+        return count;
+    }
+
+    /**
+    * Returns the sum of the values recorded.
+    */
+    public long getTotal()
+    {
+        return total.sum();
+    }
+
+    /**
+    * Returns the largest value recorded, exactly.
+    */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+    * Returns the value below which a share of the recorded values lie, to within
+    * the width of its bucket.
+    * @param percentile The share of values, from 0 to 100
+    * @return The highest value of the bucket the percentile falls in, or 0 if
+    * nothing was recorded
+    */
+    public long getPercentile(double percentile)
+    {
+        return getPercentiles(percentile)[0];
+    }
+
+    /**
+    * Returns several percentiles from one reading of the counters, so they agree
+    * with each other while values are being recorded.
+    * @param percentiles The shares of values, from 0 to 100, in increasing order
+    * @return The value of each percentile
+    */
+    public long[] getPercentiles(double... percentiles)
+    {
+        long[] buckets = snapshot();
+        long count = 0;
+        for (long bucket : buckets)
+        {
+            count += bucket;
+        }
+        long[] values = new long[percentiles.length];
+        long seen = 0;
+        int bucket = -1;
+        for (int i = 0; i < percentiles.length && count > 0; i++)
+        {
+            long rank = Math.max(1, (long) Math.ceil(percentiles[i] / 100 * count));
+            while (seen < rank && bucket < BUCKETS - 1)
+            {
+                seen += buckets[++bucket];
+            }
+            values[i] = Math.min(highestValue(bucket), getMax());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,411 @@
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+* Ranks players by their best escape: the fewest rounds taken to find the exit,
+* then the most coins left, then the most jumps unused. Games can be submitted
+* from many threads at once without a global lock, and the top players and the
+* rank of any player are found in logarithmic time.
+*
+* Each player's best game is kept in a ConcurrentHashMap, which only locks the
+* player being updated. Scores are packed into an int that is smaller for better
+* games, and a Fenwick tree of AtomicIntegers counts the players with each score,
+* so the rank of a score is the number of players with a smaller score plus one,
+* added up from about twenty counters. The best games are also kept in order in a
+* ConcurrentSkipListSet, which gives the top players without sorting.
+*
+* Rounds beyond 1023 and coins beyond 255 are ranked as that many, which keeps the
+* tree to a million counters. The leaderboard is saved as a short header and the
+* best games in order, about a dozen bytes each.
+* @author rainflop000
+* @version 1.0
+*/
+public class Leaderboard
+{
+    public static final String FILE_NAME = "leaderboard.dat";
+    public static final int MAX_ROUNDS = (1 << 10) - 1;
+    public static final int MAX_COINS = (1 << 8) - 1;
+    public static final int SAVE_SECONDS = 10;
+    public static final int SHOWN = 5;
+
+    private static final int JUMP_BITS = 2;
+    private static final int COIN_BITS = 8;
+    private static final int SCORES = 1 << (10 + COIN_BITS + JUMP_BITS);
+    private static final int MAGIC = 0x4a564c42;
+    private static final short VERSION = 1;
+    private static final int MAX_NAME_BYTES = 255;
+
+    private ConcurrentHashMap<String, Entry> players = new ConcurrentHashMap<>();
+    private ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+    // Fenwick tree: counts[i] holds the number of players with a score in (i - lowbit(i), i], one-based
+    private AtomicIntegerArray counts = new AtomicIntegerArray(SCORES + 1);
+    private AtomicLong sequence = new AtomicLong();
+    private volatile boolean changed;
+
+    /**
+    * A player's best escape.
+    */
+    public static class Entry implements Comparable<Entry>
+    {
+        private String name;
+        private int rounds;
+        private int coins;
+        private int jumpsLeft;
+        private int score;
+        private long order;
+
+        Entry(String name, int rounds, int coins, int jumpsLeft, long order)
+        {
+            this.name = name;
+            this.rounds = Math.max(1, Math.min(rounds, MAX_ROUNDS));
+            this.coins = Math.max(0, Math.min(coins, MAX_COINS));
+            this.jumpsLeft = Math.max(0, Math.min(jumpsLeft, Player.MAX_JUMPS));
+            this.order = order;
+            score = (this.rounds << (COIN_BITS + JUMP_BITS)) | ((MAX_COINS - this.coins) << JUMP_BITS)
+                | (Player.MAX_JUMPS - this.jumpsLeft);
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getRounds()
+        {
+            return rounds;
+        }
+
+        public int getCoins()
+        {
+            return coins;
+        }
+
+        public int getJumpsLeft()
+        {
+            return jumpsLeft;
+        }
+
+        /**
+        * Orders the better game first, and of two equal games the one made first.
+        */
+        public int compareTo(Entry other)
+        {
+            int compare = Integer.compare(score, other.score);
+            return compare != 0 ? compare : Long.compare(order, other.order);
+        }
+
+        public String toString()
+        {
+            return name + ": " + rounds + " rounds, " + coins + " coins, " + jumpsLeft + " jumps left";
+        }
+    }
+
+    /**
+    * Submits a finished game. Only escapes are ranked, and only a player's best.
+    * @param session The finished game
+    * @return True if the game is the player's new best
+    */
+    public boolean submit(GameSession session)
+    {
+        Player player = session.getPlayer();
+        if (!player.isGameWon())
+        {
+            return false;
+        }
+        return submit(player.getPlayerName(), session.getGame().getRounds(), session.getItems().getCoins(), player.getJumps());
+    }
+
+    /**
+    * Submits an escape.
+    * @param name The name of the player, cut to the whole characters which fit in
+    * 255 bytes of UTF-8
+    * @param rounds The number of rounds taken to find the exit
+    * @param coins The number of coins left
+    * @param jumpsLeft The number of jumps not used
+    * @return True if the game is the player's new best
+    */
+    public boolean submit(String name, int rounds, int coins, int jumpsLeft)
+    {
+        Entry entry = new Entry(fit(name), rounds, coins, jumpsLeft, sequence.getAndIncrement());
+        boolean[] best = new boolean[1];
+        players.compute(key(name), (key, old) ->
+        {
+            if (old != null && old.score <= entry.score)
+            {
+                return old;
+            }
+            if (old != null)
+            {
+                ranking.remove(old);
+                add(old.score, -1);
+            }
+            ranking.add(entry);
+            add(entry.score, 1);
+            best[0] = true;
+            return entry;
+        });
+        if (best[0])
+        {
+            changed = true;
+        }
+        return best[0];
+    }
+
+    private static String key(String name)
+    {
+        return fit(name).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+    * Cuts a name to the whole characters which fit in the bytes saved for it, so
+    * a name read back from the file has the same key.
+    */
+    private static String fit(String name)
+    {
+        int bytes = 0;
+        for (int i = 0; i < name.length(); )
+        {
+            int c = name.codePointAt(i);
+            bytes += c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+            if (bytes > MAX_NAME_BYTES)
+            {
+                return name.substring(0, i);
+            }
+            i += Character.charCount(c);
+        }
+        return name;
+    }
+
+    private void add(int score, int delta)
+    {
+        for (int i = score + 1; i <= SCORES; i += i & -i)
+        {
+            counts.addAndGet(i, delta);
+        }
+    }
+
+    /**
+    * Returns the number of players with a score below the given one.
+    */
+    private int countBelow(int score)
+    {
+        int count = 0;
+        for (int i = score; i > 0; i -= i & -i)
+        {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+    * Returns a player's best escape.
+    * @param name The name of the player, in any case
+    * @return The best escape, or null if the player has not escaped
+    */
+    public Entry get(String name)
+    {
+        return players.get(key(name));
+    }
+
+    /**
+    * Returns the rank of a player, counting players with equal games as equal.
+    * @param name The name of the player, in any case
+    * @return The rank, 1 for the best, or 0 if the player has not escaped
+    */
+    public int getRank(String name)
+    {
+        Entry entry = get(name);
+        return entry == null ? 0 : countBelow(entry.score) + 1;
+    }
+
+    /**
+    * Returns the number of players ranked.
+    */
+    public int size()
+    {
+        return players.size();
+    }
+
+    /**
+    * Returns the best players, best first.
+    * @param count The most players to return
+    */
+    public List<Entry> getTop(int count)
+    {
+        List<Entry> top = new ArrayList<>(Math.min(count, 64));
+        Iterator<Entry> entries = ranking.iterator();
+        while (top.size() < count && entries.hasNext())
+        {
+            top.add(entries.next());
+        }
+        return top;
+    }
+
+    /**
+    * Returns the best players and the rank of one player as text, for the end of
+    * a game.
+    * @param name The name of the player
+    * @param count The number of best players to list
+    */
+    public String describe(String name, int count)
+    {
+        StringBuilder text = new StringBuilder("Leaderboard:");
+        int rank = 0;
+        for (Entry entry : getTop(count))
+        {
+            text.append("\n").append(++rank).append(". ").append(entry);
+        }
+        int playerRank = getRank(name);
+        if (playerRank > 0)
+        {
+            text.append("\nYour best escape is ranked ").append(playerRank).append(" of ").append(size()).append(".");
+        }
+        return text.toString();
+    }
+
+    /**
+    * Saves the leaderboard to a file, replacing it only once the whole
+    * leaderboard has been written. Saves are made one at a time, as the saving
+    * thread and the save made when the program exits share the temporary file.
+    * @param fileName The name of the file
+    * @throws IOException If the file cannot be written
+    */
+    public synchronized void save(String fileName) throws IOException
+    {
+        changed = false;
+        List<Entry> entries = new ArrayList<>(ranking);
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary))))
+        {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries)
+            {
+                byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                out.writeByte(name.length);
+                out.write(name);
+                out.writeShort(entry.rounds);
+                out.writeByte(entry.coins);
+                out.writeByte(entry.jumpsLeft);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+    * Saves the leaderboard if a new best game has been submitted since it was
+    * last saved or loaded.
+    * @param fileName The name of the file
+    * @throws IOException If the file cannot be written
+    */
+    public void saveIfChanged(String fileName) throws IOException
+    {
+        if (changed)
+        {
+            save(fileName);
+        }
+    }
+
+    /**
+    * Saves the leaderboard every so often on a daemon thread while it changes,
+    * and once more when the program exits.
+    * @param fileName The name of the file
+    * @param seconds The time between saves
+    */
+    public void saveEvery(String fileName, long seconds)
+    {
+        Thread saver = new Thread(() ->
+        {
+            while (true)
+            {
+                try
+                {
+                    Thread.sleep(seconds * 1000);
+                    saveIfChanged(fileName);
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                catch (IOException e)
+                {
+                    System.out.println("Leaderboard not saved: " + e.getMessage());
+                }
+            }
+        }, "javalice-leaderboard");
+        saver.setDaemon(true);
+        saver.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            try
+            {
+                saveIfChanged(fileName);
+            }
+            catch (IOException e)
+            {
+                System.out.println("Leaderboard not saved: " + e.getMessage());
+            }
+        }));
+    }
+
+    /**
+    * Loads a leaderboard saved by save(). Games are saved best first, so the
+    * counters are filled in one pass rather than one game at a time.
+    * @param fileName The name of the file
+    * @return The leaderboard, empty if the file does not exist
+    * @throws IOException If the file cannot be read or is not a saved leaderboard
+    */
+    public static Leaderboard load(String fileName) throws IOException
+    {
+        Leaderboard leaderboard = new Leaderboard();
+        if (!Files.exists(Paths.get(fileName)))
+        {
+            return leaderboard;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName))))
+        {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION)
+            {
+                throw new IOException(fileName + " is not a saved leaderboard");
+            }
+            int size = in.readInt();
+            int[] scores = new int[SCORES + 1];
+            List<Entry> entries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+            {
+                byte[] name = new byte[in.readUnsignedByte()];
+                in.readFully(name);
+                Entry entry = new Entry(new String(name, StandardCharsets.UTF_8), in.readUnsignedShort(),
+                    in.readUnsignedByte(), in.readUnsignedByte(), i);
+                if (leaderboard.players.putIfAbsent(key(entry.name), entry) == null)
+                {
+                    entries.add(entry);
+                    scores[entry.score + 1]++;
+                }
+            }
+            // Each counter adds itself to its parent, building the tree in linear time
+            for (int i = 1; i <= SCORES; i++)
+            {
+                int parent = i + (i & -i);
+                if (parent <= SCORES)
+                {
+                    scores[parent] += scores[i];
+                }
+                leaderboard.counts.set(i, scores[i]);
+            }
+            leaderboard.ranking.addAll(entries);
+            leaderboard.sequence.set(size);
+        }
+        catch (EOFException e)
+        {
+            throw new IOException(fileName + " is not a saved leaderboard");
+        }
+        return leaderboard;
+    }
+}
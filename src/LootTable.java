@@ -0,0 +1,324 @@
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+* The items which can be found in a magic box and their weights. Each item has
+* one of the effects the game knows: coins, a magic police alarm, an
+* invisibility cloak or nothing at all, so a table may hold any number of items
+* with the same effect under different names.
+*
+* Items are drawn with Walker's alias method. The table is split into as many
+* columns as there are items, each of equal chance, and each column holds its own
+* item and at most one other, so a draw picks a column and one side of it from a
+* single random double, however many items there are. A table never changes once
+* built, so one table is shared by every session on every thread.
+*
+* Loot files hold an item name, its effect and its weight on each line, separated
+* by commas. Weights need not add up to anything. Blank lines and lines starting
+* with # are skipped.
+* @author rainflop000
+* @version 1.0
+*/
+public class LootTable
+{
+    public static final String FILE_NAME = "loot.txt";
+    public static final int MAX_ITEMS = 65535;
+    // Effects, in the order of Items.COINS, MAGIC_POLICE_ALARM, CLOAK and COAL
+    private static final String[] EFFECTS = {"coins", "alarm", "cloak", "nothing"};
+    private static final int FIELDS = 3;
+
+    public static final LootTable DEFAULT = new LootTable(
+        new String[] {"coins", "Magic police alarm", Items.INVISIBILITY_CLOAK, "Coal"},
+        new int[] {Items.COINS, Items.MAGIC_POLICE_ALARM, Items.CLOAK, Items.COAL},
+        new double[] {0.3, 0.25, 0.15, 0.3});
+
+    private static volatile LootTable shared;
+
+    private String[] names;
+    private int[] effects;
+    private double[] chances;
+    private double[] effectChances = new double[EFFECTS.length];
+    // Column i keeps its own item for the part of it below keep[i], and other[i] above
+    private double[] keep;
+    private int[] other;
+
+    /**
+    * Parametised constructor.
+    * @param names The name of each item
+    * @param effects The effect of each item, such as Items.COINS
+    * @param weights The weight of each item, any non-negative amount
+    */
+    public LootTable(String[] names, int[] effects, double[] weights)
+    {
+        int size = names.length;
+        if (size == 0 || size > MAX_ITEMS || effects.length != size || weights.length != size)
+        {
+            throw new IllegalArgumentException("A loot table needs between 1 and " + MAX_ITEMS + " items, each with an effect and a weight");
+        }
+        double total = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (effects[i] < 0 || effects[i] >= EFFECTS.length)
+            {
+                throw new IllegalArgumentException("Unknown effect " + effects[i] + " for " + names[i]);
+            }
+            if (!(weights[i] >= 0) || Double.isInfinite(weights[i]))
+            {
+                throw new IllegalArgumentException("Weight of " + names[i] + " is not a non-negative number");
+            }
+            total += weights[i];
+        }
+        if (!(total > 0) || Double.isInfinite(total))
+        {
+            throw new IllegalArgumentException("The weights of a loot table must add up to more than 0");
+        }
+        this.names = names.clone();
+        this.effects = effects.clone();
+        chances = new double[size];
+        for (int i = 0; i < size; i++)
+        {
+            chances[i] = weights[i] / total;
+            effectChances[effects[i]] += chances[i];
+        }
+        buildColumns();
+    }
+
+    /**
+    * Fills the columns with Vose's version of the alias method: columns of items
+    * more likely than average fill up the columns of items less likely than
+    * average, one each, until every column is full.
+    */
+    private void buildColumns()
+    {
+        int size = chances.length;
+        keep = new double[size];
+        other = new int[size];
+        double[] scaled = new double[size];
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < size; i++)
+        {
+            scaled[i] = chances[i] * size;
+            if (scaled[i] < 1)
+            {
+                small[smallCount++] = i;
+            }
+            else
+            {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0)
+        {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            keep[less] = scaled[less];
+            other[less] = more;
+            scaled[more] -= 1 - scaled[less];
+            if (scaled[more] < 1)
+            {
+                small[smallCount++] = more;
+            }
+            else
+            {
+                large[largeCount++] = more;
+            }
+        }
+        // What is left is 1 give or take rounding, so the column keeps its own item
+        while (largeCount > 0)
+        {
+            int item = large[--largeCount];
+            keep[item] = 1;
+            other[item] = item;
+        }
+        while (smallCount > 0)
+        {
+            int item = small[--smallCount];
+            keep[item] = 1;
+            other[item] = item;
+        }
+    }
+
+    /**
+    * Draws an item, using one random double.
+    * @param random The source of the draw
+    * @return The index of the item drawn
+    */
+    public int sample(RandomSource random)
+    {
+        double draw = random.nextDouble() * keep.length;
+        int column = Math.min((int) draw, keep.length - 1);
+        return draw - column < keep[column] ? column : other[column];
+    }
+
+    /**
+    * Returns the number of items.
+    */
+    public int size()
+    {
+        return names.length;
+    }
+
+    public String getName(int index)
+    {
+        return names[index];
+    }
+
+    /**
+    * Returns the effect of an item, such as Items.COINS.
+    */
+    public int getEffect(int index)
+    {
+        return effects[index];
+    }
+
+    /**
+    * Returns the chance of an item being drawn.
+    */
+    public double getChance(int index)
+    {
+        return chances[index];
+    }
+
+    /**
+    * Returns the chance of drawing an item with each effect, indexed by
+    * Items.COINS, MAGIC_POLICE_ALARM, CLOAK and COAL. The array must not be
+    * changed.
+    */
+    double[] effectChances()
+    {
+        return effectChances;
+    }
+
+    /**
+    * Returns the table every new game finds its items in: the one read from
+    * loot.txt in the working directory, or the default table if there is no such
+    * file or it cannot be read.
+    */
+    public static LootTable shared()
+    {
+        LootTable table = shared;
+        if (table == null)
+        {
+            synchronized (LootTable.class)
+            {
+                table = shared;
+                if (table == null)
+                {
+                    table = Files.exists(Paths.get(FILE_NAME)) ? load(FILE_NAME) : DEFAULT;
+                    shared = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+    * Reads a loot file, printing every line which could not be read.
+    * @param fileName The name of the loot file
+    * @return The table read from the file, or the default table if the file
+    * cannot be read or has no items
+    */
+    public static LootTable load(String fileName)
+    {
+        List<String> errors = new ArrayList<>();
+        LootTable table = null;
+        try
+        {
+            table = parse(fileName, Files.readAllLines(Paths.get(fileName), StandardCharsets.UTF_8), errors);
+        }
+        catch (IOException e)
+        {
+            errors.add(fileName + ": " + e.getMessage());
+        }
+        for (String error : errors)
+        {
+            System.out.println("Error in reading loot on " + error);
+        }
+        if (table == null)
+        {
+            System.out.println("Using the default magic box items");
+            return DEFAULT;
+        }
+        return table;
+    }
+
+    /**
+    * Reads the lines of a loot file.
+    * @param source The name of the file, for error messages
+    * @param lines The lines of the file
+    * @param errors A message is added for every line skipped, in the form
+    * "file:line: problem"
+    * @return The table of the lines which could be read, or null if none could
+    */
+    static LootTable parse(String source, List<String> lines, List<String> errors)
+    {
+        List<String> names = new ArrayList<>();
+        int[] effects = new int[lines.size()];
+        double[] weights = new double[lines.size()];
+        for (int line = 0; line < lines.size(); line++)
+        {
+            String text = lines.get(line).trim();
+            if (text.isEmpty() || text.startsWith("#"))
+            {
+                continue;
+            }
+            String[] fields = text.split(",", -1);
+            String where = source + ":" + (line + 1) + ": ";
+            if (fields.length != FIELDS)
+            {
+                errors.add(where + "expected " + FIELDS + " fields (item,effect,weight) but found " + fields.length);
+                continue;
+            }
+            String name = fields[0].trim();
+            int effect = Arrays.asList(EFFECTS).indexOf(fields[1].trim().toLowerCase(Locale.ROOT));
+            double weight;
+            try
+            {
+                weight = Double.parseDouble(fields[2].trim());
+            }
+            catch (NumberFormatException e)
+            {
+                weight = -1;
+            }
+            if (name.isEmpty())
+            {
+                errors.add(where + "item name is empty");
+            }
+            else if (effect < 0)
+            {
+                errors.add(where + "effect must be one of " + String.join(", ", EFFECTS) + " but was " + fields[1].trim());
+            }
+            else if (!(weight >= 0) || Double.isInfinite(weight))
+            {
+                errors.add(where + "weight must be a non-negative number but was " + fields[2].trim());
+            }
+            else if (names.size() == MAX_ITEMS)
+            {
+                errors.add(where + "more than " + MAX_ITEMS + " items");
+            }
+            else
+            {
+                effects[names.size()] = effect;
+                weights[names.size()] = weight;
+                names.add(name);
+            }
+        }
+        int size = names.size();
+        double total = 0;
+        for (int i = 0; i < size; i++)
+        {
+            total += weights[i];
+        }
+        if (!(total > 0) || Double.isInfinite(total))
+        {
+            errors.add(source + ": the weights of the items must add up to more than 0");
+            return null;
+        }
+        return new LootTable(names.toArray(new String[0]), Arrays.copyOf(effects, size), Arrays.copyOf(weights, size));
+    }
+}
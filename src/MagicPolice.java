@@ -1,5 +1,3 @@
-import java.util.*;
-
 /**
 * Class represents the magic police in the game. Contains methods to update the chance
 * of encounter with the magic police, check if magic police are encountered, and
@@ -9,6 +7,10 @@ import java.util.*;
 */
 public class MagicPolice
 {
+    // The bribe demanded is between these fractions of the player's coins
+    public static final double MIN_BRIBE = 0.5;
+    public static final double MAX_BRIBE = 1.5;
+
     private Game game;
 
     public MagicPolice(Game game)
@@ -28,9 +30,7 @@ public class MagicPolice
         {
             return false;
         }
-        double policeEncounterChance = game.getProbabilities()[selectedIndex][2];
-        double random = new Random().nextDouble();
-        return random <= policeEncounterChance;
+        return game.getProbabilities().rollPolice(selectedIndex, game.getRandom());
     }
 
     /**
@@ -40,9 +40,9 @@ public class MagicPolice
     */
     public int getBribeAmount(int coins)
     {
-        int minBribe = (int)(coins * 0.5);
-        int maxBribe = (int)(coins * 1.5);
-        return new Random().nextInt(maxBribe - minBribe + 1) + minBribe;
+        int minBribe = (int)(coins * MIN_BRIBE);
+        int maxBribe = (int)(coins * MAX_BRIBE);
+        return game.getRandom().nextInt(maxBribe - minBribe + 1) + minBribe;
     }
 
     /**
@@ -52,10 +52,9 @@ public class MagicPolice
     */
     public void updatePoliceEncounterChance(int selectedIndex)
     {
-        double[][] probabilities = game.getProbabilities();
-        Random random = new Random();
-        double policeChange = (random.nextBoolean() ? -1 : 1) * (1 + random.nextInt(5));
-        double newPoliceChance = probabilities[selectedIndex][2] + policeChange / 100;
-        probabilities[selectedIndex][2] = Math.max(0, Math.min(1, newPoliceChance));
+        RandomSource random = game.getRandom();
+        int policeChange = (random.nextBoolean() ? -1 : 1) * (1 + random.nextInt(5));
+        game.getProbabilities().changePoliceChance(selectedIndex, policeChange * 100); // Convert to basis points
+        game.getListener().chanceChanged(selectedIndex, ExitsTable.POLICE, policeChange * 100);
     }
 }
@@ -0,0 +1,133 @@
+/**
+* Class represents a maze of rooms joined by portals which stay where they are,
+* so a player who comes back to a room finds the same portals open, and going
+* through a portal always leads to the same room. Rooms are numbered and every
+* room is worked out from the seed of the maze and its number the first time it
+* is entered, so a maze of billions of rooms only takes memory for the rooms
+* played in. The rooms entered most recently are kept in a RoomCache shared by
+* every game played in the maze.
+*
+* The exit and magic police chances of a portal still belong to each game, as
+* does the position of a player, so a maze can be played in by any number of
+* games at once. SessionStore and SnapshotFile do not save the room a player is
+* in, so games in a maze cannot be parked or saved.
+* @author rainflop000
+* @version 1.0
+*/
+public class Maze
+{
+    public static final long DEFAULT_ROOMS = 1L << 32;
+    public static final int DEFAULT_CACHE_SIZE = 65536;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private ExitsTable table;
+    private long seed;
+    private long rooms;
+    private RoomCache cache;
+
+    /**
+    * Parametised constructor for a maze of DEFAULT_ROOMS rooms.
+    * @param table The directions and probabilities the rooms are generated from
+    * @param seed The seed every room is generated from
+    */
+    public Maze(ExitsTable table, long seed)
+    {
+        this(table, seed, DEFAULT_ROOMS, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+    * Parametised constructor.
+    * @param table The directions and probabilities the rooms are generated from
+    * @param seed The seed every room is generated from
+    * @param rooms The number of rooms in the maze
+    * @param cacheSize The largest number of rooms kept in memory
+    */
+    public Maze(ExitsTable table, long seed, long rooms, int cacheSize)
+    {
+        if (rooms < 1)
+        {
+            throw new IllegalArgumentException("A maze needs at least one room");
+        }
+        this.table = table;
+        this.seed = seed;
+        this.rooms = rooms;
+        cache = new RoomCache(cacheSize);
+    }
+
+    public ExitsTable getTable()
+    {
+        return table;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+    * Returns the number of rooms in the maze, most of which are never generated.
+    */
+    public long getRoomCount()
+    {
+        return rooms;
+    }
+
+    public RoomCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+    * Returns the room every game in the maze starts in.
+    */
+    public long getStartRoom()
+    {
+        return 0;
+    }
+
+    /**
+    * Returns a room, generating it if it is not in the cache.
+    * @param id The id of the room, from 0 to getRoomCount() - 1
+    */
+    public MazeRoom getRoom(long id)
+    {
+        return cache.get(id, this::generate);
+    }
+
+    /**
+    * Returns the room a portal leads to. Unlike the portals of a room, this is
+    * worked out every time instead of being kept.
+    * @param id The id of the room the portal is in
+    * @param index The index of the direction of the portal
+    * @return The id of the room on the other side of the portal
+    */
+    public long getNeighbour(long id, int index)
+    {
+        long hash = SplitMixRandom.mix64(hash(id) + (index + 1) * GOLDEN_GAMMA);
+        return Long.remainderUnsigned(SplitMixRandom.mix64(hash ^ GOLDEN_GAMMA), rooms);
+    }
+
+    /**
+    * Works out which portals of a room are open, each direction being open with
+    * the open chance of the exits table.
+    */
+    private MazeRoom generate(long id)
+    {
+        long[] portals = new long[(table.size() + Long.SIZE - 1) / Long.SIZE];
+        long hash = hash(id);
+        for (int i = 0; i < table.size(); i++)
+        {
+            long draw = SplitMixRandom.mix64(hash + (i + 1) * GOLDEN_GAMMA) >>> 32;
+            if ((draw * Probabilities.BASIS_POINTS >>> 32) < table.basisPoints(i, ExitsTable.OPEN))
+            {
+                portals[i / Long.SIZE] |= 1L << i;
+            }
+        }
+        return new MazeRoom(id, portals);
+    }
+
+    private long hash(long id)
+    {
+        return SplitMixRandom.mix64(seed ^ SplitMixRandom.mix64(id * GOLDEN_GAMMA + 1));
+    }
+}
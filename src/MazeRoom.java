@@ -0,0 +1,51 @@
+/**
+* Room of a Maze, generated the first time a player enters it. The portals of a
+* room never change, so one object is shared by every game visiting the room.
+* @author rainflop000
+* @version 1.0
+*/
+public class MazeRoom
+{
+    private long id;
+    private long[] portals;
+    private int openCount;
+
+    /**
+    * Parametised constructor.
+    * @param id The id of the room in its maze
+    * @param portals A bitmask of the open portals, 64 to a long, with bit i set if the
+    * portal of direction i is open
+    */
+    public MazeRoom(long id, long[] portals)
+    {
+        this.id = id;
+        this.portals = portals.clone();
+        for (long word : portals)
+        {
+            openCount += Long.bitCount(word);
+        }
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    /**
+    * Returns the number of open portals.
+    */
+    public int getOpenCount()
+    {
+        return openCount;
+    }
+
+    /**
+    * Returns 64 of the open portals.
+    * @param word The index of the long
+    * @return A bitmask with bit i set if the portal of direction 64 * word + i is open
+    */
+    public long getPortalWord(int word)
+    {
+        return portals[word];
+    }
+}
@@ -0,0 +1,543 @@
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* Non-blocking TCP server hosting Javalice sessions on a small pool of selector
+* threads instead of a thread per player. Input is read into a small direct
+* buffer per connection and every complete line advances the session by one
+* decision. A connection whose player stops reading keeps its unsent output and
+* is not read from again until that output has been sent. Idle games can be
+* parked in a SessionStore outside the heap, in which case each selector thread
+* materializes only the game whose line it is handling.
+* @author rainflop000
+* @version 1.0
+*/
+public class NioGameServer
+{
+    private static final int BACKLOG = 1024;
+    private static final int READ_BUFFER_SIZE = 256;
+    private static final int WRITE_BUFFER_SIZE = 16 * 1024;
+
+    private ExitsTable table;
+    private RandomSource random;
+    private boolean packed;
+    private boolean offHeap;
+    private GameMetrics metrics;
+    private Leaderboard leaderboard;
+    private ExitsWatcher exits;
+    private ServerSocketChannel serverChannel;
+    private SelectorLoop[] loops;
+
+    /**
+    * Parametised constructor.
+    * @param table The directions and probabilities every session starts from
+    * @param random The source every session's random stream is split from
+    * @param packed True to hold each session's probabilities packed into basis
+    * points, which takes less memory per connection
+    */
+    public NioGameServer(ExitsTable table, RandomSource random, boolean packed)
+    {
+        this(table, random, packed, false);
+    }
+
+    /**
+    * Parametised constructor for a server parking its games outside the heap.
+    * @param table The directions and probabilities every session starts from
+    * @param random The source every session's random stream is split from, which
+    * must be a SplitMixRandom if games are parked outside the heap
+    * @param packed True to hold each session's probabilities packed into basis
+    * points, which takes less memory per connection
+    * @param offHeap True to keep idle games in a SessionStore between lines
+    */
+    public NioGameServer(ExitsTable table, RandomSource random, boolean packed, boolean offHeap)
+    {
+        this.table = table;
+        this.random = random;
+        this.packed = packed;
+        this.offHeap = offHeap;
+    }
+
+    /**
+    * Counts what happens in every game, from the next connection on.
+    * @param metrics The metrics added to every game, or null
+    */
+    public void setMetrics(GameMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+    * Starts every new game with the table last loaded by a watcher, rather than
+    * the table the server was created with. Cannot be used with games parked
+    * outside the heap, which are stored against one table.
+    * @param exits The watcher of the exits file, or null
+    */
+    public void setExitsWatcher(ExitsWatcher exits)
+    {
+        this.exits = exits;
+    }
+
+    /**
+    * Ranks the escapes of every game finished from now on.
+    * @param leaderboard The leaderboard games are submitted to, or null
+    */
+    public void setLeaderboard(Leaderboard leaderboard)
+    {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+    * Starts the selector threads and accepts connections until the server is
+    * closed, handing each connection to the selector threads in turn.
+    * @param port The port to listen on, or 0 for any free port
+    * @param selectors The number of selector threads
+    * @throws IOException If the port cannot be opened
+    */
+    public void serve(int port, int selectors) throws IOException
+    {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+        loops = new SelectorLoop[selectors];
+        for (int i = 0; i < selectors; i++)
+        {
+            loops[i] = new SelectorLoop();
+            new Thread(loops[i], "javalice-selector-" + i).start();
+        }
+        int next = 0;
+        while (serverChannel.isOpen())
+        {
+            SocketChannel channel;
+            try
+            {
+                channel = serverChannel.accept();
+            }
+            catch (ClosedChannelException e)
+            {
+                break;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            loops[next].add(channel, random.split());
+            next = (next + 1) % loops.length;
+        }
+    }
+
+    /**
+    * Returns the port the server is listening on, once serve() has been called.
+    */
+    public int getPort() throws IOException
+    {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+    * Stops the server, closing every connection.
+    */
+    public void close() throws IOException
+    {
+        serverChannel.close();
+        for (SelectorLoop loop : loops)
+        {
+            loop.close();
+        }
+    }
+
+    /**
+    * State kept for each connection between the lines it sends. When games are
+    * parked outside the heap the session is only held until the connection is
+    * registered, and afterwards the game is found by its id.
+    */
+    private static class Connection
+    {
+        private SocketChannel channel;
+        private SelectionKey key;
+        private GameSession session;
+        private GameListener listener;
+        private long id;
+        private ByteBuffer input = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private ByteBuffer pending;
+        private boolean named;
+        private boolean closing;
+        private boolean discarding;
+
+        Connection(SocketChannel channel, GameSession session, GameListener listener)
+        {
+            this.channel = channel;
+            this.session = session;
+            this.listener = listener;
+            session.getGame().setListener(listener);
+        }
+    }
+
+    /**
+    * Output stream giving access to the bytes written to it without copying them.
+    */
+    private static class Output extends ByteArrayOutputStream
+    {
+        byte[] buffer()
+        {
+            return buf;
+        }
+    }
+
+    /**
+    * Selector thread serving its share of the connections. All sessions of a
+    * thread print to the same stream, which is sent to the player whose line was
+    * just handled.
+    */
+    private class SelectorLoop implements Runnable
+    {
+        private Selector selector;
+        private Queue<Connection> added = new ConcurrentLinkedQueue<>();
+        private Output output = new Output();
+        private PrintStream out = new PrintStream(output, false, StandardCharsets.UTF_8);
+        private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        // The bytes of the line being handled, decoded as UTF-8 once it is complete
+        private byte[] line = new byte[READ_BUFFER_SIZE];
+        private SessionStore store;
+        private GameSession parked;
+        private long nextId;
+
+        SelectorLoop() throws IOException
+        {
+            selector = Selector.open();
+            if (offHeap)
+            {
+                store = new SessionStore(table);
+                parked = new GameSession(newProbabilities(), new SplitMixRandom(0), out);
+            }
+        }
+
+        /**
+        * Hands a new connection to this thread.
+        * @param channel The connection of the player
+        * @param sessionRandom The source every random draw of the session is taken from
+        */
+        void add(SocketChannel channel, RandomSource sessionRandom)
+        {
+            GameListener listener = new JfrListener();
+            if (metrics != null)
+            {
+                listener = new CompositeListener(metrics, listener);
+            }
+            added.add(new Connection(channel, new GameSession(newProbabilities(), sessionRandom, out), listener));
+            selector.wakeup();
+        }
+
+        void close() throws IOException
+        {
+            selector.close();
+        }
+
+        public void run()
+        {
+            while (selector.isOpen())
+            {
+                try
+                {
+                    selector.select(this::handle);
+                    Connection connection;
+                    while ((connection = added.poll()) != null)
+                    {
+                        register(connection);
+                    }
+                }
+                catch (ClosedSelectorException e)
+                {
+                    break;
+                }
+                catch (IOException e)
+                {
+                    System.out.println("Selector error: " + e.getMessage());
+                }
+            }
+        }
+
+        private void register(Connection connection)
+        {
+            try
+            {
+                connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+                connection.session.getPlayer().askPlayerName();
+                if (store != null)
+                {
+                    connection.id = nextId++;
+                    store.save(connection.id, connection.session);
+                    connection.session = null;
+                }
+                send(connection);
+            }
+            catch (IOException e)
+            {
+                close(connection);
+            }
+            catch (RuntimeException e)
+            {
+                fail(connection, e);
+            }
+        }
+
+        private void handle(SelectionKey key)
+        {
+            Connection connection = (Connection) key.attachment();
+            try
+            {
+                if (key.isValid() && key.isWritable())
+                {
+                    writePending(connection);
+                }
+                if (key.isValid() && key.isReadable())
+                {
+                    if (connection.channel.read(connection.input) < 0)
+                    {
+                        close(connection);
+                        return;
+                    }
+                    handleLines(connection);
+                }
+            }
+            catch (IOException e)
+            {
+                close(connection);
+            }
+            catch (RuntimeException e)
+            {
+                fail(connection, e);
+            }
+        }
+
+        /**
+        * Closes a connection whose game went wrong, so the other connections on
+        * this selector carry on. Whatever the game printed before it went wrong is
+        * thrown away rather than sent to the next connection.
+        * @param connection The connection to close
+        * @param e What went wrong
+        */
+        private void fail(Connection connection, RuntimeException e)
+        {
+            System.out.println("Closing connection after error: " + e);
+            out.flush();
+            output.reset();
+            close(connection);
+        }
+
+        /**
+        * Advances the session once for every complete line received, stopping
+        * while output is waiting to be sent. A line too long for the buffer is
+        * skipped up to and including its newline.
+        * @param connection The connection the lines were received on
+        */
+        private void handleLines(Connection connection) throws IOException
+        {
+            ByteBuffer input = connection.input;
+            input.flip();
+            while (connection.pending == null && !connection.closing)
+            {
+                int end = -1;
+                for (int i = input.position(); i < input.limit(); i++)
+                {
+                    if (input.get(i) == '\n')
+                    {
+                        end = i;
+                        break;
+                    }
+                }
+                if (end < 0)
+                {
+                    if (connection.discarding)
+                    {
+                        input.clear();
+                        return;
+                    }
+                    break;
+                }
+                if (connection.discarding)
+                {
+                    input.position(end + 1);
+                    connection.discarding = false;
+                    continue;
+                }
+                int length = 0;
+                for (int i = input.position(); i < end; i++)
+                {
+                    byte b = input.get(i);
+                    if (b != '\r')
+                    {
+                        line[length++] = b;
+                    }
+                }
+                input.position(end + 1);
+                handleLine(connection, new String(line, 0, length, StandardCharsets.UTF_8));
+                send(connection);
+            }
+            if (input.position() == 0 && input.limit() == input.capacity())
+            {
+                // No answer is this long, so drop it, and the rest of it up to its end
+                connection.discarding = true;
+                input.clear();
+                return;
+            }
+            input.compact();
+        }
+
+        private void handleLine(Connection connection, String text)
+        {
+            GameSession session = connection.session;
+            if (store != null)
+            {
+                store.load(connection.id, parked);
+                session = parked;
+                session.getGame().setListener(connection.listener);
+            }
+            Player player = session.getPlayer();
+            Game game = session.getGame();
+            if (!connection.named)
+            {
+                if (player.choosePlayerName(text))
+                {
+                    connection.named = true;
+                    player.displayGameInstructions();
+                    game.start();
+                }
+                else
+                {
+                    player.askPlayerName();
+                }
+            }
+            else
+            {
+                game.advance(text);
+            }
+            connection.closing = game.isOver();
+            if (connection.closing && leaderboard != null && leaderboard.submit(session))
+            {
+                game.display(leaderboard.describe(player.getPlayerName(), Leaderboard.SHOWN));
+            }
+            if (store != null && !connection.closing)
+            {
+                store.save(connection.id, parked);
+            }
+        }
+
+        /**
+        * Sends what the session printed. Anything the socket does not take is
+        * kept, and the connection waits for it to be sent before reading again.
+        * @param connection The connection to send to
+        */
+        private void send(Connection connection) throws IOException
+        {
+            out.flush();
+            byte[] bytes = output.buffer();
+            int length = output.size();
+            int offset = 0;
+            while (offset < length && connection.pending == null)
+            {
+                int chunk = Math.min(writeBuffer.capacity(), length - offset);
+                writeBuffer.clear();
+                writeBuffer.put(bytes, offset, chunk);
+                writeBuffer.flip();
+                connection.channel.write(writeBuffer);
+                offset += chunk - writeBuffer.remaining();
+                if (writeBuffer.hasRemaining())
+                {
+                    connection.pending = ByteBuffer.allocate(length - offset);
+                    connection.pending.put(bytes, offset, length - offset).flip();
+                    connection.key.interestOps(SelectionKey.OP_WRITE);
+                }
+            }
+            output.reset();
+            if (connection.pending == null && connection.closing)
+            {
+                close(connection);
+            }
+        }
+
+        private void writePending(Connection connection) throws IOException
+        {
+            connection.channel.write(connection.pending);
+            if (connection.pending.hasRemaining())
+            {
+                return;
+            }
+            connection.pending = null;
+            if (connection.closing)
+            {
+                close(connection);
+                return;
+            }
+            connection.key.interestOps(SelectionKey.OP_READ);
+            handleLines(connection);
+        }
+
+        private void close(Connection connection)
+        {
+            connection.closing = true;
+            if (store != null && connection.session == null)
+            {
+                store.remove(connection.id);
+            }
+            try
+            {
+                connection.channel.close();
+            }
+            catch (IOException e)
+            {
+                // Already closed
+            }
+        }
+    }
+
+    private Probabilities newProbabilities()
+    {
+        ExitsTable sessionTable = exits != null ? exits.get() : table;
+        return packed ? new PackedProbabilities(sessionTable) : new OverlayProbabilities(sessionTable);
+    }
+
+    /**
+    * Main method for the server. Reads the exits file and serves games until the
+    * program is stopped.
+    * @param args Optional port, number of selector threads, name of the exits file,
+    * and then "packed" to hold probabilities packed into basis points, "offheap"
+    * to park idle games outside the heap, "metrics" or "metrics=port" to serve
+    * metrics on a local port, "leaderboard" or "leaderboard=file" to rank escapes
+    * and "watch" to load the exits file again whenever it changes
+    */
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : GameServer.DEFAULT_PORT;
+        int selectors = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        String fileName = args.length > 2 ? args[2] : Game.FILE_NAME;
+        List<String> options = Arrays.asList(args).subList(Math.min(args.length, 3), args.length);
+        ExitsTable table = ExitsTable.load(fileName);
+        NioGameServer server = new NioGameServer(table, new SplitMixRandom(),
+            options.contains("packed"), options.contains("offheap"));
+        if (options.contains("watch") && options.contains("offheap"))
+        {
+            System.out.println("Games parked outside the heap are tied to one exits file, so it is not watched");
+        }
+        else if (options.contains("watch"))
+        {
+            ExitsWatcher exits = new ExitsWatcher(fileName, table);
+            exits.start();
+            server.setExitsWatcher(exits);
+        }
+        for (String option : options)
+        {
+            if (option.equals("metrics") || option.startsWith("metrics="))
+            {
+                server.setMetrics(GameServer.startMetrics(option));
+            }
+            if (option.equals("leaderboard") || option.startsWith("leaderboard="))
+            {
+                server.setLeaderboard(GameServer.startLeaderboard(option));
+            }
+        }
+        System.out.println("Javalice server listening on port " + port + " with " + selectors + " selector threads");
+        server.serve(port, selectors);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+* Probabilities held as doubles. Starts as a view of the shared ExitsTable and
+* copies a direction's row only the first time the game changes it, so a new
+* game costs a few bytes however large the table is.
+* @author rainflop000
+* @version 1.0
+*/
+public class OverlayProbabilities extends Probabilities
+{
+    private double[][] rows;
+    private boolean[] copied;
+
+    /**
+    * Parametised constructor.
+    * @param table The table the probabilities start from
+    */
+    public OverlayProbabilities(ExitsTable table)
+    {
+        super(table);
+        this.rows = table.rows();
+    }
+
+    public double getOpenChance(int index)
+    {
+        return rows[index][ExitsTable.OPEN];
+    }
+
+    public double getExitChance(int index)
+    {
+        return rows[index][ExitsTable.EXIT];
+    }
+
+    public double getPoliceChance(int index)
+    {
+        return rows[index][ExitsTable.POLICE];
+    }
+
+    public boolean rollOpen(int index, RandomSource random)
+    {
+        return random.nextDouble() <= rows[index][ExitsTable.OPEN];
+    }
+
+    public boolean rollExit(int index, RandomSource random)
+    {
+        return random.nextDouble() <= rows[index][ExitsTable.EXIT];
+    }
+
+    public boolean rollPolice(int index, RandomSource random)
+    {
+        return random.nextDouble() <= rows[index][ExitsTable.POLICE];
+    }
+
+    public void changeExitChance(int index, int basisPoints)
+    {
+        change(index, ExitsTable.EXIT, basisPoints);
+    }
+
+    public void changePoliceChance(int index, int basisPoints)
+    {
+        change(index, ExitsTable.POLICE, basisPoints);
+    }
+
+    public void setChances(int index, int exitBasisPoints, int policeBasisPoints)
+    {
+        double[] row = writableRow(index);
+        row[ExitsTable.EXIT] = exitBasisPoints / (double) BASIS_POINTS;
+        row[ExitsTable.POLICE] = policeBasisPoints / (double) BASIS_POINTS;
+    }
+
+    private void change(int index, int column, int basisPoints)
+    {
+        double[] row = writableRow(index);
+        row[column] = Math.max(0, Math.min(1, row[column] + basisPoints / (double) BASIS_POINTS));
+    }
+
+    /**
+    * Sets every probability back to the table's. Rows already copied are kept
+    * and overwritten, so a game played again does not copy them again.
+    */
+    public void reset()
+    {
+        if (copied == null)
+        {
+            return;
+        }
+        double[][] base = table.rows();
+        for (int i = 0; i < rows.length; i++)
+        {
+            if (copied[i])
+            {
+                System.arraycopy(base[i], 0, rows[i], 0, base[i].length);
+            }
+        }
+    }
+
+    /**
+    * Returns the row of a direction owned by this game, copying it from the table
+    * the first time it is changed.
+    * @param index The index of the direction
+    * @return The row which may be changed
+    */
+    private double[] writableRow(int index)
+    {
+        if (copied == null)
+        {
+            rows = rows.clone();
+            copied = new boolean[rows.length];
+        }
+        if (!copied[index])
+        {
+            rows[index] = rows[index].clone();
+            copied[index] = true;
+        }
+        return rows[index];
+    }
+}
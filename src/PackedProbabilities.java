@@ -0,0 +1,152 @@
+/**
+* Probabilities held as whole basis points, with the open, exit and police
+* chances of a direction packed into one long. Draws compare a random int with
+* the basis points, and changes are clamped without branches. Shares the
+* table's packed rows until the game first changes one, then copies the single
+* array of longs, so a game takes a fraction of the memory of
+* OverlayProbabilities while showing the same percentages.
+* @author rainflop000
+* @version 1.0
+*/
+public class PackedProbabilities extends Probabilities
+{
+    private static final int FIELD_BITS = 16;
+    private static final long FIELD_MASK = 0xffffL;
+    private static final int OPEN_SHIFT = 0;
+    private static final int EXIT_SHIFT = FIELD_BITS;
+    private static final int POLICE_SHIFT = 2 * FIELD_BITS;
+
+    private long[] rows;
+    private boolean copied;
+
+    /**
+    * Parametised constructor.
+    * @param table The table the probabilities start from
+    */
+    public PackedProbabilities(ExitsTable table)
+    {
+        super(table);
+        this.rows = table.packedRows();
+    }
+
+    /**
+    * Packs the chances of a direction into a long.
+    * @param open The open chance in basis points
+    * @param exit The exit chance in basis points
+    * @param police The police chance in basis points
+    * @return The packed direction
+    */
+    public static long pack(int open, int exit, int police)
+    {
+        return (long) open << OPEN_SHIFT | (long) exit << EXIT_SHIFT | (long) police << POLICE_SHIFT;
+    }
+
+    /**
+    * Returns one chance of a packed direction in basis points.
+    * @param row The packed direction
+    * @param column ExitsTable.OPEN, EXIT or POLICE
+    */
+    public static int unpack(long row, int column)
+    {
+        return (int) (row >>> (column * FIELD_BITS) & FIELD_MASK);
+    }
+
+    public double getOpenChance(int index)
+    {
+        return unpack(rows[index], ExitsTable.OPEN) / (double) BASIS_POINTS;
+    }
+
+    public double getExitChance(int index)
+    {
+        return unpack(rows[index], ExitsTable.EXIT) / (double) BASIS_POINTS;
+    }
+
+    public double getPoliceChance(int index)
+    {
+        return unpack(rows[index], ExitsTable.POLICE) / (double) BASIS_POINTS;
+    }
+
+    public boolean rollOpen(int index, RandomSource random)
+    {
+        return random.nextInt(BASIS_POINTS) < unpack(rows[index], ExitsTable.OPEN);
+    }
+
+    public boolean rollExit(int index, RandomSource random)
+    {
+        return random.nextInt(BASIS_POINTS) < unpack(rows[index], ExitsTable.EXIT);
+    }
+
+    public boolean rollPolice(int index, RandomSource random)
+    {
+        return random.nextInt(BASIS_POINTS) < unpack(rows[index], ExitsTable.POLICE);
+    }
+
+    public void changeExitChance(int index, int basisPoints)
+    {
+        change(index, EXIT_SHIFT, basisPoints);
+    }
+
+    public void changePoliceChance(int index, int basisPoints)
+    {
+        change(index, POLICE_SHIFT, basisPoints);
+    }
+
+    public int getExitBasisPoints(int index)
+    {
+        return unpack(rows[index], ExitsTable.EXIT);
+    }
+
+    public int getPoliceBasisPoints(int index)
+    {
+        return unpack(rows[index], ExitsTable.POLICE);
+    }
+
+    public void setChances(int index, int exitBasisPoints, int policeBasisPoints)
+    {
+        copyRows();
+        rows[index] = pack(unpack(rows[index], ExitsTable.OPEN), clamp(exitBasisPoints), clamp(policeBasisPoints));
+    }
+
+    private void change(int index, int shift, int basisPoints)
+    {
+        copyRows();
+        long row = rows[index];
+        int value = clamp((int) (row >>> shift & FIELD_MASK) + basisPoints);
+        rows[index] = row & ~(FIELD_MASK << shift) | (long) value << shift;
+    }
+
+    /**
+    * Copies the table's rows the first time the game changes one.
+    */
+    private void copyRows()
+    {
+        if (!copied)
+        {
+            rows = rows.clone();
+            copied = true;
+        }
+    }
+
+    /**
+    * Keeps a number of basis points between 0 and 10000 using masks instead of
+    * comparisons.
+    */
+    private static int clamp(int value)
+    {
+        value &= ~(value >> 31);
+        int over = value - BASIS_POINTS;
+        return BASIS_POINTS + (over & (over >> 31));
+    }
+
+    /**
+    * Sets every probability back to the table's, keeping the copied array so a
+    * game played again does not copy it again.
+    */
+    public void reset()
+    {
+        if (copied)
+        {
+            System.arraycopy(table.packedRows(), 0, rows, 0, rows.length);
+        }
+    }
+}
@@ -8,23 +8,34 @@ import java.util.*;
 */
 public class Player
 {
+    public static final int MAX_JUMPS = 3;
+
     private boolean gameWon;
     private boolean gameEnd;
     private boolean caughtByPolice;
     private int jumps;
     private String playerName;
+    private Game game;
 
     /**
     * Default constructor to initialise default values, including a
     * jump count of 3.
     */
     public Player()
+    {
+        reset();
+        playerName = "Unknown";
+    }
+
+    /**
+    * Sets the player back to the start of a new game, keeping their name.
+    */
+    public final void reset()
     {
         gameWon = false;
         gameEnd = false;
         caughtByPolice = false;
-        jumps = 3;
-        playerName = "Unknown";
+        jumps = MAX_JUMPS;
     }
 
     public int getJumps()
@@ -72,30 +83,72 @@ public class Player
         this.playerName = playerName;
     }
 
+    public void setJumps(int jumps)
+    {
+        this.jumps = jumps;
+    }
+
+    public void setGame(Game game)
+    {
+        this.game = game;
+    }
+
     /**
     * Prompts player to enter name of 3-12 characters inclusive
     * @return playerName The name entered by user
     */
     public String promptPlayerName()
     {   
-        Scanner console = new Scanner(System.in);
+        return promptPlayerName(new Scanner(System.in));
+    }
+
+    /**
+    * Prompts player to enter name of 3-12 characters inclusive
+    * @param console The scanner the name is read from
+    * @return playerName The name entered by user
+    */
+    public String promptPlayerName(Scanner console)
+    {
         do
         {
-            System.out.println("Please enter your name (3-12 characters only): ");
-            playerName = console.nextLine().trim();
+            askPlayerName();
         }
-        while (playerName.length() < 3 || playerName.length() > 12);
+        while (!choosePlayerName(console.nextLine()));
         return playerName;
     }
 
+    /**
+    * Asks the player to enter a name of 3-12 characters inclusive.
+    */
+    public void askPlayerName()
+    {
+        display("Please enter your name (3-12 characters only): ");
+    }
+
+    /**
+    * Sets the player name if it is 3-12 characters inclusive.
+    * @param name The name entered by user
+    * @return True if the name was accepted, otherwise false
+    */
+    public boolean choosePlayerName(String name)
+    {
+        name = name.trim();
+        if (name.length() < 3 || name.length() > 12)
+        {
+            return false;
+        }
+        playerName = name;
+        return true;
+    }
+
     /**
     * Displays game instructions to user, using the name entered by player.
     */
     public void displayGameInstructions()
     {
-        System.out.println(" \n" + playerName + "! The new king has outlawed magic. You must escape Javalice as soon as possible!");
-        System.out.println("Escape Javalice by using the magical portals to find an exit to another realm.");
-        System.out.println("Warning, you must avoid the magic police. Good luck, " + playerName + "!\n");
+        display(" \n" + playerName + "! The new king has outlawed magic. You must escape Javalice as soon as possible!");
+        display("Escape Javalice by using the magical portals to find an exit to another realm.");
+        display("Warning, you must avoid the magic police. Good luck, " + playerName + "!\n");
     }
 
     /**
@@ -118,13 +171,34 @@ public class Player
     */
     public void displayRemainingJumps()
     {
+        if (game != null && !game.hasOutput())
+        {
+            return;
+        }
         if (jumps > 1 || jumps == 0)
         {
-            System.out.println("You have " + jumps + " jumps remaining!");
+            display("You have " + jumps + " jumps remaining!");
         }
         else if (jumps == 1)
         {
-            System.out.println("You have " + jumps + " jump remaining!");
+            display("You have " + jumps + " jump remaining!");
+        }
+    }
+
+    /**
+    * Prints a message through the game the player belongs to, or to the console
+    * if the player has not joined a game yet.
+    * @param message The message to be displayed
+    */
+    private void display(String message)
+    {
+        if (game == null)
+        {
+            System.out.println(message);
+        }
+        else
+        {
+            game.display(message);
         }
     }
-}
\ No newline at end of file
+}
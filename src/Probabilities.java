@@ -0,0 +1,125 @@
+/**
+* Class represents the probabilities of one game. Starts from the shared
+* ExitsTable, and each game records its own changes so no game can change the
+* probabilities seen by another. Changes are made in basis points (hundredths
+* of a percent) and kept between 0% and 100%.
+* @author rainflop000
+* @version 1.0
+*/
+public abstract class Probabilities
+{
+    public static final int BASIS_POINTS = 10000;
+
+    protected ExitsTable table;
+
+    /**
+    * Parametised constructor.
+    * @param table The table the probabilities start from
+    */
+    protected Probabilities(ExitsTable table)
+    {
+        this.table = table;
+    }
+
+    /**
+    * Getter method for the table the probabilities started from.
+    */
+    public ExitsTable getTable()
+    {
+        return table;
+    }
+
+    /**
+    * Returns the number of directions.
+    */
+    public int size()
+    {
+        return table.size();
+    }
+
+    /**
+    * Returns the name of a direction.
+    * @param index The index of the direction
+    */
+    public String getDirection(int index)
+    {
+        return table.getDirection(index);
+    }
+
+    public abstract double getOpenChance(int index);
+
+    public abstract double getExitChance(int index);
+
+    public abstract double getPoliceChance(int index);
+
+    /**
+    * Returns the exit chance of a direction in basis points, as it is saved.
+    * @param index The index of the direction
+    */
+    public int getExitBasisPoints(int index)
+    {
+        return (int) Math.round(getExitChance(index) * BASIS_POINTS);
+    }
+
+    /**
+    * Returns the police chance of a direction in basis points, as it is saved.
+    * @param index The index of the direction
+    */
+    public int getPoliceBasisPoints(int index)
+    {
+        return (int) Math.round(getPoliceChance(index) * BASIS_POINTS);
+    }
+
+    /**
+    * Draws whether the portal of a direction is open.
+    * @param index The index of the direction
+    * @param random The source to draw from
+    * @return True with the open chance of the direction
+    */
+    public abstract boolean rollOpen(int index, RandomSource random);
+
+    /**
+    * Draws whether the exit is found through the portal of a direction.
+    * @param index The index of the direction
+    * @param random The source to draw from
+    * @return True with the exit chance of the direction
+    */
+    public abstract boolean rollExit(int index, RandomSource random);
+
+    /**
+    * Draws whether the magic police are met through the portal of a direction.
+    * @param index The index of the direction
+    * @param random The source to draw from
+    * @return True with the police chance of the direction
+    */
+    public abstract boolean rollPolice(int index, RandomSource random);
+
+    /**
+    * Changes the exit chance of a direction, keeping it between 0% and 100%.
+    * @param index The index of the direction
+    * @param basisPoints The change in hundredths of a percent
+    */
+    public abstract void changeExitChance(int index, int basisPoints);
+
+    /**
+    * Changes the police chance of a direction, keeping it between 0% and 100%.
+    * @param index The index of the direction
+    * @param basisPoints The change in hundredths of a percent
+    */
+    public abstract void changePoliceChance(int index, int basisPoints);
+
+    /**
+    * Sets the exit and police chances of a direction, when a saved game is
+    * restored.
+    * @param index The index of the direction
+    * @param exitBasisPoints The exit chance in hundredths of a percent
+    * @param policeBasisPoints The police chance in hundredths of a percent
+    */
+    public abstract void setChances(int index, int exitBasisPoints, int policeBasisPoints);
+
+    /**
+    * Sets every probability back to the table's, without allocating, so the
+    * game can be played again.
+    */
+    public abstract void reset();
+}
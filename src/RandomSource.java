@@ -0,0 +1,38 @@
+/**
+* Interface for the random numbers drawn during a game. Each game draws from its
+* own source, so games played in parallel do not compete for a shared generator
+* and a game can be played again by starting from the same seed.
+* @author rainflop000
+* @version 1.0
+*/
+public interface RandomSource
+{
+    /**
+    * Returns a random double between 0 (inclusive) and 1 (exclusive).
+    */
+    double nextDouble();
+
+    /**
+    * Returns a random int between 0 (inclusive) and bound (exclusive).
+    * @param bound The upper bound, which must be positive
+    */
+    int nextInt(int bound);
+
+    /**
+    * Returns a random boolean.
+    */
+    boolean nextBoolean();
+
+    /**
+    * Returns a random long.
+    */
+    long nextLong();
+
+    /**
+    * Creates a new, independent source from this one, for example for another
+    * game. Splitting the same source in the same order always gives the same
+    * new sources.
+    * @return The new random source
+    */
+    RandomSource split();
+}
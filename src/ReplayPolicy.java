@@ -0,0 +1,86 @@
+/**
+* Decision policy answering every question with the next decision of a
+* recorded game. Answers no, or a portal that does not exist, once the
+* decisions run out, so a replay asking more questions than were recorded
+* cannot finish the game.
+* @author rainflop000
+* @version 1.0
+*/
+public class ReplayPolicy implements DecisionPolicy
+{
+    private byte[] decisions = new byte[0];
+    private int next;
+
+    /**
+    * Starts answering with the decisions of another recorded game.
+    * @param decisions The decisions, as recorded by GameRecorder
+    */
+    public void reset(byte[] decisions)
+    {
+        this.decisions = decisions;
+        next = 0;
+    }
+
+    /**
+    * Returns true if there are recorded decisions left.
+    */
+    public boolean hasNext()
+    {
+        return next < decisions.length;
+    }
+
+    public int choosePortal(Room room, Probabilities probabilities)
+    {
+        // Portals are recorded 7 bits to a byte, with the top bit set on all but the last byte
+        int index = 0;
+        for (int shift = 0; hasNext(); shift += 7)
+        {
+            int b = nextDecision();
+            index |= (b & 0x7f) << shift;
+            if (b < 0x80)
+            {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    public boolean openMagicBox()
+    {
+        return nextDecision() > 0;
+    }
+
+    public boolean addToInventory(int kind)
+    {
+        return nextDecision() > 0;
+    }
+
+    public boolean useInvisibilityCloak()
+    {
+        return nextDecision() > 0;
+    }
+
+    public boolean bribePolice()
+    {
+        return nextDecision() > 0;
+    }
+
+    public boolean payBribe(int bribeAmount, int coins)
+    {
+        return nextDecision() > 0;
+    }
+
+    public boolean jumpBackwards()
+    {
+        return nextDecision() > 0;
+    }
+
+    private int nextDecision()
+    {
+        if (next == decisions.length)
+        {
+            return -1;
+        }
+        return decisions[next++] & 0xff;
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* Plays recorded games again without a console, to reproduce a player's game or
+* to check that a change to the rules leaves recorded games unchanged. Each game
+* is started from its recorded random stream and given its recorded decisions,
+* and must finish in the state it was recorded in. A corpus of games is spread
+* over all processors with the fork/join framework.
+*
+* A corpus file holds the number of games followed by each GameRecord.
+* @author rainflop000
+* @version 1.0
+*/
+public class Replayer
+{
+    public static final String FILE_NAME = "recordings.dat";
+    private static final int GAMES_PER_TASK = 10000;
+    // Bytes of a record before its decisions, the last two being their number
+    private static final int RECORD_HEADER = 8 + 8 + 1 + 4 + 8 + 4;
+
+    private ExitsTable table;
+
+    /**
+    * Parametised constructor.
+    * @param table The directions and probabilities the games were recorded with
+    */
+    public Replayer(ExitsTable table)
+    {
+        this.table = table;
+    }
+
+    /**
+    * Creates a session games can be replayed in, one after another.
+    * @param packed True for a session with PackedProbabilities
+    * @param output The stream the games are printed to, or null to replay silently
+    */
+    public GameSession newSession(boolean packed, PrintStream output)
+    {
+        Probabilities probabilities = packed ? new PackedProbabilities(table) : new OverlayProbabilities(table);
+        return new GameSession(probabilities, new SplitMixRandom(0), output);
+    }
+
+    /**
+    * Plays a recorded game again.
+    * @param record The recorded game
+    * @param session The session to play it in, which must have been created by
+    * newSession() with the same kind of probabilities the game was recorded with
+    * @param policy The policy giving the recorded decisions, reused between games
+    * @return True if every decision was used and the game finished in the state
+    * it was recorded in, otherwise false
+    */
+    public boolean replay(GameRecord record, GameSession session, ReplayPolicy policy)
+    {
+        session.reset();
+        ((SplitMixRandom) session.getGame().getRandom()).setState(record.getSeed(), record.getGamma());
+        policy.reset(record.getDecisions());
+        Game game = session.getGame();
+        game.start();
+        while (game.getPendingDecision() != null && policy.hasNext())
+        {
+            game.decide(policy);
+        }
+        return game.getPendingDecision() == null && !policy.hasNext()
+            && GameRecord.fingerprint(session) == record.getFingerprint();
+    }
+
+    /**
+    * Replays every game of a corpus in parallel on the common fork/join pool.
+    * @param corpus The contents of a corpus file
+    * @return The indexes of the games which did not replay, in order
+    */
+    public List<Integer> verify(ByteBuffer corpus)
+    {
+        int[] offsets = index(corpus);
+        Queue<Integer> failed = new ConcurrentLinkedQueue<>();
+        ForkJoinPool.commonPool().invoke(new ReplayTask(corpus, offsets, 0, offsets.length, failed));
+        List<Integer> result = new ArrayList<>(failed);
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+    * Returns the offset of every record of a corpus.
+    * @param corpus The contents of a corpus file
+    */
+    public static int[] index(ByteBuffer corpus)
+    {
+        int[] offsets = new int[corpus.getInt(0)];
+        int position = 4;
+        for (int i = 0; i < offsets.length; i++)
+        {
+            offsets[i] = position;
+            position += RECORD_HEADER + corpus.getInt(position + RECORD_HEADER - 4);
+        }
+        return offsets;
+    }
+
+    /**
+    * Reads a record of a corpus.
+    * @param corpus The contents of a corpus file
+    * @param offset The offset of the record
+    */
+    public static GameRecord read(ByteBuffer corpus, int offset)
+    {
+        ByteBuffer in = corpus.duplicate();
+        in.position(offset);
+        return GameRecord.read(in);
+    }
+
+    /**
+    * Plays and records games with the simulator's policy, to build a corpus for
+    * checking later changes to the rules.
+    * @param games The number of games to record
+    * @param seed The seed all random draws are derived from
+    * @param packed True to play with PackedProbabilities
+    * @param out The stream the corpus is written to
+    */
+    public void record(int games, long seed, boolean packed, DataOutputStream out) throws IOException
+    {
+        RandomSource root = new SplitMixRandom(seed);
+        out.writeInt(games);
+        for (int i = 0; i < games; i++)
+        {
+            // The policy draws from its own stream, so replaying without it draws the same numbers
+            DecisionPolicy policy = new SimplePolicy(root.split());
+            Probabilities probabilities = packed ? new PackedProbabilities(table) : new OverlayProbabilities(table);
+            GameSession session = new GameSession(probabilities, root.split(), null);
+            GameRecorder recorder = new GameRecorder(session);
+            session.play(policy);
+            recorder.toRecord().write(out);
+        }
+    }
+
+    /**
+    * Task replaying a range of a corpus, splitting the range in half until it is
+    * small enough to replay on one thread.
+    */
+    private class ReplayTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private transient ByteBuffer corpus;
+        private int[] offsets;
+        private int from;
+        private int to;
+        private transient Queue<Integer> failed;
+
+        ReplayTask(ByteBuffer corpus, int[] offsets, int from, int to, Queue<Integer> failed)
+        {
+            this.corpus = corpus;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= GAMES_PER_TASK)
+            {
+                GameSession overlay = newSession(false, null);
+                GameSession packed = newSession(true, null);
+                ReplayPolicy policy = new ReplayPolicy();
+                ByteBuffer in = corpus.duplicate();
+                for (int i = from; i < to; i++)
+                {
+                    in.position(offsets[i]);
+                    GameRecord record = GameRecord.read(in);
+                    if (!replay(record, record.isPacked() ? packed : overlay, policy))
+                    {
+                        failed.add(i);
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ReplayTask(corpus, offsets, from, middle, failed), new ReplayTask(corpus, offsets, middle, to, failed));
+        }
+    }
+
+    /**
+    * Main method for the replayer.
+    * "record [games] [corpus file] [exits file] [seed] [packed]" records games
+    * played by the simulator's policy, "verify [corpus file] [exits file]" replays
+    * every game of a corpus and "show index [corpus file] [exits file]" prints one
+    * game of a corpus as the player saw it.
+    * @param args The command and its arguments
+    */
+    public static void main(String[] args) throws IOException
+    {
+        String command = args.length > 0 ? args[0] : "verify";
+        if (command.equals("record"))
+        {
+            int games = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+            String corpusName = args.length > 2 ? args[2] : FILE_NAME;
+            Replayer replayer = new Replayer(ExitsTable.load(args.length > 3 ? args[3] : Game.FILE_NAME));
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : new SplitMixRandom().nextLong();
+            boolean packed = args.length > 5 && args[5].equals("packed");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(corpusName))))
+            {
+                replayer.record(games, seed, packed, out);
+            }
+            System.out.println("Recorded " + games + " games to " + corpusName + " (seed " + seed + ")");
+            return;
+        }
+
+        int first = command.equals("show") ? 2 : 1;
+        String corpusName = args.length > first ? args[first] : FILE_NAME;
+        Replayer replayer = new Replayer(ExitsTable.load(args.length > first + 1 ? args[first + 1] : Game.FILE_NAME));
+        ByteBuffer corpus = ByteBuffer.wrap(Files.readAllBytes(Paths.get(corpusName)));
+        if (command.equals("show"))
+        {
+            GameRecord record = read(corpus, index(corpus)[Integer.parseInt(args[1])]);
+            boolean replayed = replayer.replay(record, replayer.newSession(record.isPacked(), System.out), new ReplayPolicy());
+            System.out.println(replayed ? "The game replayed as recorded." : "The game did not replay as recorded.");
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Integer> failed = replayer.verify(corpus);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int games = corpus.getInt(0);
+        System.out.printf("Replayed %d games in %.1f s (%.0f games per second on %d threads)%n",
+            games, seconds, games / seconds, ForkJoinPool.getCommonPoolParallelism());
+        if (failed.isEmpty())
+        {
+            System.out.println("Every game finished as recorded.");
+        }
+        else
+        {
+            System.out.println(failed.size() + " games did not finish as recorded, the first being "
+                + failed.subList(0, Math.min(10, failed.size())));
+        }
+    }
+}
@@ -2,25 +2,24 @@ import java.util.*;
 
 /**
 * Class represents a room/portal in the game. Contains methods generating available
-* portals, choose portal direction and handle user input.
+* portals and finding the direction chosen by the player. Normally every room is
+* new, its portals rolled as it is entered. In a Maze the room is one of the
+* rooms of the maze, a portal leads to the room on its other side, and jumping
+* backwards returns to the room the player came from.
 * @author rainflop000
 * @version 1.0
 */
 public class Room
 {
-    private boolean[] availablePortals = new boolean[4];
+    private long[] availablePortals;
+    private int availableCount;
     private Game game;
-    private int selectedIndex;
     private Items items;
-
-    /**
-    * Default constructor for Room class. selectedIndex value of -1 indicates no
-    * portals are available.
-    */
-    public Room()
-    {
-        selectedIndex = -1;
-    }
+    private Maze maze;
+    private long roomId;
+    // Rooms the player came through, the last one first, for jumping backwards
+    private long[] path = new long[Player.MAX_JUMPS];
+    private int pathLength;
 
     /**
     * Parametised constructor for Room class.
@@ -32,118 +31,285 @@ public class Room
     {
         this.game = game;
         this.items = items;
+        availablePortals = new long[(game.getProbabilities().size() + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    /**
+    * Makes the player play in a maze, from its first room.
+    * @param maze The maze, or null for every room to be new
+    */
+    public void setMaze(Maze maze)
+    {
+        this.maze = maze;
+        reset();
+    }
+
+    public Maze getMaze()
+    {
+        return maze;
     }
 
     /**
-    * Accessor for the user's selected direction.
-    * @return selectedIndex The portal direction chosen by the user, stored in an array
+    * Returns the id of the room of the maze the player is in, or 0 if the game
+    * is not played in a maze.
     */
-    public int getSelectedIndex()
+    public long getRoomId()
     {
-        return selectedIndex;
+        return roomId;
     }
 
     /**
-    * Chooses portal direction based on user's input.
-    * @return selectedIndex The index of the selected portal direction represented in
-    * the array of available directions
+    * Sends the player back to the first room of the maze, for a new game.
     */
-    public int choosePortalDirection()
+    public void reset()
     {
-        String[] portals = getAvailablePortals();
-        if (portals.length == 0)
+        roomId = maze == null ? 0 : maze.getStartRoom();
+        pathLength = 0;
+    }
+
+    /**
+    * Moves the player through a portal into the room on its other side, when
+    * playing in a maze.
+    * @param index The index of the direction of the portal
+    */
+    public void goThrough(int index)
+    {
+        if (maze == null)
         {
-            return -1;
+            return;
         }
-        char direction = getUserInput(portals);
-        selectedIndex = findSelectedIndex(direction);
-        return selectedIndex;
+        if (pathLength == path.length)
+        {
+            // Only as many rooms as there are jumps can be returned to
+            System.arraycopy(path, 0, path, 1, path.length - 1);
+            pathLength--;
+        }
+        else
+        {
+            System.arraycopy(path, 0, path, 1, pathLength);
+        }
+        path[0] = roomId;
+        pathLength++;
+        roomId = maze.getNeighbour(roomId, index);
     }
 
     /**
-    * Prompts user for input to choose which portal direction they would like to
-    * go in.
-    * @param portals An array of Strings showing the available portal directions they can
-    * choose from
-    * @return direction A char of the direction input by the user
+    * Moves the player back to the room they came from, when playing in a maze.
+    * A player who has not left the first room stays in it.
     */
-    public char getUserInput(String[] portals)
+    public void jumpBack()
     {
-        Scanner console = new Scanner(System.in);
-        char direction;
-        boolean validDirection;
-        do
+        if (maze == null || pathLength == 0)
         {
-            System.out.println("Choose an available portal direction: " + Arrays.toString(portals));
-            direction = console.nextLine().trim().toUpperCase().charAt(0);
-            validDirection = false;
-            for (String portal : portals)
+            return;
+        }
+        roomId = path[0];
+        pathLength--;
+        System.arraycopy(path, 1, path, 0, pathLength);
+    }
+
+    /**
+    * Checks if a portal of the current room is open.
+    * @param index The index of the direction
+    * @return True if the player can go through the portal, otherwise false
+    */
+    public boolean isPortalAvailable(int index)
+    {
+        return index >= 0 && index < game.getProbabilities().size()
+            && (availablePortals[index / Long.SIZE] >>> index & 1) != 0;
+    }
+
+    /**
+    * Finds selectedIndex based on the direction input by the user: the name of a
+    * direction, the start of the name of exactly one available portal, or the
+    * number of an available portal in the list shown to the player.
+    * @param direction The selected direction as typed by the player
+    * @return The index of the selected direction. Returns -1 if no valid
+    * direction chosen
+    */
+    public int findSelectedIndex(String direction)
+    {
+        direction = direction.trim();
+        if (direction.isEmpty())
+        {
+            return -1;
+        }
+        Probabilities probabilities = game.getProbabilities();
+        int index = probabilities.getTable().indexOf(direction);
+        if (index >= 0)
+        {
+            return index;
+        }
+        if (isNumber(direction))
+        {
+            int number = direction.length() > 9 ? 0 : Integer.parseInt(direction);
+            return number >= 1 && number <= availableCount ? getAvailablePortal(number - 1) : -1;
+        }
+        int found = -1;
+        for (int i = nextAvailablePortal(0); i >= 0; i = nextAvailablePortal(i + 1))
+        {
+            if (probabilities.getDirection(i).regionMatches(true, 0, direction, 0, direction.length()))
             {
-                if (portal.charAt(0) == direction)
+                if (found >= 0)
                 {
-                    validDirection = true;
-                    break;
+                    // More than one portal starts this way, so the player has to say which
+                    return -1;
                 }
+                found = i;
             }
         }
-        while (!(Character.isLetter(direction) && (validDirection)));
-        return direction;
+        return found;
+    }
+
+    private static boolean isNumber(String text)
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9')
+            {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-    * Finds selectedIndex based on the direction input by the user.
-    * @param direction The selected direction as a character.
-    * @return The index of the selected direction. Returns -1 if no valid
-    * direction chosen
+    * Method generates available portals player can choose to go in from current room.
+    * In a maze the portals are those of the room of the maze the player is in.
+    * @return The number of available portals
+    */
+    public int generatePortals()
+    {
+        if (maze != null)
+        {
+            MazeRoom room = maze.getRoom(roomId);
+            for (int word = 0; word < availablePortals.length; word++)
+            {
+                availablePortals[word] = room.getPortalWord(word);
+            }
+            availableCount = room.getOpenCount();
+            return availableCount;
+        }
+        Probabilities probabilities = game.getProbabilities();
+        RandomSource random = game.getRandom();
+        Arrays.fill(availablePortals, 0);
+        int count = 0;
+        for (int i = 0; i < probabilities.size(); i++)
+        {
+            if (probabilities.rollOpen(i, random))
+            {
+                availablePortals[i / Long.SIZE] |= 1L << i;
+                count++;
+            }
+        }
+        availableCount = count;
+        return count;
+    }
+
+    /**
+    * Returns the number of portals available in the current room.
     */
-    public int findSelectedIndex(char direction)
+    public int getAvailableCount()
     {
-        for (int i = 0; i < game.getDirection().length; i++)
+        return availableCount;
+    }
+
+    /**
+    * Returns the index of the direction of an available portal, counting the
+    * available portals in the order they are shown to the player.
+    * @param position The position of the portal, from 0 to getAvailableCount() - 1
+    * @return The index of the direction, or -1 if there is no such portal
+    */
+    public int getAvailablePortal(int position)
+    {
+        for (int word = 0; word < availablePortals.length; word++)
         {
-            if (game.getDirection()[i].charAt(0) == direction)
+            long bits = availablePortals[word];
+            int count = Long.bitCount(bits);
+            if (position < count)
             {
-                return i;
+                for (; position > 0; position--)
+                {
+                    bits &= bits - 1;
+                }
+                return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
             }
+            position -= count;
         }
         return -1;
     }
 
     /**
-    * Method generates available portals player can choose to go in from current room.
-    * @return portals An array of boolean values indicating whether each portal is
-    * available, or not.
+    * Returns the index of the first available portal at or after a direction.
+    * @param from The index of the direction to start from
+    * @return The index of the direction, or -1 if there is none
     */
-    public boolean[] generatePortals()
+    public int nextAvailablePortal(int from)
     {
-        boolean[] portals = new boolean[4]; // Array to store available portals
-        for (int i = 0; i < 4; i++)
+        int word = from / Long.SIZE;
+        if (word >= availablePortals.length)
+        {
+            return -1;
+        }
+        long bits = availablePortals[word] & (-1L << from);
+        while (bits == 0)
         {
-            double portalOpenChance = game.getProbabilities()[i][0];
-            double random = new Random().nextDouble();
-            portals[i] = random <= portalOpenChance;
+            if (++word == availablePortals.length)
+            {
+                return -1;
+            }
+            bits = availablePortals[word];
         }
-        return portals;
+        return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+    * Returns the number of longs the available portals are held in, 64 to a long.
+    */
+    public int getPortalWordCount()
+    {
+        return availablePortals.length;
     }
 
     /**
-    * Gets the available portal directions based on the generated portals.
+    * Returns 64 of the available portals, so they can be saved.
+    * @param word The index of the long
+    * @return A bitmask with bit i set if the portal of direction 64 * word + i is
+    * available
+    */
+    public long getPortalWord(int word)
+    {
+        return availablePortals[word];
+    }
+
+    /**
+    * Sets 64 of the available portals, when a saved game is restored.
+    * @param word The index of the long
+    * @param bits A bitmask with bit i set if the portal of direction 64 * word + i
+    * is available
+    */
+    public void setPortalWord(int word, long bits)
+    {
+        availableCount += Long.bitCount(bits) - Long.bitCount(availablePortals[word]);
+        availablePortals[word] = bits;
+    }
+
+    /**
+    * Describes the available portals of the current room for the player.
     * @return available An array of available portal directions stored as Strings
     */
     public String[] getAvailablePortals()
     {
-        availablePortals = generatePortals();
-        List<String> available = new ArrayList<>();
-        for (int i = 0; i < 4; i++)
+        Probabilities probabilities = game.getProbabilities();
+        String[] available = new String[availableCount];
+        int count = 0;
+        for (int i = nextAvailablePortal(0); i >= 0; i = nextAvailablePortal(i + 1))
         {
-            if (availablePortals[i])
-            {
-                String direction = game.getDirection()[i];
-                double exitChance = game.getProbabilities()[i][1] * 100; // Convert to percentage
-                double policeEncounterChance = game.getProbabilities()[i][2] * 100; // Convert to percentage 
-                String portalInfo = String.format("%s (Exit: %.2f%%, Police: %.2f%%)", direction, exitChance, policeEncounterChance);
-                available.add(portalInfo);
-            }
+            String direction = probabilities.getDirection(i);
+            double exitChance = probabilities.getExitChance(i) * 100; // Convert to percentage
+            double policeEncounterChance = probabilities.getPoliceChance(i) * 100; // Convert to percentage 
+            available[count++] = String.format("%s (Exit: %.2f%%, Police: %.2f%%)", direction, exitChance, policeEncounterChance);
         }
-        return available.toArray(new String[0]);
+        return available;
     }
 }
@@ -0,0 +1,111 @@
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+* Bounded cache of the rooms of a maze, shared by every game played in it. Rooms
+* are spread over stripes by id, each stripe keeping its rooms in least recently
+* used order behind its own lock, so games on different threads rarely wait for
+* each other. When a stripe is full the room used least recently is dropped, to
+* be generated again if it is visited again.
+* @author rainflop000
+* @version 1.0
+*/
+public class RoomCache
+{
+    private static final int STRIPES = 16;
+
+    private Stripe[] stripes = new Stripe[STRIPES];
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+
+    /**
+    * Parametised constructor.
+    * @param capacity The largest number of rooms kept
+    */
+    public RoomCache(int capacity)
+    {
+        for (int i = 0; i < STRIPES; i++)
+        {
+            stripes[i] = new Stripe(Math.max(1, capacity / STRIPES));
+        }
+    }
+
+    /**
+    * Returns a room, generating it if it is not in the cache.
+    * @param id The id of the room
+    * @param generator Generates the room from its id
+    * @return The room
+    */
+    public MazeRoom get(long id, LongFunction<MazeRoom> generator)
+    {
+        Stripe stripe = stripes[(int) (id ^ (id >>> 32)) * 0x9e3779b9 >>> 28];
+        synchronized (stripe)
+        {
+            MazeRoom room = stripe.get(id);
+            if (room != null)
+            {
+                hits.increment();
+                return room;
+            }
+            misses.increment();
+            room = generator.apply(id);
+            stripe.put(id, room);
+            return room;
+        }
+    }
+
+    /**
+    * Returns the number of rooms kept.
+    */
+    public int size()
+    {
+        int size = 0;
+        for (Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+    * Returns the number of times a room was found in the cache.
+    */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+    * Returns the number of times a room had to be generated.
+    */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+    * Part of the cache, in least recently used order.
+    */
+    private static class Stripe extends LinkedHashMap<Long, MazeRoom>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private int capacity;
+
+        Stripe(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, MazeRoom> eldest)
+        {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+import java.nio.*;
+import java.util.*;
+
+/**
+* Store of parked sessions kept outside the Java heap. Each session is written
+* to a fixed-size record in large direct buffers, and found again by its id
+* through an index of primitive arrays, so millions of idle games add no objects
+* for the garbage collector to trace. A session is materialized only while it is
+* being advanced: load() copies a record into a reusable GameSession and save()
+* copies it back.
+*
+* Records hold the random stream, the player, the coins, the magic police alarms
+* found, the counts of every kind of item registered when the store was made,
+* the current room, the decision the game is waiting for and the exit and police
+* chances of every direction in basis points. A store is not thread-safe; the
+* non-blocking server keeps one for each selector thread.
+* @author rainflop000
+* @version 1.0
+*/
+public class SessionStore
+{
+    private static final int SLAB_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_NAME = 12;
+
+    // Offsets of the fields of a record, in bytes
+    private static final int SEED = 0;
+    private static final int GAMMA = 8;
+    private static final int COINS = 16;
+    private static final int FOUND_COINS = 20;
+    private static final int CAPACITY = 24;
+    private static final int BRIBE_AMOUNT = 28;
+    private static final int ROUNDS = 32;
+    private static final int COINS_BRIBED = 36;
+    private static final int SELECTED_INDEX = 40;
+    private static final int JUMPS = 44;
+    private static final int FLAGS = 45;
+    private static final int DECISION = 46;
+    private static final int NAME_LENGTH = 47;
+    private static final int ALARMS = 48;
+    private static final int NAME = 52;
+    // The open portals follow the name, 64 to a long, then the counts of the items and the chances
+    private static final int PORTALS = (NAME + 2 * MAX_NAME + 7) & ~7;
+
+    private static final int GAME_WON = 1;
+    private static final int GAME_END = 2;
+    private static final int CAUGHT_BY_POLICE = 4;
+    private static final int FOUND_EXIT = 8;
+    private static final int POLICE_ENCOUNTER = 16;
+
+    private static final Decision[] DECISIONS = Decision.values();
+
+    private ExitsTable table;
+    private int portalWords;
+    private int inventory;
+    private int inventoryWords;
+    private int chances;
+    private int recordSize;
+    private int recordsPerSlab;
+    private ByteBuffer[] slabs = new ByteBuffer[0];
+    private int nextRecord;
+    private int[] freeRecords = new int[16];
+    private int freeCount;
+
+    // Open addressing index from session id to record; a record of -1 marks an empty entry
+    private long[] ids;
+    private int[] records;
+    private int size;
+
+    /**
+    * Parametised constructor.
+    * @param table The table the stored sessions are played with, which sets the
+    * number of directions in a record
+    */
+    public SessionStore(ExitsTable table)
+    {
+        this.table = table;
+        portalWords = (table.size() + Long.SIZE - 1) / Long.SIZE;
+        inventory = PORTALS + 8 * portalWords;
+        inventoryWords = Inventory.getWordCount(Inventory.getKindCount());
+        chances = inventory + 8 * inventoryWords;
+        // Round up to 8 bytes so the longs of every record are aligned
+        recordSize = (chances + 4 * table.size() + 7) & ~7;
+        recordsPerSlab = SLAB_SIZE / recordSize;
+        ids = new long[64];
+        records = new int[64];
+        Arrays.fill(records, -1);
+    }
+
+    /**
+    * Returns the number of sessions in the store.
+    */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+    * Returns the number of bytes each session takes outside the heap.
+    */
+    public int getRecordSize()
+    {
+        return recordSize;
+    }
+
+    /**
+    * Returns true if a session with the given id is in the store.
+    * @param id The id of the session
+    */
+    public boolean contains(long id)
+    {
+        return records[find(id)] >= 0;
+    }
+
+    /**
+    * Writes a session to the store, replacing any session saved with the same id.
+    * @param id The id of the session
+    * @param session The session, which must draw from a SplitMixRandom
+    */
+    public void save(long id, GameSession session)
+    {
+        SplitMixRandom random = randomOf(session);
+        int entry = find(id);
+        int record = records[entry];
+        if (record < 0)
+        {
+            record = allocate();
+            ids[entry] = id;
+            records[entry] = record;
+            if (++size * 4 > ids.length * 3)
+            {
+                grow();
+            }
+        }
+        ByteBuffer slab = slabs[record / recordsPerSlab];
+        int offset = (record % recordsPerSlab) * recordSize;
+
+        Game game = session.getGame();
+        Player player = session.getPlayer();
+        Items items = session.getItems();
+        Probabilities probabilities = session.getProbabilities();
+        slab.putLong(offset + SEED, random.getSeed());
+        slab.putLong(offset + GAMMA, random.getGamma());
+        slab.putInt(offset + COINS, items.getCoins());
+        slab.putInt(offset + FOUND_COINS, items.getFoundCoins());
+        slab.putInt(offset + ALARMS, items.getAlarms());
+        slab.putInt(offset + CAPACITY, items.getInventory().getCapacity());
+        slab.putInt(offset + BRIBE_AMOUNT, game.getBribeAmount());
+        slab.putInt(offset + ROUNDS, game.getRounds());
+        slab.putInt(offset + COINS_BRIBED, game.getCoinsBribed());
+        slab.putInt(offset + SELECTED_INDEX, game.getSelectedIndex());
+        slab.put(offset + JUMPS, (byte) player.getJumps());
+        int flags = (player.isGameWon() ? GAME_WON : 0) | (player.isGameEnd() ? GAME_END : 0)
+            | (player.isCaughtByPolice() ? CAUGHT_BY_POLICE : 0) | (game.isFoundExit() ? FOUND_EXIT : 0)
+            | (game.isPoliceEncounter() ? POLICE_ENCOUNTER : 0);
+        slab.put(offset + FLAGS, (byte) flags);
+        Decision decision = game.getPendingDecision();
+        slab.put(offset + DECISION, (byte) (decision == null ? 0 : decision.ordinal() + 1));
+        String name = player.getPlayerName();
+        int length = Math.min(name.length(), MAX_NAME);
+        slab.put(offset + NAME_LENGTH, (byte) length);
+        for (int i = 0; i < length; i++)
+        {
+            slab.putChar(offset + NAME + 2 * i, name.charAt(i));
+        }
+        Room room = session.getRoom();
+        for (int i = 0; i < portalWords; i++)
+        {
+            slab.putLong(offset + PORTALS + 8 * i, room.getPortalWord(i));
+        }
+        for (int i = 0; i < inventoryWords; i++)
+        {
+            slab.putLong(offset + inventory + 8 * i, items.getInventory().getWord(i));
+        }
+        for (int i = 0; i < table.size(); i++)
+        {
+            slab.putShort(offset + chances + 4 * i, (short) probabilities.getExitBasisPoints(i));
+            slab.putShort(offset + chances + 4 * i + 2, (short) probabilities.getPoliceBasisPoints(i));
+        }
+    }
+
+    /**
+    * Copies a stored session into a session object, which can then be advanced
+    * and saved again.
+    * @param id The id of the session
+    * @param session The session to overwrite, which must draw from a SplitMixRandom
+    * and be played with the store's table
+    * @return True if the session was found, otherwise false
+    */
+    public boolean load(long id, GameSession session)
+    {
+        int record = records[find(id)];
+        if (record < 0)
+        {
+            return false;
+        }
+        ByteBuffer slab = slabs[record / recordsPerSlab];
+        int offset = (record % recordsPerSlab) * recordSize;
+
+        randomOf(session).setState(slab.getLong(offset + SEED), slab.getLong(offset + GAMMA));
+        Items items = session.getItems();
+        items.setCoins(slab.getInt(offset + COINS));
+        items.setFoundCoins(slab.getInt(offset + FOUND_COINS));
+        items.setAlarms(slab.getInt(offset + ALARMS));
+        Inventory held = items.getInventory();
+        held.clear();
+        held.setCapacity(slab.getInt(offset + CAPACITY));
+        for (int i = 0; i < inventoryWords; i++)
+        {
+            held.setWord(i, slab.getLong(offset + inventory + 8 * i));
+        }
+        Room room = session.getRoom();
+        for (int i = 0; i < portalWords; i++)
+        {
+            room.setPortalWord(i, slab.getLong(offset + PORTALS + 8 * i));
+        }
+
+        int flags = slab.get(offset + FLAGS);
+        Player player = session.getPlayer();
+        player.setJumps(slab.get(offset + JUMPS));
+        player.setGameWon((flags & GAME_WON) != 0);
+        player.setGameEnd((flags & GAME_END) != 0);
+        player.setCaughtByPolice((flags & CAUGHT_BY_POLICE) != 0);
+        char[] name = new char[slab.get(offset + NAME_LENGTH)];
+        for (int i = 0; i < name.length; i++)
+        {
+            name[i] = slab.getChar(offset + NAME + 2 * i);
+        }
+        player.setPlayerName(new String(name));
+
+        // Only directions changed from the table are set, so a game which changed
+        // nothing still shares the table's rows
+        Probabilities probabilities = session.getProbabilities();
+        probabilities.reset();
+        for (int i = 0; i < table.size(); i++)
+        {
+            int exit = slab.getShort(offset + chances + 4 * i);
+            int police = slab.getShort(offset + chances + 4 * i + 2);
+            if (exit != probabilities.getExitBasisPoints(i) || police != probabilities.getPoliceBasisPoints(i))
+            {
+                probabilities.setChances(i, exit, police);
+            }
+        }
+
+        int decision = slab.get(offset + DECISION);
+        session.getGame().restore(decision == 0 ? null : DECISIONS[decision - 1], slab.getInt(offset + SELECTED_INDEX),
+            slab.getInt(offset + BRIBE_AMOUNT), (flags & FOUND_EXIT) != 0, (flags & POLICE_ENCOUNTER) != 0,
+            slab.getInt(offset + ROUNDS), slab.getInt(offset + COINS_BRIBED));
+        return true;
+    }
+
+    /**
+    * Removes a session from the store, so its record can be reused.
+    * @param id The id of the session
+    * @return True if the session was in the store, otherwise false
+    */
+    public boolean remove(long id)
+    {
+        int entry = find(id);
+        int record = records[entry];
+        if (record < 0)
+        {
+            return false;
+        }
+        if (freeCount == freeRecords.length)
+        {
+            freeRecords = Arrays.copyOf(freeRecords, freeCount * 2);
+        }
+        freeRecords[freeCount++] = record;
+        size--;
+        // Move later entries of the same run back, so no lookup stops at the gap
+        int mask = ids.length - 1;
+        int gap = entry;
+        for (int i = (gap + 1) & mask; records[i] >= 0; i = (i + 1) & mask)
+        {
+            int home = hash(ids[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask))
+            {
+                ids[gap] = ids[i];
+                records[gap] = records[i];
+                gap = i;
+            }
+        }
+        records[gap] = -1;
+        return true;
+    }
+
+    /**
+    * Returns the entry of the index holding an id, or the empty entry where it
+    * would be added.
+    */
+    private int find(long id)
+    {
+        int mask = ids.length - 1;
+        int i = hash(id) & mask;
+        while (records[i] >= 0 && ids[i] != id)
+        {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int hash(long id)
+    {
+        long h = id * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+    * Doubles the index, adding every entry again.
+    */
+    private void grow()
+    {
+        long[] oldIds = ids;
+        int[] oldRecords = records;
+        ids = new long[oldIds.length * 2];
+        records = new int[oldRecords.length * 2];
+        Arrays.fill(records, -1);
+        for (int i = 0; i < oldIds.length; i++)
+        {
+            if (oldRecords[i] >= 0)
+            {
+                int entry = find(oldIds[i]);
+                ids[entry] = oldIds[i];
+                records[entry] = oldRecords[i];
+            }
+        }
+    }
+
+    /**
+    * Returns a free record, reusing a removed session's record if there is one
+    * and otherwise taking the next one, adding a slab when the last is full.
+    */
+    private int allocate()
+    {
+        if (freeCount > 0)
+        {
+            return freeRecords[--freeCount];
+        }
+        int record = nextRecord++;
+        if (record / recordsPerSlab == slabs.length)
+        {
+            slabs = Arrays.copyOf(slabs, slabs.length + 1);
+            slabs[slabs.length - 1] = ByteBuffer.allocateDirect(recordsPerSlab * recordSize).order(ByteOrder.nativeOrder());
+        }
+        return record;
+    }
+
+    private static SplitMixRandom randomOf(GameSession session)
+    {
+        if (!(session.getGame().getRandom() instanceof SplitMixRandom random))
+        {
+            throw new IllegalArgumentException("Only sessions drawing from a SplitMixRandom can be stored");
+        }
+        return random;
+    }
+}
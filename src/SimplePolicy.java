@@ -0,0 +1,55 @@
+/**
+* Decision policy used by the simulator. Picks one of the available portals at
+* random and says yes to every other question, so the player always opens boxes,
+* keeps cloaks, hides or bribes when possible and jumps when sent to jail.
+* @author rainflop000
+* @version 1.0
+*/
+public class SimplePolicy implements DecisionPolicy
+{
+    private RandomSource random;
+
+    /**
+    * Parametised constructor.
+    * @param random The source the portal choices are drawn from
+    */
+    public SimplePolicy(RandomSource random)
+    {
+        this.random = random;
+    }
+
+    public int choosePortal(Room room, Probabilities probabilities)
+    {
+        return room.getAvailablePortal(random.nextInt(room.getAvailableCount()));
+    }
+
+    public boolean openMagicBox()
+    {
+        return true;
+    }
+
+    public boolean addToInventory(int kind)
+    {
+        return true;
+    }
+
+    public boolean useInvisibilityCloak()
+    {
+        return true;
+    }
+
+    public boolean bribePolice()
+    {
+        return true;
+    }
+
+    public boolean payBribe(int bribeAmount, int coins)
+    {
+        return true;
+    }
+
+    public boolean jumpBackwards()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+* Class totals the outcome of a batch of simulated games. Results of batches
+* played on different threads are combined with add().
+* @author rainflop000
+* @version 1.0
+*/
+public class SimulationResult
+{
+    private long games;
+    private long wins;
+    private long rounds;
+    private long coinsBribed;
+    private long jumpsUsed;
+
+    /**
+    * Records the outcome of one finished game.
+    * @param game The finished game
+    * @param player The player of the game
+    */
+    public void record(Game game, Player player)
+    {
+        games++;
+        if (player.isGameWon())
+        {
+            wins++;
+        }
+        rounds += game.getRounds();
+        coinsBribed += game.getCoinsBribed();
+        jumpsUsed += Player.MAX_JUMPS - player.getJumps();
+    }
+
+    /**
+    * Records the totals of games played elsewhere, such as by the VectorSimulator.
+    * @param games The number of finished games
+    * @param wins The number of games won
+    * @param rounds The rounds played in all the games
+    * @param coinsBribed The coins paid in bribes in all the games
+    * @param jumpsUsed The jumps used in all the games
+    */
+    public void record(long games, long wins, long rounds, long coinsBribed, long jumpsUsed)
+    {
+        this.games += games;
+        this.wins += wins;
+        this.rounds += rounds;
+        this.coinsBribed += coinsBribed;
+        this.jumpsUsed += jumpsUsed;
+    }
+
+    /**
+    * Adds the totals of another batch to this one.
+    * @param other The result of another batch of games
+    * @return This result, containing both batches
+    */
+    public SimulationResult add(SimulationResult other)
+    {
+        games += other.games;
+        wins += other.wins;
+        rounds += other.rounds;
+        coinsBribed += other.coinsBribed;
+        jumpsUsed += other.jumpsUsed;
+        return this;
+    }
+
+    public long getGames()
+    {
+        return games;
+    }
+
+    public long getWins()
+    {
+        return wins;
+    }
+
+    public double getWinRate()
+    {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    public double getAverageRounds()
+    {
+        return games == 0 ? 0 : (double) rounds / games;
+    }
+
+    public double getAverageCoinsBribed()
+    {
+        return games == 0 ? 0 : (double) coinsBribed / games;
+    }
+
+    public double getAverageJumpsUsed()
+    {
+        return games == 0 ? 0 : (double) jumpsUsed / games;
+    }
+
+    /**
+    * Returns the lower end of the Wilson score interval of the win rate, which
+    * stays within 0 and 1 and holds for win rates near either.
+    * @param z The number of standard deviations, such as 1.96 for 95%
+    */
+    public double getWinRateLow(double z)
+    {
+        return games == 0 ? 0 : wilsonCentre(z) - wilsonHalfWidth(z);
+    }
+
+    /**
+    * Returns the upper end of the Wilson score interval of the win rate.
+    * @param z The number of standard deviations, such as 1.96 for 95%
+    */
+    public double getWinRateHigh(double z)
+    {
+        return games == 0 ? 1 : wilsonCentre(z) + wilsonHalfWidth(z);
+    }
+
+    private double wilsonCentre(double z)
+    {
+        return (getWinRate() + z * z / (2.0 * games)) / (1 + z * z / games);
+    }
+
+    private double wilsonHalfWidth(double z)
+    {
+        double rate = getWinRate();
+        return z / (1 + z * z / games) * Math.sqrt(rate * (1 - rate) / games + z * z / (4.0 * games * games));
+    }
+}
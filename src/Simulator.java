@@ -0,0 +1,178 @@
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+* Plays games without a console to estimate how difficult an exits.txt file is.
+* Questions are answered by a decision policy instead of the player, and games
+* are spread over all processors with the fork/join framework.
+* @author rainflop000
+* @version 1.0
+*/
+public class Simulator
+{
+    public static final long DEFAULT_GAMES = 1000000;
+    private static final int GAMES_PER_TASK = 10000;
+
+    private ExitsTable table;
+    private boolean packed;
+    private Maze maze;
+    private Hints hints;
+
+    /**
+    * Parametised constructor.
+    * @param table The directions and probabilities every game starts from
+    * @param packed True to play with PackedProbabilities instead of doubles
+    */
+    public Simulator(ExitsTable table, boolean packed)
+    {
+        this.table = table;
+        this.packed = packed;
+    }
+
+    /**
+    * Parametised constructor for games played in a maze.
+    * @param table The directions and probabilities every game starts from
+    * @param packed True to play with PackedProbabilities instead of doubles
+    * @param maze The maze every game is played in, or null for every room to be new
+    */
+    public Simulator(ExitsTable table, boolean packed, Maze maze)
+    {
+        this(table, packed);
+        this.maze = maze;
+    }
+
+    /**
+    * Makes every game follow hints instead of the simple policy, to measure how
+    * well a solution plays.
+    * @param hints The hints for the table, or null to play with SimplePolicy
+    */
+    public void setHints(Hints hints)
+    {
+        this.hints = hints;
+    }
+
+    /**
+    * Plays a number of games in parallel on the common fork/join pool. Every
+    * game draws from its own stream split from the seed, in an order which does
+    * not depend on the threads, so the same seed always gives the same result.
+    * @param games The number of games to play
+    * @param seed The seed all random draws are derived from
+    * @return The totals of all games played
+    */
+    public SimulationResult simulate(long games, long seed)
+    {
+        return ForkJoinPool.commonPool().invoke(new SimulationTask(0, games, new SplitMixRandom(seed)));
+    }
+
+    /**
+    * Plays a number of games one after another without any output. The games
+    * reuse one session, so playing them allocates nothing.
+    * @param games The number of games to play
+    * @param random The source every random draw of the games is taken from
+    * @param result The result the outcome of the games is recorded in
+    */
+    public void playGames(long games, RandomSource random, SimulationResult result)
+    {
+        Probabilities probabilities = packed ? new PackedProbabilities(table) : new OverlayProbabilities(table);
+        GameSession session = new GameSession(probabilities, random, null, maze);
+        DecisionPolicy policy = hints == null ? new SimplePolicy(random) : new HintPolicy(hints, session);
+        for (long i = 0; i < games; i++)
+        {
+            session.reset();
+            session.play(policy);
+            result.record(session.getGame(), session.getPlayer());
+        }
+    }
+
+    /**
+    * Task playing a range of games, splitting the range in half until it is
+    * small enough to play on one thread.
+    */
+    private class SimulationTask extends RecursiveTask<SimulationResult>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long from;
+        private long to;
+        private transient RandomSource random;
+
+        SimulationTask(long from, long to, RandomSource random)
+        {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected SimulationResult compute()
+        {
+            if (to - from <= GAMES_PER_TASK)
+            {
+                SimulationResult result = new SimulationResult();
+                playGames(to - from, random, result);
+                return result;
+            }
+            long middle = (from + to) >>> 1;
+            SimulationTask left = new SimulationTask(from, middle, random.split());
+            left.fork();
+            SimulationResult right = new SimulationTask(middle, to, random.split()).compute();
+            return left.join().add(right);
+        }
+    }
+
+    /**
+    * Main method for the simulator. Reads the exits file and prints the outcome
+    * of the simulated games.
+    * @param args Optional number of games to play, name of the exits file, seed, then
+    * "packed" to play with probabilities packed into basis points, "maze" to
+    * play every game in one maze generated from the seed and "hints" to follow
+    * the hints saved by the Solver
+    */
+    public static void main(String[] args) throws IOException
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_GAMES;
+        String fileName = args.length > 1 ? args[1] : Game.FILE_NAME;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : new SplitMixRandom().nextLong();
+
+        boolean packed = false;
+        boolean inMaze = false;
+        boolean withHints = false;
+        for (int i = 3; i < args.length; i++)
+        {
+            packed |= args[i].equals("packed");
+            inMaze |= args[i].equals("maze");
+            withHints |= args[i].equals("hints");
+        }
+        ExitsTable table = ExitsTable.load(fileName);
+        Maze maze = inMaze ? new Maze(table, seed) : null;
+        Simulator simulator = new Simulator(table, packed, maze);
+        if (withHints)
+        {
+            Hints hints = Hints.load(Solution.FILE_NAME, table);
+            if (hints == null)
+            {
+                System.out.println("No hints found. Run java Solver to create " + Solution.FILE_NAME);
+                return;
+            }
+            simulator.setHints(hints);
+        }
+
+        long start = System.nanoTime();
+        SimulationResult result = simulator.simulate(games, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("Games played:        " + result.getGames() + " (seed " + seed + ")");
+        System.out.printf("Win rate:            %.2f%%%n", result.getWinRate() * 100);
+        System.out.printf("Average rounds:      %.2f%n", result.getAverageRounds());
+        System.out.printf("Average coins bribed: %.2f%n", result.getAverageCoinsBribed());
+        System.out.printf("Average jumps used:  %.2f%n", result.getAverageJumpsUsed());
+        System.out.printf("Games per minute:    %.0f (%.1f s on %d threads)%n",
+            result.getGames() / seconds * 60, seconds, ForkJoinPool.getCommonPoolParallelism());
+        if (maze != null)
+        {
+            RoomCache cache = maze.getCache();
+            System.out.printf("Rooms generated:     %d (%.2f%% of rooms entered found in the cache)%n",
+                cache.getMisses(), cache.getHits() * 100.0 / Math.max(1, cache.getHits() + cache.getMisses()));
+        }
+    }
+}
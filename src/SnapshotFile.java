@@ -0,0 +1,375 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+* File of saved games, written as compact binary snapshots appended to a
+* memory-mapped file. Saving a game copies a few dozen bytes into the mapping
+* and loading one reads them back, so thousands of games can be saved and
+* resumed each second without opening a file for each. The latest snapshot of
+* every game is found through an index of offsets built when the file is opened.
+*
+* The file starts with a magic number, followed by records of a length, the
+* snapshot version, the id of the game, the snapshot and a CRC-32C of the
+* version, id and snapshot. A record with an empty snapshot removes the game.
+*
+* The length after a record is zeroed and the record's own length written last,
+* so a record cut short by a crash ends the file instead of being read, and one
+* whose bytes were not all written fails its checksum and ends the file too. The
+* next record saved then takes its place. Files are limited to 2 GB.
+* @author rainflop000
+* @version 1.0
+*/
+public class SnapshotFile implements Closeable
+{
+    public static final String FILE_NAME = "saves.dat";
+    public static final short VERSION = 1;
+
+    private static final int MAGIC = 0x4a564c53;
+    private static final int INITIAL_CAPACITY = 1024 * 1024;
+    private static final int RECORD_HEADER = 4 + 2 + 8;
+    private static final int CHECKSUM_BYTES = 4;
+    private static final int MAX_NAME_BYTES = 3 * 12;
+    // Snapshot bytes before the number of directions, followed by the open portals and the chances
+    private static final int STATE_BYTES = 48;
+
+    private static final int GAME_WON = 1;
+    private static final int GAME_END = 2;
+    private static final int CAUGHT_BY_POLICE = 4;
+    private static final int FOUND_EXIT = 8;
+    private static final int POLICE_ENCOUNTER = 16;
+
+    private static final Decision[] DECISIONS = Decision.values();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int end;
+    private Map<Long, Integer> offsets = new HashMap<>();
+    private CRC32C crc = new CRC32C();
+
+    /**
+    * Opens a file of saved games, creating it if it does not exist.
+    * @param fileName The name of the file
+    * @throws IOException If the file cannot be opened or is not a file of saved games
+    */
+    public SnapshotFile(String fileName) throws IOException
+    {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+        {
+            channel.close();
+            throw new IOException(fileName + " is larger than 2 GB");
+        }
+        map((int) Math.max(size, INITIAL_CAPACITY));
+        if (size == 0)
+        {
+            buffer.putInt(0, MAGIC);
+        }
+        else if (buffer.getInt(0) != MAGIC)
+        {
+            channel.close();
+            throw new IOException(fileName + " is not a file of saved games");
+        }
+        end = 4;
+        while (end + RECORD_HEADER <= buffer.capacity())
+        {
+            int length = buffer.getInt(end);
+            if (length < RECORD_HEADER - 4 || end + 4 + length > buffer.capacity())
+            {
+                break;
+            }
+            int snapshotEnd = end + 4 + length - CHECKSUM_BYTES;
+            if (buffer.getShort(end + 4) != VERSION || snapshotEnd < end + RECORD_HEADER
+                || checksum(end + 4, snapshotEnd) != buffer.getInt(snapshotEnd))
+            {
+                // A damaged record, which the next record saved overwrites
+                break;
+            }
+            long id = buffer.getLong(end + 6);
+            if (snapshotEnd == end + RECORD_HEADER)
+            {
+                offsets.remove(id);
+            }
+            else
+            {
+                offsets.put(id, end);
+            }
+            end += 4 + length;
+        }
+    }
+
+    /**
+    * Returns the id a console game is saved under, taken from the player's name.
+    * @param playerName The name of the player
+    */
+    public static long idOf(String playerName)
+    {
+        // 64-bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        String name = playerName.toLowerCase();
+        for (int i = 0; i < name.length(); i++)
+        {
+            hash = (hash ^ name.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+    * Returns true if a game with the given id has been saved and not removed.
+    * @param id The id of the game
+    */
+    public synchronized boolean contains(long id)
+    {
+        return offsets.containsKey(id);
+    }
+
+    /**
+    * Returns the number of games saved.
+    */
+    public synchronized int size()
+    {
+        return offsets.size();
+    }
+
+    /**
+    * Appends a snapshot of a game to the file.
+    * @param id The id to save the game under
+    * @param session The game, which must draw from a SplitMixRandom
+    * @throws IOException If the file cannot be extended
+    */
+    public synchronized void save(long id, GameSession session) throws IOException
+    {
+        if (!(session.getGame().getRandom() instanceof SplitMixRandom random))
+        {
+            throw new IllegalArgumentException("Only games drawing from a SplitMixRandom can be saved");
+        }
+        Probabilities probabilities = session.getProbabilities();
+        Room room = session.getRoom();
+        reserve(RECORD_HEADER + CHECKSUM_BYTES + STATE_BYTES + 4 + 8 * room.getPortalWordCount() + 4 * probabilities.size() + 1 + MAX_NAME_BYTES
+            + 8 * session.getItems().getInventory().getWordCount() + 4);
+        Game game = session.getGame();
+        Player player = session.getPlayer();
+        Items items = session.getItems();
+
+        buffer.position(end + 4);
+        buffer.putShort(VERSION);
+        buffer.putLong(id);
+        buffer.putLong(random.getSeed());
+        buffer.putLong(random.getGamma());
+        int flags = (player.isGameWon() ? GAME_WON : 0) | (player.isGameEnd() ? GAME_END : 0)
+            | (player.isCaughtByPolice() ? CAUGHT_BY_POLICE : 0) | (game.isFoundExit() ? FOUND_EXIT : 0)
+            | (game.isPoliceEncounter() ? POLICE_ENCOUNTER : 0);
+        buffer.put((byte) flags);
+        buffer.put((byte) player.getJumps());
+        Decision decision = game.getPendingDecision();
+        buffer.put((byte) (decision == null ? 0 : decision.ordinal() + 1));
+        buffer.putInt(game.getSelectedIndex());
+        buffer.putInt(items.getCoins());
+        buffer.putInt(items.getFoundCoins());
+        Inventory inventory = items.getInventory();
+        buffer.putInt(inventory.getCapacity());
+        buffer.put((byte) inventory.getWordCount());
+        buffer.putInt(game.getBribeAmount());
+        buffer.putInt(game.getRounds());
+        buffer.putInt(game.getCoinsBribed());
+        buffer.putInt(probabilities.size());
+        for (int i = 0; i < room.getPortalWordCount(); i++)
+        {
+            buffer.putLong(room.getPortalWord(i));
+        }
+        for (int i = 0; i < probabilities.size(); i++)
+        {
+            buffer.putShort((short) probabilities.getExitBasisPoints(i));
+            buffer.putShort((short) probabilities.getPoliceBasisPoints(i));
+        }
+        byte[] name = player.getPlayerName().getBytes(StandardCharsets.UTF_8);
+        int nameLength = Math.min(name.length, MAX_NAME_BYTES);
+        buffer.put((byte) nameLength);
+        buffer.put(name, 0, nameLength);
+        for (int i = 0; i < inventory.getWordCount(); i++)
+        {
+            buffer.putLong(inventory.getWord(i));
+        }
+        buffer.putInt(items.getAlarms());
+        commit(id, true);
+    }
+
+    /**
+    * Copies the latest snapshot of a game into a session, which can then be played on.
+    * @param id The id of the game
+    * @param session The session to overwrite, which must draw from a SplitMixRandom
+    * and be played with the table the game was saved with
+    * @return True if the game was found, otherwise false
+    */
+    public synchronized boolean load(long id, GameSession session)
+    {
+        Integer offset = offsets.get(id);
+        if (offset == null)
+        {
+            return false;
+        }
+        if (buffer.getInt(offset + RECORD_HEADER + STATE_BYTES) != session.getProbabilities().size())
+        {
+            return false;
+        }
+        if (!(session.getGame().getRandom() instanceof SplitMixRandom random))
+        {
+            throw new IllegalArgumentException("Only games drawing from a SplitMixRandom can be loaded");
+        }
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + RECORD_HEADER);
+        random.setState(record.getLong(), record.getLong());
+        int flags = record.get();
+        Player player = session.getPlayer();
+        player.setGameWon((flags & GAME_WON) != 0);
+        player.setGameEnd((flags & GAME_END) != 0);
+        player.setCaughtByPolice((flags & CAUGHT_BY_POLICE) != 0);
+        player.setJumps(record.get());
+        int decision = record.get();
+        int selectedIndex = record.getInt();
+        Items items = session.getItems();
+        items.setCoins(record.getInt());
+        items.setFoundCoins(record.getInt());
+        int capacity = record.getInt();
+        int inventoryWords = record.get();
+        int bribeAmount = record.getInt();
+        int rounds = record.getInt();
+        int coinsBribed = record.getInt();
+        Room room = session.getRoom();
+        // The number of directions, already checked
+        record.getInt();
+        for (int i = 0; i < room.getPortalWordCount(); i++)
+        {
+            room.setPortalWord(i, record.getLong());
+        }
+        Probabilities probabilities = session.getProbabilities();
+        probabilities.reset();
+        for (int i = 0; i < probabilities.size(); i++)
+        {
+            int exit = record.getShort();
+            int police = record.getShort();
+            if (exit != probabilities.getExitBasisPoints(i) || police != probabilities.getPoliceBasisPoints(i))
+            {
+                probabilities.setChances(i, exit, police);
+            }
+        }
+        byte[] name = new byte[record.get()];
+        record.get(name);
+        player.setPlayerName(new String(name, StandardCharsets.UTF_8));
+        Inventory inventory = items.getInventory();
+        inventory.clear();
+        inventory.setCapacity(capacity);
+        for (int i = 0; i < inventoryWords; i++)
+        {
+            inventory.setWord(i, record.getLong());
+        }
+        items.setAlarms(record.getInt());
+        session.getGame().restore(decision == 0 ? null : DECISIONS[decision - 1], selectedIndex, bribeAmount,
+            (flags & FOUND_EXIT) != 0, (flags & POLICE_ENCOUNTER) != 0, rounds, coinsBribed);
+        return true;
+    }
+
+    /**
+    * Removes a saved game, such as one that has been finished.
+    * @param id The id of the game
+    * @throws IOException If the file cannot be extended
+    */
+    public synchronized void remove(long id) throws IOException
+    {
+        if (!offsets.containsKey(id))
+        {
+            return;
+        }
+        reserve(RECORD_HEADER + CHECKSUM_BYTES);
+        buffer.position(end + 4);
+        buffer.putShort(VERSION);
+        buffer.putLong(id);
+        commit(id, false);
+    }
+
+    /**
+    * Writes the saved games to the disk.
+    */
+    public synchronized void flush()
+    {
+        buffer.force();
+    }
+
+    /**
+    * Writes the saved games to the disk and closes the file, cutting off the
+    * unused end of the mapping.
+    */
+    public synchronized void close() throws IOException
+    {
+        buffer.force();
+        channel.truncate(end);
+        channel.close();
+    }
+
+    /**
+    * Finishes the record written after the end of the file by adding its
+    * checksum, zeroing the length after it, which may hold part of a damaged
+    * record, and then writing its length, which makes it part of the file.
+    */
+    private void commit(long id, boolean saved)
+    {
+        buffer.putInt(checksum(end + 4, buffer.position()));
+        int length = buffer.position() - end - 4;
+        buffer.putInt(end + 4 + length, 0);
+        buffer.putInt(end, length);
+        if (saved)
+        {
+            offsets.put(id, end);
+        }
+        else
+        {
+            offsets.remove(id);
+        }
+        end += 4 + length;
+    }
+
+    /**
+    * Makes sure the mapping has room for a record, mapping a larger part of the
+    * file if it does not.
+    * @param bytes The largest size of the record
+    */
+    private void reserve(int bytes) throws IOException
+    {
+        // Room is left for the length of the record after, which ends the file while it is 0
+        long needed = (long) end + bytes + 4;
+        if (needed <= buffer.capacity())
+        {
+            return;
+        }
+        if (needed > Integer.MAX_VALUE)
+        {
+            throw new IOException("File of saved games is full");
+        }
+        map((int) Math.min(Integer.MAX_VALUE, Math.max(needed, 2L * buffer.capacity())));
+    }
+
+    /**
+    * Returns the CRC-32C of part of the mapping.
+    * @param from The offset of the first byte
+    * @param to The offset after the last byte
+    */
+    private int checksum(int from, int to)
+    {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.limit(to).position(from);
+        crc.reset();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private void map(int capacity) throws IOException
+    {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+}
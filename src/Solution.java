@@ -0,0 +1,338 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+* The best way to play an exits table as worked out by the Solver, and the chance
+* of winning when playing that way, both for a game whose chances do not drift.
+* A state is the number of jumps, cloaks and coins a player has and the number
+* of magic police alarms found so far, and for each state the solution holds the
+* chance of winning from the start of a round, the chances of winning after
+* going through a portal with and without meeting the magic police, and the best
+* answer to every yes/no question.
+*
+* Values are kept as floats, which is ample for choosing between decisions and
+* keeps the solution small. A solution can be saved to a binary file, so Hints
+* can be given without solving the table again: a header followed by each value
+* of every state, then the decisions of every state as one byte each. The header
+* holds fingerprints of the exits table and of the magic box items the solution
+* was worked out for, so it is not used for a different game.
+* @author rainflop000
+* @version 1.0
+*/
+public class Solution
+{
+    public static final int OPEN_BOX = 1;
+    public static final int OPEN_BOX_CAUGHT = 2;
+    public static final int KEEP_CLOAK = 4;
+    public static final int KEEP_CLOAK_CAUGHT = 8;
+    public static final int USE_CLOAK = 16;
+    public static final int BRIBE = 32;
+    public static final String FILE_NAME = "hints.dat";
+
+    private static final int MAGIC = 0x4a564c48;
+    private static final short VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 2 + 1 + 1 + 2 + 2 + 8 + 8 + 8 + 4;
+
+    private int maxJumps;
+    private int maxCloaks;
+    private int maxAlarms;
+    private int maxCoins;
+    private float[] values;
+    private float[] freeValues;
+    private float[] caughtValues;
+    private byte[] decisions;
+    private double winProbability;
+    private int iterations;
+    private long tableFingerprint;
+    private long lootFingerprint;
+
+    /**
+    * Parametised constructor for an empty solution, filled in by the Solver.
+    * @param maxJumps The most jumps a player can have
+    * @param maxCloaks The most cloaks a player can carry
+    * @param maxAlarms The number of alarms after which the magic police are met
+    * through every portal
+    * @param maxCoins The most coins told apart, more coins counting as this many
+    */
+    public Solution(int maxJumps, int maxCloaks, int maxAlarms, int maxCoins)
+    {
+        this.maxJumps = maxJumps;
+        this.maxCloaks = maxCloaks;
+        this.maxAlarms = maxAlarms;
+        this.maxCoins = maxCoins;
+        int states = (maxJumps + 1) * (maxCloaks + 1) * (maxAlarms + 1) * (maxCoins + 1);
+        values = new float[states];
+        freeValues = new float[states];
+        caughtValues = new float[states];
+        decisions = new byte[states];
+    }
+
+    /**
+    * Returns the index of a state. Coins and alarms beyond the most told apart
+    * count as the most.
+    * @param jumps The number of jumps left
+    * @param cloaks The number of cloaks carried
+    * @param coins The number of coins
+    * @param alarms The number of alarms found
+    */
+    public int index(int jumps, int cloaks, int coins, int alarms)
+    {
+        int row = (jumps * (maxCloaks + 1) + cloaks) * (maxAlarms + 1) + Math.min(alarms, maxAlarms);
+        return row * (maxCoins + 1) + Math.min(coins, maxCoins);
+    }
+
+    /**
+    * Returns the number of states.
+    */
+    public int size()
+    {
+        return values.length;
+    }
+
+    public int getMaxJumps()
+    {
+        return maxJumps;
+    }
+
+    public int getMaxCloaks()
+    {
+        return maxCloaks;
+    }
+
+    public int getMaxAlarms()
+    {
+        return maxAlarms;
+    }
+
+    public int getMaxCoins()
+    {
+        return maxCoins;
+    }
+
+    /**
+    * Returns the chance of winning a new game when playing the best way, if the
+    * chances of the portals never drifted. It is not the chance of winning the
+    * real game, whose drift the solution leaves out, nor a bound on it.
+    */
+    public double getWinProbability()
+    {
+        return winProbability;
+    }
+
+    /**
+    * Returns the number of rounds of value iteration taken to work out the solution.
+    */
+    public int getIterations()
+    {
+        return iterations;
+    }
+
+    /**
+    * Returns the chance of winning from the start of a round.
+    * @param index The index of the state
+    */
+    public double getValue(int index)
+    {
+        return values[index];
+    }
+
+    /**
+    * Returns the chance of winning after going through a portal without finding
+    * the exit or meeting the magic police, before any magic box is found.
+    * @param index The index of the state
+    */
+    public double getFreeValue(int index)
+    {
+        return freeValues[index];
+    }
+
+    /**
+    * Returns the chance of winning after going through a portal without finding
+    * the exit and meeting the magic police, before any magic box is found.
+    * @param index The index of the state
+    */
+    public double getCaughtValue(int index)
+    {
+        return caughtValues[index];
+    }
+
+    /**
+    * Returns the best answers to the yes/no questions of a state.
+    * @param index The index of the state
+    * @return A bitmask of OPEN_BOX, OPEN_BOX_CAUGHT, KEEP_CLOAK, KEEP_CLOAK_CAUGHT,
+    * USE_CLOAK and BRIBE, each set if the answer is yes
+    */
+    public int getDecisions(int index)
+    {
+        return decisions[index];
+    }
+
+    /**
+    * Returns the chance of winning by going through a portal.
+    * @param index The index of the state
+    * @param exitChance The exit chance of the portal
+    * @param policeChance The police chance of the portal
+    */
+    public double getPortalValue(int index, double exitChance, double policeChance)
+    {
+        return exitChance + (1 - exitChance) * (policeChance * caughtValues[index] + (1 - policeChance) * freeValues[index]);
+    }
+
+    /**
+    * Checks if a bribe is worth paying rather than being sent to jail.
+    * @param jumps The number of jumps left
+    * @param cloaks The number of cloaks carried
+    * @param coins The number of coins
+    * @param alarms The number of alarms found
+    * @param bribeAmount The bribe demanded, no more than the coins
+    * @return True if the bribe should be paid
+    */
+    public boolean isBribeWorthPaying(int jumps, int cloaks, int coins, int alarms, int bribeAmount)
+    {
+        double jail = jumps > 0 ? values[index(jumps - 1, cloaks, coins, alarms)] : 0;
+        return values[index(jumps, cloaks, coins - bribeAmount, alarms)] >= jail;
+    }
+
+    /**
+    * Sets the values and decisions of a state, for the Solver.
+    */
+    void set(int index, double value, double freeValue, double caughtValue, int decisions)
+    {
+        values[index] = (float) value;
+        freeValues[index] = (float) freeValue;
+        caughtValues[index] = (float) caughtValue;
+        this.decisions[index] = (byte) decisions;
+    }
+
+    void setResult(double winProbability, int iterations, ExitsTable table, LootTable loot)
+    {
+        this.winProbability = winProbability;
+        this.iterations = iterations;
+        tableFingerprint = fingerprint(table);
+        lootFingerprint = fingerprint(loot);
+    }
+
+    /**
+    * Checks if the solution was worked out for a table.
+    * @param table The directions and probabilities being played
+    * @return True if the table has the same directions and chances
+    */
+    public boolean isFor(ExitsTable table)
+    {
+        return tableFingerprint == fingerprint(table);
+    }
+
+    /**
+    * Checks if the solution was worked out for the items of a loot table.
+    * @param loot The loot table magic boxes are drawn from
+    * @return True if items of each effect are found with the same chances
+    */
+    public boolean isFor(LootTable loot)
+    {
+        return lootFingerprint == fingerprint(loot);
+    }
+
+    /**
+    * Returns a hash of the directions and chances of a table, so a solution is
+    * not used with a table it was not worked out for.
+    */
+    public static long fingerprint(ExitsTable table)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < table.size(); i++)
+        {
+            hash = (hash ^ table.getDirection(i).hashCode()) * 0x100000001b3L;
+            for (int column = ExitsTable.OPEN; column <= ExitsTable.POLICE; column++)
+            {
+                hash = (hash ^ table.basisPoints(i, column)) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+    * Returns a hash of the chance of finding an item of each effect in a loot
+    * table, which is all of it the Solver uses.
+    */
+    public static long fingerprint(LootTable loot)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (double chance : loot.effectChances())
+        {
+            hash = (hash ^ Double.doubleToLongBits(chance)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+    * Saves the solution to a file.
+    * @param fileName The name of the file, replaced if it exists
+    * @throws IOException If the file cannot be written
+    */
+    public void save(String fileName) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName))))
+        {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeByte(maxJumps);
+            out.writeByte(maxCloaks);
+            out.writeShort(maxAlarms);
+            out.writeShort(maxCoins);
+            out.writeLong(tableFingerprint);
+            out.writeLong(lootFingerprint);
+            out.writeDouble(winProbability);
+            out.writeInt(iterations);
+            for (float[] array : new float[][] {values, freeValues, caughtValues})
+            {
+                for (float value : array)
+                {
+                    out.writeFloat(value);
+                }
+            }
+            out.write(decisions);
+        }
+    }
+
+    /**
+    * Loads a solution saved by save(). The file is mapped and its arrays copied
+    * out in bulk.
+    * @param fileName The name of the file
+    * @return The solution
+    * @throws IOException If the file cannot be read or is not a saved solution
+    */
+    public static Solution load(String fileName) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+        {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException(fileName + " is not a saved solution");
+            }
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getShort() != VERSION)
+            {
+                throw new IOException(fileName + " is not a saved solution");
+            }
+            Solution solution = new Solution(in.get(), in.get(), in.getShort(), in.getShort());
+            solution.tableFingerprint = in.getLong();
+            solution.lootFingerprint = in.getLong();
+            solution.winProbability = in.getDouble();
+            solution.iterations = in.getInt();
+            int states = solution.size();
+            if (in.remaining() != states * (3 * Float.BYTES + 1))
+            {
+                throw new IOException(fileName + " is not a saved solution");
+            }
+            for (float[] array : new float[][] {solution.values, solution.freeValues, solution.caughtValues})
+            {
+                in.asFloatBuffer().get(array);
+                in.position(in.position() + states * Float.BYTES);
+            }
+            in.get(solution.decisions);
+            return solution;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* Works out the best way to play an exits table if the chances of its portals
+* never drifted, and the chance of winning that game, without playing any games.
+* The chance of winning from every state is improved round after round of value
+* iteration until it no longer changes, each round spread over all processors
+* with the fork/join framework.
+*
+* A state is the number of jumps, cloaks and coins a player has and the number
+* of magic police alarms found, which raise the police chance of every portal.
+* Chances are taken in whole basis points. The drift of a portal's exit and
+* police chances after it is used is left out: every round is played with the
+* chances of the table, since tracking the drifted chances of every portal would
+* need more states than could ever be stored. The drift does not average out.
+* Chances cannot go below 0, so chances of a few percent are pushed up, and a
+* player choosing between portals by their current chances gains from it. The
+* win probability of a Solution is therefore that of a game without drift, and
+* is neither exact nor a bound for the real game. main() measures the real game
+* by following the solution in it, and prints how far apart the two are.
+* @author rainflop000
+* @version 1.0
+*/
+public class Solver
+{
+    public static final int MAX_COINS = 200;
+    public static final long DEFAULT_GAMES = 1000000;
+    public static final double TOLERANCE = 1e-10;
+    private static final int MAX_ITERATIONS = 1000000;
+    private static final int ROWS_PER_TASK = 8;
+    // Steps of a round of value iteration
+    private static final int CAUGHT = 0;
+    private static final int BOX = 1;
+    private static final int ROUND = 2;
+
+    private ExitsTable table;
+    private int maxJumps = Player.MAX_JUMPS;
+    private int maxCloaks = Items.MAX_INVENTORY;
+    private int maxAlarms;
+    private int coinStates = MAX_COINS + 1;
+    private int rows;
+    private double[] openChances;
+    private double[] exitChances;
+    // Police chances after each number of alarms, one row of directions per number
+    private double[] policeChances;
+
+    // Values of the current round of value iteration, indexed like a Solution
+    private double[] values;
+    private double[] nextValues;
+    private double[] caughtValues;
+    private double[] freeBoxValues;
+    private double[] caughtBoxValues;
+    private int[] decisions;
+    private double[] rowChange;
+
+    /**
+    * Parametised constructor.
+    * @param table The directions and probabilities to solve
+    */
+    public Solver(ExitsTable table)
+    {
+        this.table = table;
+        int lowestPolice = Probabilities.BASIS_POINTS;
+        for (int i = 0; i < table.size(); i++)
+        {
+            lowestPolice = Math.min(lowestPolice, table.basisPoints(i, ExitsTable.POLICE));
+        }
+        // After this many alarms every portal has the magic police behind it
+        maxAlarms = (Probabilities.BASIS_POINTS - lowestPolice + Items.ALARM_POLICE_CHANGE - 1) / Items.ALARM_POLICE_CHANGE;
+        rows = (maxJumps + 1) * (maxCloaks + 1) * (maxAlarms + 1);
+
+        openChances = new double[table.size()];
+        exitChances = new double[table.size()];
+        policeChances = new double[(maxAlarms + 1) * table.size()];
+        for (int i = 0; i < table.size(); i++)
+        {
+            openChances[i] = table.basisPoints(i, ExitsTable.OPEN) / (double) Probabilities.BASIS_POINTS;
+            exitChances[i] = table.basisPoints(i, ExitsTable.EXIT) / (double) Probabilities.BASIS_POINTS;
+            for (int alarms = 0; alarms <= maxAlarms; alarms++)
+            {
+                int police = table.basisPoints(i, ExitsTable.POLICE) + alarms * Items.ALARM_POLICE_CHANGE;
+                policeChances[alarms * table.size() + i] = Math.min(Probabilities.BASIS_POINTS, police)
+                    / (double) Probabilities.BASIS_POINTS;
+            }
+        }
+    }
+
+    /**
+    * Works out the best way to play the table.
+    * @return The solution
+    */
+    public Solution solve()
+    {
+        int states = rows * coinStates;
+        values = new double[states];
+        nextValues = new double[states];
+        caughtValues = new double[states];
+        freeBoxValues = new double[states];
+        caughtBoxValues = new double[states];
+        decisions = new int[states];
+        rowChange = new double[rows];
+
+        int iterations = 0;
+        double change;
+        do
+        {
+            ForkJoinPool.commonPool().invoke(new IterationTask(CAUGHT, 0, rows));
+            ForkJoinPool.commonPool().invoke(new IterationTask(BOX, 0, rows));
+            ForkJoinPool.commonPool().invoke(new IterationTask(ROUND, 0, rows));
+            double[] swap = values;
+            values = nextValues;
+            nextValues = swap;
+            change = 0;
+            for (double rowMax : rowChange)
+            {
+                change = Math.max(change, rowMax);
+            }
+            iterations++;
+        }
+        while (change > TOLERANCE && iterations < MAX_ITERATIONS);
+
+        Solution solution = new Solution(maxJumps, maxCloaks, maxAlarms, MAX_COINS);
+        for (int i = 0; i < states; i++)
+        {
+            solution.set(i, values[i], freeBoxValues[i], caughtBoxValues[i], decisions[i]);
+        }
+        solution.setResult(values[solution.index(maxJumps, 0, Items.START_COINS, 0)], iterations, table, LootTable.shared());
+        return solution;
+    }
+
+    private int index(int jumps, int cloaks, int alarms, int coins)
+    {
+        return ((jumps * (maxCloaks + 1) + cloaks) * (maxAlarms + 1) + alarms) * coinStates + coins;
+    }
+
+    /**
+    * Works out the chance of winning after meeting the magic police, for every
+    * number of coins of a row, and whether to hide or bribe.
+    */
+    private void solveCaught(int jumps, int cloaks, int alarms)
+    {
+        for (int coins = 0; coins < coinStates; coins++)
+        {
+            int state = index(jumps, cloaks, alarms, coins);
+            double jail = jumps > 0 ? values[index(jumps - 1, cloaks, alarms, coins)] : 0;
+            int minBribe = (int) (coins * MagicPolice.MIN_BRIBE);
+            int maxBribe = (int) (coins * MagicPolice.MAX_BRIBE);
+            // A bribe of more than the coins sends the player to jail
+            double bribe = (maxBribe - coins) * jail;
+            for (int amount = minBribe; amount <= coins; amount++)
+            {
+                bribe += Math.max(values[state - amount], jail);
+            }
+            bribe /= maxBribe - minBribe + 1;
+
+            int decision = decisions[state] & ~(Solution.USE_CLOAK | Solution.BRIBE);
+            double best = jail;
+            if (bribe > jail)
+            {
+                best = bribe;
+                decision |= Solution.BRIBE;
+            }
+            if (cloaks > 0 && values[index(jumps, cloaks - 1, alarms, coins)] >= best)
+            {
+                best = values[index(jumps, cloaks - 1, alarms, coins)];
+                decision |= Solution.USE_CLOAK;
+            }
+            caughtValues[state] = best;
+            decisions[state] = decision;
+        }
+    }
+
+    /**
+    * Works out the chance of winning after going through a portal without finding
+    * the exit, for every number of coins of a row, and whether to open a magic
+    * box and keep a cloak found in it.
+    * @param sums Room for the running sums of a row
+    */
+    private void solveBox(int jumps, int cloaks, int alarms, double[] sums)
+    {
+        solveBox(values, freeBoxValues, jumps, cloaks, alarms, sums, Solution.OPEN_BOX, Solution.KEEP_CLOAK);
+        solveBox(caughtValues, caughtBoxValues, jumps, cloaks, alarms, sums, Solution.OPEN_BOX_CAUGHT,
+            Solution.KEEP_CLOAK_CAUGHT);
+    }
+
+    /**
+    * Works out the chance of winning from a room which may hold a magic box.
+    * @param after The chances of winning once the box is dealt with
+    * @param boxValues The array the chances of winning are stored in
+    */
+    private void solveBox(double[] after, double[] boxValues, int jumps, int cloaks, int alarms, double[] sums,
+        int openBit, int keepBit)
+    {
+        int row = index(jumps, cloaks, alarms, 0);
+        int alarmRow = index(jumps, cloaks, Math.min(maxAlarms, alarms + 1), 0);
+        int cloakRow = index(jumps, Math.min(maxCloaks, cloaks + 1), alarms, 0);
+        // The coins found are averaged from running sums, any over the most counting as the most
+        for (int coins = 0; coins < coinStates; coins++)
+        {
+            sums[coins + 1] = sums[coins] + after[row + coins];
+        }
+        double[] chances = LootTable.shared().effectChances();
+        for (int coins = 0; coins < coinStates; coins++)
+        {
+            double stay = after[row + coins];
+            int from = coins + Items.MIN_FOUND_COINS;
+            int to = coins + Items.MAX_FOUND_COINS;
+            double found = from > MAX_COINS ? 0 : sums[Math.min(to, MAX_COINS) + 1] - sums[from];
+            found += Math.max(0, to - Math.max(from, MAX_COINS + 1) + 1) * after[row + MAX_COINS];
+            found /= to - from + 1;
+            boolean keep = cloaks < maxCloaks && after[cloakRow + coins] > stay;
+            double open = chances[Items.COINS] * found + chances[Items.MAGIC_POLICE_ALARM] * after[alarmRow + coins]
+                + chances[Items.CLOAK] * (keep ? after[cloakRow + coins] : stay) + chances[Items.COAL] * stay;
+
+            int decision = decisions[row + coins] & ~(openBit | keepBit);
+            if (open > stay)
+            {
+                decision |= openBit;
+            }
+            if (keep)
+            {
+                decision |= keepBit;
+            }
+            decisions[row + coins] = decision;
+            boxValues[row + coins] = Items.MAGIC_BOX_CHANCE * Math.max(open, stay) + (1 - Items.MAGIC_BOX_CHANCE) * stay;
+        }
+    }
+
+    /**
+    * Works out the chance of winning from the start of a round, for every number
+    * of coins of a row, going through the best open portal.
+    * @return The largest change from the last round of value iteration
+    */
+    private double solveRound(int jumps, int cloaks, int alarms, int[] order, double[] portalValues)
+    {
+        double change = 0;
+        for (int coins = 0; coins < coinStates; coins++)
+        {
+            int state = index(jumps, cloaks, alarms, coins);
+            for (int i = 0; i < order.length; i++)
+            {
+                portalValues[i] = portalValue(i, alarms, freeBoxValues[state], caughtBoxValues[state]);
+            }
+            sortDescending(order, portalValues);
+            // The best portal is used if it is open, otherwise the next best, and so on
+            double value = 0;
+            double noneOpen = 1;
+            for (int direction : order)
+            {
+                value += noneOpen * openChances[direction] * portalValues[direction];
+                noneOpen *= 1 - openChances[direction];
+            }
+            value += noneOpen * (jumps > 0 ? values[index(jumps - 1, cloaks, alarms, coins)] : 0);
+            nextValues[state] = value;
+            change = Math.max(change, Math.abs(value - values[state]));
+        }
+        return change;
+    }
+
+    /**
+    * Sorts directions by their value, best first. The order of the last state is
+    * usually right already, so an insertion sort has little to do.
+    */
+    private static void sortDescending(int[] order, double[] portalValues)
+    {
+        for (int i = 1; i < order.length; i++)
+        {
+            int direction = order[i];
+            int j = i - 1;
+            while (j >= 0 && portalValues[order[j]] < portalValues[direction])
+            {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = direction;
+        }
+    }
+
+    private double portalValue(int direction, int alarms, double free, double caught)
+    {
+        double police = policeChances[alarms * table.size() + direction];
+        return exitChances[direction] + (1 - exitChances[direction]) * (police * caught + (1 - police) * free);
+    }
+
+    /**
+    * Task doing a step of value iteration for a range of rows, splitting the
+    * range in half until it is small enough for one thread. Each row is the
+    * states of one number of jumps, cloaks and alarms, for every number of coins.
+    * A box can lead to a row with one more cloak or alarm, so each step is
+    * finished for every row before the next step starts.
+    */
+    private class IterationTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private int step;
+        private int from;
+        private int to;
+
+        IterationTask(int step, int from, int to)
+        {
+            this.step = step;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > ROWS_PER_TASK)
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(new IterationTask(step, from, middle), new IterationTask(step, middle, to));
+                return;
+            }
+            int[] order = null;
+            double[] portalValues = null;
+            if (step == ROUND)
+            {
+                order = new int[table.size()];
+                portalValues = new double[table.size()];
+                for (int i = 0; i < order.length; i++)
+                {
+                    order[i] = i;
+                }
+            }
+            double[] sums = step == BOX ? new double[coinStates + 1] : null;
+            for (int row = from; row < to; row++)
+            {
+                int alarms = row % (maxAlarms + 1);
+                int cloaks = row / (maxAlarms + 1) % (maxCloaks + 1);
+                int jumps = row / (maxAlarms + 1) / (maxCloaks + 1);
+                if (step == CAUGHT)
+                {
+                    solveCaught(jumps, cloaks, alarms);
+                }
+                else if (step == BOX)
+                {
+                    solveBox(jumps, cloaks, alarms, sums);
+                }
+                else
+                {
+                    rowChange[row] = solveRound(jumps, cloaks, alarms, order, portalValues);
+                }
+            }
+        }
+    }
+
+    /**
+    * Main method for the solver. Reads the exits file, prints the chance of
+    * winning it without drift, then plays games with drift following the solution
+    * and prints how often they were won. Saves the solution for Hints.
+    * @param args Optional name of the exits file, of the file the solution is
+    * saved to and number of games played with drift
+    */
+    public static void main(String[] args) throws IOException
+    {
+        ExitsTable table = ExitsTable.load(args.length > 0 ? args[0] : Game.FILE_NAME);
+        long start = System.nanoTime();
+        Solution solution = new Solver(table).solve();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Without drift:       %.4f%% (the best way if every portal kept the table's chances)%n",
+            solution.getWinProbability() * 100);
+        System.out.printf("States:              %d (%d rounds of value iteration in %.1f s on %d threads)%n",
+            solution.size(), solution.getIterations(), seconds, ForkJoinPool.getCommonPoolParallelism());
+
+        long games = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_GAMES;
+        Simulator simulator = new Simulator(table, false);
+        simulator.setHints(new Hints(solution));
+        SimulationResult played = simulator.simulate(games, new SplitMixRandom().nextLong());
+        System.out.printf("With drift:          %.2f%% (%.2f%% - %.2f%%) of %d games won following the solution%n",
+            played.getWinRate() * 100, played.getWinRateLow(Tournament.Z_95) * 100,
+            played.getWinRateHigh(Tournament.Z_95) * 100, games);
+        System.out.printf("Gap:                 %+.2f points left out by the solution, which ignores the drift%n",
+            (played.getWinRate() - solution.getWinProbability()) * 100);
+        String fileName = args.length > 1 ? args[1] : Solution.FILE_NAME;
+        solution.save(fileName);
+        System.out.println("Saved the solution to " + fileName);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+* Random source using the SplitMix64 algorithm of java.util.SplittableRandom.
+* The state is held in two longs, so a stream can be saved with the rest of a
+* game and continued later.
+* @author rainflop000
+* @version 1.0
+*/
+public class SplitMixRandom implements RandomSource
+{
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long seed;
+    private long gamma;
+
+    /**
+    * Default constructor seeding the source from the clock.
+    */
+    public SplitMixRandom()
+    {
+        this(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+    }
+
+    /**
+    * Parametised constructor for a reproducible source.
+    * @param seed The seed of the source
+    */
+    public SplitMixRandom(long seed)
+    {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    /**
+    * Parametised constructor restoring a saved source.
+    * @param seed The current seed of the source
+    * @param gamma The increment of the source, which must be odd
+    */
+    public SplitMixRandom(long seed, long gamma)
+    {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    public long getGamma()
+    {
+        return gamma;
+    }
+
+    /**
+    * Continues a saved stream from its state.
+    * @param seed The current seed of the source
+    * @param gamma The increment of the source, which must be odd
+    */
+    public void setState(long seed, long gamma)
+    {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    public int nextInt(int bound)
+    {
+        int r = mix32(nextSeed());
+        int m = bound - 1;
+        if ((bound & m) == 0)
+        {
+            return r & m;
+        }
+        // Reject values from the incomplete last range so every result is equally likely
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1)
+        {
+        }
+        return r;
+    }
+
+    public boolean nextBoolean()
+    {
+        return mix32(nextSeed()) < 0;
+    }
+
+    public long nextLong()
+    {
+        return mix64(nextSeed());
+    }
+
+    public SplitMixRandom split()
+    {
+        return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+    }
+
+    private long nextSeed()
+    {
+        return seed += gamma;
+    }
+
+    static long mix64(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z)
+    {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int)(((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    private static long mixGamma(long z)
+    {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,18 @@
+/**
+* Interface for a way of playing the game, making a decision policy for each
+* session it plays. Policies may keep state about their session, such as
+* HintPolicy, so every session gets a policy of its own.
+* @author rainflop000
+* @version 1.0
+*/
+public interface Strategy
+{
+    /**
+    * Makes the policy answering every question asked in a session.
+    * @param session The session the policy plays
+    * @param random The source the policy's own random choices are drawn from,
+    * kept apart from the game's draws
+    * @return The policy
+    */
+    DecisionPolicy newPolicy(GameSession session, RandomSource random);
+}
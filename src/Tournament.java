@@ -0,0 +1,220 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* Plays several strategies against the same games to compare them. Game i of
+* every strategy starts from the same random stream, and a strategy's own random
+* choices come from a stream of their own, so two strategies see the same rooms,
+* boxes and police until their decisions first differ. Differences between
+* strategies are then down to how they play rather than luck.
+*
+* Each strategy plays all its games before the next starts, spread over every
+* processor with the fork/join framework, so its throughput can be measured too.
+* Win rates are reported with Wilson score intervals.
+* @author rainflop000
+* @version 1.0
+*/
+public class Tournament
+{
+    public static final long DEFAULT_GAMES = 1000000;
+    public static final double Z_95 = 1.959964;
+    private static final int GAMES_PER_TASK = 10000;
+    private static final long WARMUP_GAMES = 20000;
+
+    private ExitsTable table;
+    private Map<String, Strategy> strategies = new LinkedHashMap<>();
+    private Map<String, SimulationResult> results = new LinkedHashMap<>();
+    private Map<String, Double> seconds = new LinkedHashMap<>();
+
+    /**
+    * Parametised constructor.
+    * @param table The directions and probabilities every game starts from
+    */
+    public Tournament(ExitsTable table)
+    {
+        this.table = table;
+    }
+
+    /**
+    * Adds a strategy to the tournament.
+    * @param name The name the strategy is reported under
+    * @param strategy The strategy
+    */
+    public void add(String name, Strategy strategy)
+    {
+        strategies.put(name, strategy);
+    }
+
+    /**
+    * Adds the strategies built from BotPolicy: random portals, the most exit and
+    * the least police, cloaking against bribing, and bribing only once the jumps
+    * are used.
+    */
+    public void addBots()
+    {
+        add("Random", (session, random) -> new SimplePolicy(random));
+        add("Always bribe", bot(BotPolicy.RANDOM_PORTAL, false, BotPolicy.ALWAYS_BRIBE));
+        add("Always cloak", bot(BotPolicy.RANDOM_PORTAL, true, BotPolicy.NEVER_BRIBE));
+        add("Spend jumps first", bot(BotPolicy.RANDOM_PORTAL, true, BotPolicy.BRIBE_WITHOUT_JUMPS));
+        add("Most exit", bot(BotPolicy.MOST_EXIT, true, BotPolicy.ALWAYS_BRIBE));
+        add("Least police", bot(BotPolicy.LEAST_POLICE, true, BotPolicy.ALWAYS_BRIBE));
+        add("Most exit, jumps first", bot(BotPolicy.MOST_EXIT, true, BotPolicy.BRIBE_WITHOUT_JUMPS));
+    }
+
+    private static Strategy bot(int portalRule, boolean useCloaks, int bribeRule)
+    {
+        return (session, random) -> new BotPolicy(session, random, portalRule, useCloaks, bribeRule);
+    }
+
+    /**
+    * Plays every strategy in turn over the same games. A few games of every
+    * strategy are played first and not counted, so the strategy timed first is
+    * not slowed by the code being compiled.
+    * @param games The number of games each strategy plays
+    * @param seed The seed all games are derived from
+    */
+    public void play(long games, long seed)
+    {
+        for (Strategy strategy : strategies.values())
+        {
+            ForkJoinPool.commonPool().invoke(
+                new TournamentTask(strategy, 0, Math.min(games, WARMUP_GAMES), new SplitMixRandom(~seed)));
+        }
+        for (Map.Entry<String, Strategy> entry : strategies.entrySet())
+        {
+            long start = System.nanoTime();
+            SimulationResult result = ForkJoinPool.commonPool().invoke(
+                new TournamentTask(entry.getValue(), 0, games, new SplitMixRandom(seed)));
+            seconds.put(entry.getKey(), (System.nanoTime() - start) / 1e9);
+            results.put(entry.getKey(), result);
+        }
+    }
+
+    /**
+    * Returns the totals of a strategy's games.
+    * @param name The name of the strategy
+    * @return The totals, or null if the strategy has not played
+    */
+    public SimulationResult getResult(String name)
+    {
+        return results.get(name);
+    }
+
+    /**
+    * Plays a number of games one after another. Every game starts its session
+    * and its policy from two streams split from the scenarios, one after the
+    * other, so game i of a task is the same for every strategy.
+    * @param strategy The strategy playing the games
+    * @param games The number of games to play
+    * @param scenarios The source the start of every game is split from
+    * @param result The result the outcome of the games is recorded in
+    */
+    private void playGames(Strategy strategy, long games, SplitMixRandom scenarios, SimulationResult result)
+    {
+        SplitMixRandom gameRandom = new SplitMixRandom(0);
+        SplitMixRandom policyRandom = new SplitMixRandom(0);
+        GameSession session = new GameSession(new OverlayProbabilities(table), gameRandom, null);
+        DecisionPolicy policy = strategy.newPolicy(session, policyRandom);
+        for (long i = 0; i < games; i++)
+        {
+            SplitMixRandom game = scenarios.split();
+            SplitMixRandom choices = scenarios.split();
+            gameRandom.setState(game.getSeed(), game.getGamma());
+            policyRandom.setState(choices.getSeed(), choices.getGamma());
+            session.reset();
+            session.play(policy);
+            result.record(session.getGame(), session.getPlayer());
+        }
+    }
+
+    /**
+    * Task playing a range of games with one strategy, splitting the range in half
+    * until it is small enough to play on one thread. The ranges, and so the
+    * streams of each game, do not depend on the strategy or the threads.
+    */
+    private class TournamentTask extends RecursiveTask<SimulationResult>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private transient Strategy strategy;
+        private long from;
+        private long to;
+        private transient SplitMixRandom random;
+
+        TournamentTask(Strategy strategy, long from, long to, SplitMixRandom random)
+        {
+            this.strategy = strategy;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected SimulationResult compute()
+        {
+            if (to - from <= GAMES_PER_TASK)
+            {
+                SimulationResult result = new SimulationResult();
+                playGames(strategy, to - from, random, result);
+                return result;
+            }
+            long middle = (from + to) >>> 1;
+            TournamentTask left = new TournamentTask(strategy, from, middle, random.split());
+            left.fork();
+            SimulationResult right = new TournamentTask(strategy, middle, to, random.split()).compute();
+            return left.join().add(right);
+        }
+    }
+
+    /**
+    * Prints a row for every strategy, best win rate first.
+    * @param out The stream the table is printed to
+    */
+    public void print(PrintStream out)
+    {
+        List<String> names = new ArrayList<>(results.keySet());
+        names.sort(Comparator.comparingDouble((String name) -> results.get(name).getWinRate()).reversed());
+        out.printf("%-24s %8s  %-17s %7s %7s %6s %12s%n", "Strategy", "Win rate", "95% interval", "Rounds",
+            "Bribed", "Jumps", "Games/min");
+        for (String name : names)
+        {
+            SimulationResult result = results.get(name);
+            out.printf("%-24s %7.2f%%  %6.2f%% - %6.2f%% %7.2f %7.2f %6.2f %12.0f%n", name, result.getWinRate() * 100,
+                result.getWinRateLow(Z_95) * 100, result.getWinRateHigh(Z_95) * 100, result.getAverageRounds(),
+                result.getAverageCoinsBribed(), result.getAverageJumpsUsed(), result.getGames() / seconds.get(name) * 60);
+        }
+    }
+
+    /**
+    * Main method for the tournament. Reads the exits file, plays every bot
+    * strategy, and the hints saved by the Solver if there are any, and prints how
+    * they did.
+    * @param args Optional number of games for each strategy, name of the exits
+    * file and seed
+    */
+    public static void main(String[] args) throws IOException
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_GAMES;
+        String fileName = args.length > 1 ? args[1] : Game.FILE_NAME;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : new SplitMixRandom().nextLong();
+
+        ExitsTable table = ExitsTable.load(fileName);
+        Tournament tournament = new Tournament(table);
+        tournament.addBots();
+        Hints hints = Hints.load(Solution.FILE_NAME, table);
+        if (hints != null)
+        {
+            tournament.add("Hints", (session, random) -> new HintPolicy(hints, session));
+        }
+        else
+        {
+            System.out.println("No hints found, so they are left out. Run java Solver to create " + Solution.FILE_NAME);
+        }
+
+        tournament.play(games, seed);
+        System.out.println(games + " games for each strategy (seed " + seed + ") on "
+            + ForkJoinPool.getCommonPoolParallelism() + " threads");
+        tournament.print(System.out);
+    }
+}
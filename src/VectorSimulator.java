@@ -0,0 +1,513 @@
+import java.io.*;
+import java.util.concurrent.*;
+import jdk.incubator.vector.*;
+
+/**
+* Plays games of the simulator's policy many at a time, one game in each lane of
+* the processor's vector registers, for sweeps over many exits files where the
+* Simulator would be too slow. Needs the incubating Vector API, so both javac and
+* java must be given --add-modules jdk.incubator.vector.
+*
+* The state of a batch of games is kept as one array per field, such as the coins
+* of every game or the exit chance of one direction in every game, so a round is
+* played for a whole vector of games with a few instructions per rule. Games do
+* not branch: each rule is applied to the games it concerns through a mask, and
+* a game which is over is replaced by a new one in its lane. Random numbers are
+* drawn for every lane at once by xoshiro128**, and each round takes the same
+* draws as a round of Game, so the games end the same way as the Simulator's
+* games on average, though not game for game.
+* @author rainflop000
+* @version 1.0
+*/
+public class VectorSimulator
+{
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    // Vectors of games played side by side, so one vector's work fills the wait for another's
+    private static final int BLOCKS = 4;
+    private static final long GAMES_PER_TASK = 100000;
+    private static final int MAX_CHANCE = Probabilities.BASIS_POINTS;
+    private static final int DRIFT_STEP = 100;
+    // What happened in a lane's round, from nothing for a lane without games left
+    private static final int NO_PORTAL = 1;
+    private static final int WON = 2;
+    private static final int JAIL = 3;
+    private static final int FREE = 4;
+    private static final int CAUGHT = 5;
+    private static final int FIRST_PORTAL = 6;
+
+    private ExitsTable table;
+    private int directions;
+    private int[] openChances;
+    private int[] exitChances;
+    private int[] policeChances;
+    private int boxChance;
+    // The draw below which each item is found in a magic box, in basis points
+    private int[] itemLimits;
+
+    /**
+    * Parametised constructor.
+    * @param table The directions and probabilities every game starts from
+    */
+    public VectorSimulator(ExitsTable table)
+    {
+        this.table = table;
+        directions = table.size();
+        openChances = new int[directions];
+        exitChances = new int[directions];
+        policeChances = new int[directions];
+        for (int i = 0; i < directions; i++)
+        {
+            openChances[i] = table.basisPoints(i, ExitsTable.OPEN);
+            exitChances[i] = table.basisPoints(i, ExitsTable.EXIT);
+            policeChances[i] = table.basisPoints(i, ExitsTable.POLICE);
+        }
+        boxChance = (int) Math.round(Items.MAGIC_BOX_CHANCE * MAX_CHANCE);
+        double[] itemChances = LootTable.shared().effectChances();
+        itemLimits = new int[itemChances.length];
+        double sum = 0;
+        for (int i = 0; i < itemLimits.length; i++)
+        {
+            sum += itemChances[i];
+            itemLimits[i] = (int) Math.round(sum * MAX_CHANCE);
+        }
+    }
+
+    /**
+    * Returns the number of games played side by side by one thread.
+    */
+    public static int getLanes()
+    {
+        return SPECIES.length() * BLOCKS;
+    }
+
+    /**
+    * Plays a number of games in parallel on the common fork/join pool, each task
+    * playing its games a vector at a time.
+    * @param games The number of games to play
+    * @param seed The seed all random draws are derived from
+    * @return The totals of all games played
+    */
+    public SimulationResult simulate(long games, long seed)
+    {
+        return ForkJoinPool.commonPool().invoke(new SimulationTask(0, games, new SplitMixRandom(seed)));
+    }
+
+    /**
+    * Plays a number of games on this thread, a vector of games at a time.
+    * @param games The number of games to play
+    * @param random The source the random streams of the lanes are seeded from
+    * @param result The result the outcome of the games is recorded in
+    */
+    public void playGames(long games, RandomSource random, SimulationResult result)
+    {
+        new Batch(games, random).play(result);
+    }
+
+    /**
+    * Games played side by side, one in each lane.
+    */
+    private class Batch
+    {
+        // Rounds between adding the totals of the lanes to longs, before they could overflow
+        private static final int ROUNDS_PER_FLUSH = 4096;
+
+        private int lanes = getLanes();
+        private int drawsPerRound = directions + 9;
+        private long games;
+
+        // Games each lane still has to finish, counting the one being played
+        private int[] remaining = new int[lanes];
+        private int[] coins = new int[lanes];
+        private int[] jumps = new int[lanes];
+        private int[] cloaks = new int[lanes];
+        private int[] rounds = new int[lanes];
+        private int[] bribed = new int[lanes];
+        // The chances of each direction, one row of lanes per direction
+        private int[] exit = new int[directions * lanes];
+        private int[] police = new int[directions * lanes];
+        // The state of the random stream of each lane, and the draws of a round
+        private int[] seeds = new int[4 * lanes];
+        private int[] draws;
+        // What happened in each lane's game this round, NO_PORTAL to JAIL or the portal chosen
+        private int[] events = new int[lanes];
+
+        // Totals of the games finished by each lane since the last flush
+        private int[] wins = new int[lanes];
+        private int[] roundTotals = new int[lanes];
+        private int[] bribeTotals = new int[lanes];
+        private int[] jumpTotals = new int[lanes];
+        private long[] totals = new long[4];
+
+        Batch(long games, RandomSource random)
+        {
+            this.games = games;
+            draws = new int[drawsPerRound * lanes];
+            for (int lane = 0; lane < lanes; lane++)
+            {
+                remaining[lane] = (int) (games / lanes + (lane < games % lanes ? 1 : 0));
+                coins[lane] = Items.START_COINS;
+                jumps[lane] = Player.MAX_JUMPS;
+                for (int i = 0; i < directions; i++)
+                {
+                    exit[i * lanes + lane] = exitChances[i];
+                    police[i * lanes + lane] = policeChances[i];
+                }
+            }
+            for (int i = 0; i < seeds.length; i++)
+            {
+                seeds[i] = (int) random.nextLong();
+            }
+            for (int lane = 0; lane < lanes; lane++)
+            {
+                // xoshiro128** must not start from all zeros
+                seeds[lane] |= 1;
+            }
+        }
+
+        void play(SimulationResult result)
+        {
+            boolean playing = true;
+            for (int round = 1; playing; round++)
+            {
+                fillDraws();
+                playing = false;
+                for (int block = 0; block < lanes; block += SPECIES.length())
+                {
+                    playing |= playRound(block);
+                }
+                if (round % ROUNDS_PER_FLUSH == 0 || !playing)
+                {
+                    flush();
+                }
+            }
+            result.record(games, totals[0], totals[1], totals[2], totals[3]);
+        }
+
+        private void flush()
+        {
+            int[][] laneTotals = {wins, roundTotals, bribeTotals, jumpTotals};
+            for (int i = 0; i < laneTotals.length; i++)
+            {
+                for (int lane = 0; lane < lanes; lane++)
+                {
+                    totals[i] += laneTotals[i][lane];
+                    laneTotals[i][lane] = 0;
+                }
+            }
+        }
+
+        /**
+        * Draws the random numbers of a round for every lane with xoshiro128**.
+        */
+        private void fillDraws()
+        {
+            for (int block = 0; block < lanes; block += SPECIES.length())
+            {
+                IntVector s0 = IntVector.fromArray(SPECIES, seeds, block);
+                IntVector s1 = IntVector.fromArray(SPECIES, seeds, lanes + block);
+                IntVector s2 = IntVector.fromArray(SPECIES, seeds, 2 * lanes + block);
+                IntVector s3 = IntVector.fromArray(SPECIES, seeds, 3 * lanes + block);
+                for (int draw = 0; draw < drawsPerRound; draw++)
+                {
+                    s1.mul(5).lanewise(VectorOperators.ROL, 7).mul(9).intoArray(draws, draw * lanes + block);
+                    IntVector shifted = s1.lanewise(VectorOperators.LSHL, 9);
+                    s2 = s2.lanewise(VectorOperators.XOR, s0);
+                    s3 = s3.lanewise(VectorOperators.XOR, s1);
+                    s1 = s1.lanewise(VectorOperators.XOR, s2);
+                    s0 = s0.lanewise(VectorOperators.XOR, s3);
+                    s2 = s2.lanewise(VectorOperators.XOR, shifted);
+                    s3 = s3.lanewise(VectorOperators.ROL, 11);
+                }
+                s0.intoArray(seeds, block);
+                s1.intoArray(seeds, lanes + block);
+                s2.intoArray(seeds, 2 * lanes + block);
+                s3.intoArray(seeds, 3 * lanes + block);
+            }
+        }
+
+        private IntVector draw(int draw, int block)
+        {
+            return IntVector.fromArray(SPECIES, draws, draw * lanes + block);
+        }
+
+        /**
+        * Plays a round of a vector of games, in the order Game plays it, and
+        * starts a new game in each lane whose game is over. The round is split
+        * into steps small enough for the JIT compiler to turn every vector
+        * operation into instructions; the steps pass what happened in each lane
+        * on through the event array rather than as vectors.
+        * @param block The first lane of the vector
+        * @return True if any of the lanes still has games to play
+        */
+        private boolean playRound(int block)
+        {
+            if (!choosePortal(block))
+            {
+                return false;
+            }
+            goThrough(block);
+            openMagicBox(block);
+            meetPolice(block);
+            return finishRound(block);
+        }
+
+        /**
+        * Room.generatePortals, then SimplePolicy picks one of the open portals.
+        * @return False if no lane has a game to play
+        */
+        private boolean choosePortal(int block)
+        {
+            VectorMask<Integer> live = IntVector.fromArray(SPECIES, remaining, block).compare(VectorOperators.GT, 0);
+            if (!live.anyTrue())
+            {
+                return false;
+            }
+            IntVector.fromArray(SPECIES, rounds, block).add(1, live).intoArray(rounds, block);
+            IntVector open = IntVector.zero(SPECIES);
+            for (int i = 0; i < directions; i++)
+            {
+                open = open.add(1, below(draw(i, block), MAX_CHANCE).compare(VectorOperators.LT, openChances[i]));
+            }
+            VectorMask<Integer> hasPortal = live.and(open.compare(VectorOperators.GT, 0));
+            IntVector position = below(draw(directions, block), open).blend(-1, hasPortal.not());
+            IntVector event = IntVector.zero(SPECIES).blend(NO_PORTAL, live);
+            for (int i = 0; i < directions; i++)
+            {
+                VectorMask<Integer> isOpen = below(draw(i, block), MAX_CHANCE).compare(VectorOperators.LT, openChances[i]);
+                event = event.blend(FIRST_PORTAL + i, isOpen.and(position.compare(VectorOperators.EQ, 0)));
+                position = position.sub(1, isOpen);
+            }
+            event.intoArray(events, block);
+            return true;
+        }
+
+        /**
+        * Exit.checkForExit, MagicPolice.checkForPoliceEncounter and the updates
+        * of the chances of the portal gone through.
+        */
+        private void goThrough(int block)
+        {
+            IntVector event = IntVector.fromArray(SPECIES, events, block);
+            IntVector exitRoll = below(draw(directions + 1, block), MAX_CHANCE);
+            IntVector policeRoll = below(draw(directions + 2, block), MAX_CHANCE);
+            // Exit.updateExitChance: up or down by 1 to 5 percent, the lowest bit giving the way
+            IntVector exitDrift = draw(directions + 3, block);
+            IntVector policeDrift = draw(directions + 4, block);
+            IntVector exitChange = below(exitDrift, 5).add(1).mul(DRIFT_STEP);
+            IntVector policeChange = below(policeDrift, 5).add(1).mul(DRIFT_STEP);
+            exitChange = exitChange.blend(exitChange.neg(), exitDrift.and(1).compare(VectorOperators.NE, 0));
+            policeChange = policeChange.blend(policeChange.neg(), policeDrift.and(1).compare(VectorOperators.NE, 0));
+            for (int i = 0; i < directions; i++)
+            {
+                VectorMask<Integer> chosen = event.compare(VectorOperators.EQ, FIRST_PORTAL + i);
+                if (chosen.anyTrue())
+                {
+                    IntVector exitChance = IntVector.fromArray(SPECIES, exit, i * lanes + block);
+                    IntVector policeChance = IntVector.fromArray(SPECIES, police, i * lanes + block);
+                    VectorMask<Integer> won = chosen.and(exitRoll.compare(VectorOperators.LT, exitChance));
+                    VectorMask<Integer> carryOn = chosen.andNot(won);
+                    VectorMask<Integer> caught = carryOn.and(policeRoll.compare(VectorOperators.LT, policeChance));
+                    event = event.blend(WON, won).blend(FREE, carryOn).blend(CAUGHT, caught);
+                    exitChance.add(exitChange, carryOn).max(0).min(MAX_CHANCE).intoArray(exit, i * lanes + block);
+                    policeChance.add(policeChange, carryOn).max(0).min(MAX_CHANCE).intoArray(police, i * lanes + block);
+                }
+            }
+            event.intoArray(events, block);
+        }
+
+        /**
+        * Items.findMagicBox and openMagicBox, keeping any cloak there is room for.
+        */
+        private void openMagicBox(int block)
+        {
+            IntVector event = IntVector.fromArray(SPECIES, events, block);
+            VectorMask<Integer> box = event.compare(VectorOperators.GE, FREE)
+                .and(below(draw(directions + 5, block), MAX_CHANCE).compare(VectorOperators.LT, boxChance));
+            IntVector item = below(draw(directions + 6, block), MAX_CHANCE);
+            VectorMask<Integer> foundCoins = box.and(item.compare(VectorOperators.LT, itemLimits[Items.COINS]));
+            VectorMask<Integer> foundAlarm = box.andNot(foundCoins)
+                .and(item.compare(VectorOperators.LT, itemLimits[Items.MAGIC_POLICE_ALARM]));
+            IntVector cloakCount = IntVector.fromArray(SPECIES, cloaks, block);
+            VectorMask<Integer> foundCloak = box.and(item.compare(VectorOperators.GE, itemLimits[Items.MAGIC_POLICE_ALARM]))
+                .and(item.compare(VectorOperators.LT, itemLimits[Items.CLOAK]))
+                .and(cloakCount.compare(VectorOperators.LT, Items.MAX_INVENTORY));
+            IntVector found = below(draw(directions + 7, block), Items.MAX_FOUND_COINS - Items.MIN_FOUND_COINS + 1)
+                .add(Items.MIN_FOUND_COINS);
+            IntVector.fromArray(SPECIES, coins, block).add(found, foundCoins).intoArray(coins, block);
+            cloakCount.add(1, foundCloak).intoArray(cloaks, block);
+            if (foundAlarm.anyTrue())
+            {
+                for (int i = 0; i < directions; i++)
+                {
+                    IntVector raised = IntVector.fromArray(SPECIES, police, i * lanes + block);
+                    raised = raised.add(Items.ALARM_POLICE_CHANGE, foundAlarm).min(MAX_CHANCE);
+                    raised.intoArray(police, i * lanes + block);
+                }
+            }
+        }
+
+        /**
+        * Game.handlePoliceEncounters: hides with a cloak, otherwise pays the bribe
+        * if the coins allow and goes to jail if not.
+        */
+        private void meetPolice(int block)
+        {
+            IntVector event = IntVector.fromArray(SPECIES, events, block);
+            VectorMask<Integer> caught = event.compare(VectorOperators.EQ, CAUGHT);
+            if (!caught.anyTrue())
+            {
+                return;
+            }
+            IntVector cloakCount = IntVector.fromArray(SPECIES, cloaks, block);
+            VectorMask<Integer> hide = caught.and(cloakCount.compare(VectorOperators.GT, 0));
+            VectorMask<Integer> bribe = caught.andNot(hide);
+            cloakCount.sub(1, hide).intoArray(cloaks, block);
+            IntVector coinCount = IntVector.fromArray(SPECIES, coins, block);
+            IntVector amount = below(draw(directions + 8, block), coinCount.add(1).min(1 << 16))
+                .add(coinCount.lanewise(VectorOperators.ASHR, 1));
+            VectorMask<Integer> pay = bribe.and(coinCount.compare(VectorOperators.GE, amount));
+            coinCount.sub(amount, pay).intoArray(coins, block);
+            IntVector.fromArray(SPECIES, bribed, block).add(amount, pay).intoArray(bribed, block);
+            event.blend(JAIL, bribe.andNot(pay)).intoArray(events, block);
+        }
+
+        /**
+        * Game.jump when no portal is open or the player is in jail, then records
+        * the games which are over and starts new ones in their lanes.
+        * @return True if any of the lanes still has games to play
+        */
+        private boolean finishRound(int block)
+        {
+            IntVector event = IntVector.fromArray(SPECIES, events, block);
+            IntVector jumpCount = IntVector.fromArray(SPECIES, jumps, block);
+            VectorMask<Integer> mustJump = event.compare(VectorOperators.EQ, NO_PORTAL).or(event.compare(VectorOperators.EQ, JAIL));
+            VectorMask<Integer> lost = mustJump.and(jumpCount.compare(VectorOperators.EQ, 0));
+            VectorMask<Integer> won = event.compare(VectorOperators.EQ, WON);
+            VectorMask<Integer> over = won.or(lost);
+            jumpCount = jumpCount.sub(1, mustJump.andNot(lost));
+            IntVector remainingGames = IntVector.fromArray(SPECIES, remaining, block);
+            if (over.anyTrue())
+            {
+                IntVector.fromArray(SPECIES, wins, block).add(1, won).intoArray(wins, block);
+                IntVector.fromArray(SPECIES, roundTotals, block).add(IntVector.fromArray(SPECIES, rounds, block), over)
+                    .intoArray(roundTotals, block);
+                IntVector.fromArray(SPECIES, bribeTotals, block).add(IntVector.fromArray(SPECIES, bribed, block), over)
+                    .intoArray(bribeTotals, block);
+                IntVector.fromArray(SPECIES, jumpTotals, block).add(jumpCount.neg().add(Player.MAX_JUMPS), over)
+                    .intoArray(jumpTotals, block);
+                remainingGames = remainingGames.sub(1, over);
+                remainingGames.intoArray(remaining, block);
+                VectorMask<Integer> restart = over.and(remainingGames.compare(VectorOperators.GT, 0));
+                jumpCount = jumpCount.blend(Player.MAX_JUMPS, restart);
+                IntVector.fromArray(SPECIES, coins, block).blend(Items.START_COINS, restart).intoArray(coins, block);
+                IntVector.fromArray(SPECIES, cloaks, block).blend(0, restart).intoArray(cloaks, block);
+                IntVector.fromArray(SPECIES, rounds, block).blend(0, restart).intoArray(rounds, block);
+                IntVector.fromArray(SPECIES, bribed, block).blend(0, restart).intoArray(bribed, block);
+                for (int i = 0; restart.anyTrue() && i < directions; i++)
+                {
+                    IntVector.fromArray(SPECIES, exit, i * lanes + block).blend(exitChances[i], restart)
+                        .intoArray(exit, i * lanes + block);
+                    IntVector.fromArray(SPECIES, police, i * lanes + block).blend(policeChances[i], restart)
+                        .intoArray(police, i * lanes + block);
+                }
+            }
+            jumpCount.intoArray(jumps, block);
+            return remainingGames.compare(VectorOperators.GT, 0).anyTrue();
+        }
+    }
+
+    /**
+    * Turns random bits into a number from 0 to bound - 1, using the top 16 bits.
+    * @param bits A random number
+    * @param bound The number of values, from 1 to 65536
+    */
+    private static IntVector below(IntVector bits, IntVector bound)
+    {
+        return bits.lanewise(VectorOperators.LSHR, 16).mul(bound).lanewise(VectorOperators.LSHR, 16);
+    }
+
+    private static IntVector below(IntVector bits, int bound)
+    {
+        return bits.lanewise(VectorOperators.LSHR, 16).mul(bound).lanewise(VectorOperators.LSHR, 16);
+    }
+
+    /**
+    * Task playing a range of games, splitting the range in half until it is
+    * small enough to play on one thread.
+    */
+    private class SimulationTask extends RecursiveTask<SimulationResult>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long from;
+        private long to;
+        private transient RandomSource random;
+
+        SimulationTask(long from, long to, RandomSource random)
+        {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected SimulationResult compute()
+        {
+            if (to - from <= GAMES_PER_TASK)
+            {
+                SimulationResult result = new SimulationResult();
+                playGames(to - from, random, result);
+                return result;
+            }
+            long middle = (from + to) >>> 1;
+            SimulationTask left = new SimulationTask(from, middle, random.split());
+            left.fork();
+            SimulationResult right = new SimulationTask(middle, to, random.split()).compute();
+            return left.join().add(right);
+        }
+    }
+
+    /**
+    * Main method for the vector simulator. Reads the exits file and prints the
+    * outcome of the simulated games, like the Simulator.
+    * @param args Optional number of games to play, name of the exits file, seed,
+    * then "compare" to play as many games with the Simulator afterwards and print
+    * how much faster the vector simulator was
+    */
+    public static void main(String[] args) throws IOException
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : Simulator.DEFAULT_GAMES;
+        String fileName = args.length > 1 ? args[1] : Game.FILE_NAME;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : new SplitMixRandom().nextLong();
+        boolean compare = args.length > 3 && args[3].equals("compare");
+        ExitsTable table = ExitsTable.load(fileName);
+
+        long start = System.nanoTime();
+        SimulationResult result = new VectorSimulator(table).simulate(games, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("Games played:        " + result.getGames() + " (seed " + seed + ", "
+            + getLanes() + " lanes per thread)");
+        printResult(result, seconds);
+
+        if (compare)
+        {
+            start = System.nanoTime();
+            SimulationResult scalar = new Simulator(table, false, null).simulate(games, seed);
+            double scalarSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.println();
+            System.out.println("Simulator:");
+            printResult(scalar, scalarSeconds);
+            System.out.printf("Speed up:            %.1fx%n", scalarSeconds / seconds);
+        }
+    }
+
+    private static void printResult(SimulationResult result, double seconds)
+    {
+        System.out.printf("Win rate:            %.2f%%%n", result.getWinRate() * 100);
+        System.out.printf("Average rounds:      %.2f%n", result.getAverageRounds());
+        System.out.printf("Average coins bribed: %.2f%n", result.getAverageCoinsBribed());
+        System.out.printf("Average jumps used:  %.2f%n", result.getAverageJumpsUsed());
+        System.out.printf("Games per minute:    %.0f (%.1f s on %d threads)%n",
+            result.getGames() / seconds * 60, seconds, ForkJoinPool.getCommonPoolParallelism());
+    }
+}